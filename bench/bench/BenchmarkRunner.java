@@ -0,0 +1,197 @@
+package bench;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Runs the workloads of {@link SudokuBenchmarks} and prints, for each of
+ * them, the throughput, the time per operation, and the memory allocated
+ * per operation and per second by the benchmark thread.
+ * <p>
+ * Each workload is first run for a few warmup iterations, so that the JIT
+ * compiler has compiled the code measured, then for the measured
+ * iterations. An iteration calls the workload repeatedly for a fixed time,
+ * and at least once.
+ * <p>
+ * Usage: <code>java -cp bin bench.BenchmarkRunner [-wi N] [-i N] [-t SECONDS]
+ * [-l] [REGEX]</code>, where <code>REGEX</code> selects the workloads
+ * whose names contain a match and <code>-l</code> only lists them.
+ *
+ * @author Arthur Thouzeau
+ * @version 1.0
+ */
+public class BenchmarkRunner {
+    private static final String HEADER_FORMAT = "%-42s %12s %10s %12s %12s %10s%n";
+    private static final String ROW_FORMAT = "%-42s %12.1f %10.1f %12.0f %12.1f %10s%n";
+
+    private final int warmupIterations;
+    private final int iterations;
+    private final long iterationNanos;
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    /**
+     * Results of the workloads, so that they are never dead code.
+     */
+    private volatile Object sink;
+
+    /**
+     * Initializes a runner.
+     *
+     * @param warmupIterations the number of iterations before measuring
+     * @param iterations the number of measured iterations
+     * @param iterationSeconds the duration of an iteration
+     */
+    public BenchmarkRunner(int warmupIterations, int iterations, double iterationSeconds) {
+        this.warmupIterations = warmupIterations;
+        this.iterations = iterations;
+        this.iterationNanos = (long) (iterationSeconds * 1e9);
+    }
+
+    /**
+     * Measures a workload and prints one line of results.
+     *
+     * @param workload the workload to measure
+     * @throws Exception if the workload fails
+     */
+    public void measure(Workload workload) throws Exception {
+        for (int k = 0; k < warmupIterations; k++)
+            iterate(workload);
+
+        long operations = 0;
+        long nanos = 0;
+        long allocated = 0;
+        long gcCount = gcCount();
+        double[] rates = new double[iterations];
+        for (int k = 0; k < iterations; k++) {
+            long allocatedBefore = allocatedBytes();
+            long start = System.nanoTime();
+            long count = iterate(workload);
+            long elapsed = System.nanoTime() - start;
+            allocated += allocatedBytes() - allocatedBefore;
+            operations += count;
+            nanos += elapsed;
+            rates[k] = count / (elapsed / 1e9);
+        }
+        gcCount = gcCount() - gcCount;
+
+        double mean = operations / (nanos / 1e9);
+        double deviation = 0;
+        for (double rate : rates)
+            deviation += (rate - mean) * (rate - mean);
+        deviation = iterations > 1 ? Math.sqrt(deviation / (iterations - 1)) : 0;
+        String error = String.format("%.1f%%", mean == 0 ? 0 : 100 * deviation / mean);
+        if (allocated < 0) {
+            System.out.printf("%-42s %12.1f %10.1f %12s %12s %10s%n", workload.getName(),
+                    mean, nanos / 1e3 / operations, "n/a", "n/a", error);
+        } else {
+            System.out.printf(ROW_FORMAT, workload.getName(), mean,
+                    nanos / 1e3 / operations, (double) allocated / operations,
+                    allocated / 1048576.0 / (nanos / 1e9), error);
+        }
+        if (gcCount > 0)
+            System.out.printf("%-42s (%d garbage collections)%n", "", gcCount);
+    }
+
+    /**
+     * Runs a workload for the duration of an iteration.
+     *
+     * @param workload the workload to run
+     * @return the number of operations
+     * @throws Exception if the workload fails
+     */
+    private long iterate(Workload workload) throws Exception {
+        long deadline = System.nanoTime() + iterationNanos;
+        long count = 0;
+        do {
+            sink = workload.run();
+            count++;
+        } while (System.nanoTime() < deadline);
+        return count;
+    }
+
+    /**
+     * Returns the number of bytes allocated by the current thread so far.
+     *
+     * @return the number of bytes, or <code>-1</code> if the JVM does not
+     *         provide it
+     */
+    private long allocatedBytes() {
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads)
+                    .getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the number of garbage collections so far.
+     *
+     * @return the total number of collections of all collectors
+     */
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+            count += Math.max(0, gc.getCollectionCount());
+        return count;
+    }
+
+    /**
+     * Prints the usage of the command and exits.
+     */
+    private static void usage() {
+        System.err.println("Usage: java bench.BenchmarkRunner [-wi N] [-i N] "
+                + "[-t SECONDS] [-l] [REGEX]");
+        System.exit(2);
+    }
+
+    /**
+     * Runs the benchmarks.
+     *
+     * @param args the options and the optional filter
+     * @throws Exception if a workload fails
+     */
+    public static void main(String[] args) throws Exception {
+        int warmupIterations = 3;
+        int iterations = 5;
+        double seconds = 1;
+        boolean list = false;
+        Pattern filter = null;
+        try {
+            for (int k = 0; k < args.length; k++) {
+                if (args[k].equals("-wi"))
+                    warmupIterations = Integer.parseInt(args[++k]);
+                else if (args[k].equals("-i"))
+                    iterations = Integer.parseInt(args[++k]);
+                else if (args[k].equals("-t"))
+                    seconds = Double.parseDouble(args[++k]);
+                else if (args[k].equals("-l"))
+                    list = true;
+                else if (filter == null && !args[k].startsWith("-"))
+                    filter = Pattern.compile(args[k]);
+                else
+                    usage();
+            }
+        } catch (RuntimeException e) {
+            usage();
+        }
+        if (iterations < 1)
+            usage();
+
+        List<Workload> workloads = SudokuBenchmarks.all();
+        BenchmarkRunner runner = new BenchmarkRunner(warmupIterations, iterations, seconds);
+        if (!list) {
+            System.out.printf(HEADER_FORMAT, "Benchmark", "ops/s", "us/op",
+                    "B/op", "alloc MB/s", "error");
+        }
+        for (Workload workload : workloads) {
+            if (filter != null && !filter.matcher(workload.getName()).find())
+                continue;
+            if (list)
+                System.out.println(workload.getName());
+            else
+                runner.measure(workload);
+        }
+    }
+}
@@ -0,0 +1,421 @@
+package bench;
+
+import java.io.CharArrayReader;
+import java.io.CharArrayWriter;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import model.BinaryFormat;
+import model.CanonicalForm;
+import model.CSVGridReader;
+import model.CSVGridWriter;
+import model.Difficulty;
+import model.DifficultyGrader;
+import model.ImportException;
+import model.LineFormat;
+import model.RandomGenerator;
+import model.SolverType;
+import model.SudokuBoard;
+import model.SudokuSolver;
+
+/**
+ * The workloads measured by the {@link BenchmarkRunner}: solving and
+ * counting solutions with each solver, generating random Sudokus, checking
+ * an initial board, and reading and writing boards.
+ * <p>
+ * The 9*9 puzzles are fixed. The larger puzzles are built from a shuffled
+ * pattern grid with a fixed seed, and the generator is given a fixed
+ * sequence of seeds, so every run measures the same work. Random 25*25
+ * Sudokus are not generated, as a single generation takes minutes.
+ *
+ * @author Arthur Thouzeau
+ * @version 1.0
+ */
+public final class SudokuBenchmarks {
+    /**
+     * A 9*9 puzzle solved by singles alone.
+     */
+    static final String EASY = "53..7....6..195....98....6.8...6...34..8.3..17...2...6"
+            + ".6....28....419..5....8..79";
+    /**
+     * A 9*9 puzzle needing a deep search.
+     */
+    static final String HARD = "8..........36......7..9.2...5...7.......457.....1...3"
+            + "...1....68..85...1..9....4..";
+    /**
+     * A 9*9 puzzle built against backtracking in row order: the first row is
+     * empty and its solution is 987654321.
+     */
+    static final String ANTI_BACKTRACKING = "..............3.85..1.2.......5.7....."
+            + "4...1...9.......5......73..2.1........4...9";
+    /**
+     * The easy puzzle without five of its givens, which has several
+     * solutions.
+     */
+    static final String MULTIPLE = "53..7....6...95....98....6.8...6...34..8.3..1"
+            + "7...2...6.6....2.....419..5....8..7.";
+
+    private static final long SEED = 42;
+
+    /**
+     * Constructor
+     */
+    private SudokuBenchmarks() {}
+
+    /**
+     * Returns all the workloads, in the order they are run.
+     *
+     * @return the workloads
+     * @throws ImportException if a fixed puzzle is not valid
+     */
+    public static List<Workload> all() throws ImportException {
+        List<Workload> workloads = new ArrayList<Workload>();
+        SudokuBoard easy = LineFormat.parse(EASY);
+        SudokuBoard hard = LineFormat.parse(HARD);
+        SudokuBoard anti = LineFormat.parse(ANTI_BACKTRACKING);
+        SudokuBoard multiple = LineFormat.parse(MULTIPLE);
+        SudokuBoard puzzle16 = patternPuzzle(16, 140);
+        SudokuBoard puzzle25 = patternPuzzle(25, 350);
+
+        for (SolverType type : SolverType.values()) {
+            workloads.add(solve("solve 9x9 easy", type, easy));
+            workloads.add(solve("solve 9x9 hard", type, hard));
+            workloads.add(solve("solve 9x9 anti-backtracking", type, anti));
+            // The plain backtracking takes far too long on larger boards
+            if (type != SolverType.BACKTRACKING) {
+                workloads.add(solve("solve 16x16", type, puzzle16));
+                workloads.add(solve("solve 25x25", type, puzzle25));
+            }
+        }
+        for (SolverType type : SolverType.values()) {
+            workloads.add(count("count 9x9 unique", type, hard));
+            workloads.add(count("count 9x9 multiple", type, multiple));
+            workloads.add(countAll("count all 9x9 multiple", type, multiple));
+        }
+        for (int size : new int[] { 4, 9, 16 }) {
+            workloads.add(generate(size));
+        }
+        workloads.add(generate(9, Difficulty.HARD));
+        for (SudokuBoard sb : new SudokuBoard[] { easy, hard, anti }) {
+            workloads.add(grade(sb));
+        }
+        for (SudokuBoard sb : new SudokuBoard[] { easy, patternPuzzle(9, 0),
+                patternPuzzle(25, 0) }) {
+            workloads.add(checkInitialBoard(sb));
+        }
+        for (SudokuBoard sb : new SudokuBoard[] { easy, hard }) {
+            workloads.add(canonicalForm(sb));
+        }
+        for (SudokuBoard sb : new SudokuBoard[] { easy, puzzle25 }) {
+            workloads.add(csvRoundTrip(sb));
+            workloads.add(csvFileRoundTrip(sb));
+            workloads.add(binaryRoundTrip(sb));
+        }
+        return workloads;
+    }
+
+    /**
+     * Solves a puzzle with a new solver of a type.
+     *
+     * @param name the name of the puzzle
+     * @param type the type of solver
+     * @param puzzle the puzzle
+     * @return the workload
+     */
+    private static Workload solve(String name, final SolverType type,
+            final SudokuBoard puzzle) {
+        return new Workload(name + " " + typeName(type)) {
+            @Override
+            public Object run() {
+                SudokuSolver solver = type.create(puzzle);
+                solver.solve();
+                return solver.getBoard();
+            }
+        };
+    }
+
+    /**
+     * Counts the solutions of a puzzle with a new solver of a type.
+     *
+     * @param name the name of the puzzle
+     * @param type the type of solver
+     * @param puzzle the puzzle
+     * @return the workload
+     */
+    private static Workload count(String name, final SolverType type,
+            final SudokuBoard puzzle) {
+        return new Workload(name + " " + typeName(type)) {
+            @Override
+            public Object run() {
+                return type.create(puzzle).countSolutions();
+            }
+        };
+    }
+
+    /**
+     * Counts all the solutions of a puzzle with a new solver of a type.
+     *
+     * @param name the name of the puzzle
+     * @param type the type of solver
+     * @param puzzle the puzzle
+     * @return the workload
+     */
+    private static Workload countAll(String name, final SolverType type,
+            final SudokuBoard puzzle) {
+        return new Workload(name + " " + typeName(type)) {
+            @Override
+            public Object run() {
+                return type.create(puzzle).countSolutions(0);
+            }
+        };
+    }
+
+    /**
+     * Generates random Sudokus of a size, from a fixed cycle of seeds.
+     *
+     * @param size the size of the Sudokus (number of rows)
+     * @return the workload
+     */
+    private static Workload generate(final int size) {
+        return new Workload("generate " + size + "x" + size) {
+            private long seed;
+
+            @Override
+            public Object run() {
+                return new RandomGenerator(size, SEED + (seed++ & 7));
+            }
+        };
+    }
+
+    /**
+     * Generates random Sudokus of a size and a target difficulty, from a
+     * fixed cycle of seeds.
+     *
+     * @param size the size of the Sudokus (number of rows)
+     * @param difficulty the target difficulty
+     * @return the workload
+     */
+    private static Workload generate(final int size, final Difficulty difficulty) {
+        return new Workload("generate " + size + "x" + size + " " + difficulty) {
+            private long seed;
+
+            @Override
+            public Object run() {
+                return new RandomGenerator(size, SEED + (seed++ & 7), difficulty);
+            }
+        };
+    }
+
+    /**
+     * Grades the difficulty of a board, with one grader reused across runs.
+     *
+     * @param sb the board
+     * @return the workload
+     */
+    private static Workload grade(final SudokuBoard sb) {
+        final DifficultyGrader grader = new DifficultyGrader(sb.SIZE);
+        return new Workload("grade " + sizeName(sb) + " " + countGivens(sb)
+                + " givens " + grader.grade(sb).getDifficulty()) {
+            @Override
+            public Object run() {
+                return grader.grade(sb);
+            }
+        };
+    }
+
+    /**
+     * Checks the initial board of a Sudoku.
+     *
+     * @param sb the board to check
+     * @return the workload
+     */
+    private static Workload checkInitialBoard(final SudokuBoard sb) {
+        return new Workload("checkInitialBoard " + sizeName(sb)
+                + (isFull(sb) ? " solved" : "")) {
+            @Override
+            public Object run() {
+                return sb.checkInitialBoard();
+            }
+        };
+    }
+
+    /**
+     * Computes the canonical form of a board, paid by every lookup in the
+     * solution cache.
+     *
+     * @param sb the board
+     * @return the workload
+     */
+    private static Workload canonicalForm(final SudokuBoard sb) {
+        return new Workload("canonical form " + sizeName(sb) + " "
+                + countGivens(sb) + " givens") {
+            @Override
+            public Object run() {
+                return CanonicalForm.of(sb);
+            }
+        };
+    }
+
+    /**
+     * Writes a board as CSV into memory and reads it back, reusing the
+     * buffers.
+     *
+     * @param sb the board to write
+     * @return the workload
+     */
+    private static Workload csvRoundTrip(final SudokuBoard sb) {
+        return new Workload("csv round-trip memory " + sizeName(sb)) {
+            private final CharArrayWriter chars = new CharArrayWriter();
+            private final CSVGridWriter writer = new CSVGridWriter(chars);
+            private final CSVGridReader reader = new CSVGridReader(null);
+            private final SudokuBoard copy = new SudokuBoard(sb.SIZE);
+
+            @Override
+            public Object run() throws Exception {
+                chars.reset();
+                writer.write(sb);
+                writer.flush();
+                reader.reset(new CharArrayReader(chars.toCharArray()));
+                reader.read(copy);
+                return copy;
+            }
+        };
+    }
+
+    /**
+     * Exports a board to a CSV file and imports it back.
+     *
+     * @param sb the board to write
+     * @return the workload
+     */
+    private static Workload csvFileRoundTrip(final SudokuBoard sb) {
+        return new Workload("csv round-trip file " + sizeName(sb)) {
+            private File file;
+
+            @Override
+            public Object run() throws Exception {
+                if (file == null) {
+                    file = File.createTempFile("bench", ".csv");
+                    file.deleteOnExit();
+                }
+                sb.writeToCSV(file.getPath());
+                return SudokuBoard.importFromCSV(file.getPath());
+            }
+        };
+    }
+
+    /**
+     * Encodes a board in the binary format and decodes it back.
+     *
+     * @param sb the board to write
+     * @return the workload
+     */
+    private static Workload binaryRoundTrip(final SudokuBoard sb) {
+        return new Workload("binary round-trip memory " + sizeName(sb)) {
+            private final ByteBuffer buffer = ByteBuffer.allocate(
+                    BinaryFormat.recordLength(sb, false));
+
+            @Override
+            public Object run() throws Exception {
+                buffer.clear();
+                BinaryFormat.encode(sb, null, buffer);
+                buffer.flip();
+                return BinaryFormat.decode(buffer);
+            }
+        };
+    }
+
+    /**
+     * Builds a puzzle from a solved pattern grid with relabelled numbers,
+     * by clearing random cells. The puzzle has at least one solution.
+     *
+     * @param size the size of the board (number of rows)
+     * @param holes the number of cells to clear
+     * @return the puzzle
+     */
+    static SudokuBoard patternPuzzle(int size, int holes) {
+        Random random = new Random(SEED);
+        int boxSize = (int) Math.sqrt(size);
+        int[] numbers = new int[size];
+        for (int i = 0; i < size; i++)
+            numbers[i] = i + 1;
+        for (int i = size - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = numbers[i];
+            numbers[i] = numbers[j];
+            numbers[j] = tmp;
+        }
+        SudokuBoard sb = new SudokuBoard(size);
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                sb.set(numbers[(boxSize * (i % boxSize) + i / boxSize + j) % size], i, j);
+            }
+        }
+        while (holes > 0) {
+            int i = random.nextInt(size);
+            int j = random.nextInt(size);
+            if (sb.get(i, j) != 0) {
+                sb.set(0, i, j);
+                holes--;
+            }
+        }
+        return sb;
+    }
+
+    /**
+     * Returns the short name of a solver type.
+     *
+     * @param type the type of solver
+     * @return the name between brackets
+     */
+    private static String typeName(SolverType type) {
+        return "[" + type.name().toLowerCase() + "]";
+    }
+
+    /**
+     * Returns the size of a board, as in <code>9x9</code>.
+     *
+     * @param sb the board
+     * @return the size of the board
+     */
+    private static String sizeName(SudokuBoard sb) {
+        return sb.SIZE + "x" + sb.SIZE;
+    }
+
+    /**
+     * Counts the givens of a board.
+     *
+     * @param sb the board
+     * @return the number of cells different from 0
+     */
+    private static int countGivens(SudokuBoard sb) {
+        int count = 0;
+        for (int i = 0; i < sb.SIZE; i++) {
+            for (int j = 0; j < sb.SIZE; j++) {
+                if (sb.get(i, j) != 0)
+                    count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Tests whether every cell of a board is assigned.
+     *
+     * @param sb the board
+     * @return <code>true</code> if the board is full;
+     *         <code>false</code> otherwise
+     */
+    private static boolean isFull(SudokuBoard sb) {
+        for (int i = 0; i < sb.SIZE; i++) {
+            for (int j = 0; j < sb.SIZE; j++) {
+                if (sb.get(i, j) == 0)
+                    return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,40 @@
+package bench;
+
+/**
+ * A piece of code measured by the {@link BenchmarkRunner}. Workloads must
+ * be deterministic: all their inputs are built from fixed puzzles or fixed
+ * seeds, so that two runs measure exactly the same work.
+ *
+ * @author Arthur Thouzeau
+ * @version 1.0
+ */
+public abstract class Workload {
+    private final String name;
+
+    /**
+     * Initializes a workload.
+     *
+     * @param name the name of the workload, used in reports and filters
+     */
+    protected Workload(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Returns the name of the workload.
+     *
+     * @return the name of the workload
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Runs one operation. The result is kept by the runner so that the work
+     * cannot be optimized away.
+     *
+     * @return the result of the operation
+     * @throws Exception if the operation fails
+     */
+    public abstract Object run() throws Exception;
+}
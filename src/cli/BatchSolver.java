@@ -0,0 +1,584 @@
+package cli;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import javax.management.JMException;
+
+import model.CSVGridReader;
+import model.CSVGridWriter;
+import model.ImportException;
+import model.LineFormat;
+import model.MappedPuzzleReader;
+import model.PortfolioSolver;
+import model.PortfolioStrategy;
+import model.SolutionCache;
+import model.SolverMonitor;
+import model.SolverStatsCollector;
+import model.SolverType;
+import model.SudokuBoard;
+import model.SudokuSolver;
+
+/**
+ * Command-line entry point solving files of Sudokus without the user
+ * interface. Two input formats are accepted, and the solutions are written
+ * in the same format as the input:
+ * <ul>
+ * <li>one puzzle per line, in the compact format of {@link LineFormat};</li>
+ * <li>CSV grids, as imported by the user interface, one after the other
+ * (blank lines between grids are allowed).</li>
+ * </ul>
+ * The puzzles are read in chunks by a reader thread, solved by a pool of
+ * worker threads and written in input order by the calling thread. The
+ * number of chunks in flight is bounded, so the reader waits when the
+ * solvers or the writer fall behind and memory use doesn't depend on the
+ * size of the file. A puzzle without solution is written unchanged.
+ * <p>
+ * With <code>-cache N</code>, the solutions of up to N puzzles are kept in
+ * a {@link SolutionCache}, and a puzzle equivalent to one solved before
+ * (up to the symmetries of the Sudoku) is not searched again.
+ * <p>
+ * With the <code>PORTFOLIO</code> solver, <code>-winners FILE</code> records
+ * which strategy of the {@link PortfolioSolver} won each puzzle, one line per
+ * puzzle: its number in the input, the strategy and the time it took, in
+ * microseconds. The number of wins of each strategy is printed at the end.
+ * <p>
+ * Usage: <code>java cli.BatchSolver [-threads N] [-solver TYPE]
+ * [-chunk N] [-cache N] [-winners FILE] input output</code>
+ *
+ * @author Arthur Thouzeau
+ * @version 1.0
+ */
+public class BatchSolver {
+    private static final int DEFAULT_CHUNK_SIZE = 256;
+    private static final int CHUNKS_PER_THREAD = 2;
+
+    private final SolverType solverType;
+    private final int threads;
+    private final int chunkSize;
+    private SolutionCache cache;
+    private Writer winners;
+    private long puzzles;
+    private long solved;
+
+    /**
+     * Initializes a new BatchSolver.
+     *
+     * @param solverType the algorithm used to solve the puzzles
+     * @param threads the number of worker threads
+     * @param chunkSize the number of puzzles handed to a worker at once
+     */
+    public BatchSolver(SolverType solverType, int threads, int chunkSize) {
+        this.solverType = solverType;
+        this.threads = threads;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Sets the cache of solutions looked up before solving each puzzle.
+     *
+     * @param cache the cache, or <code>null</code> to always solve
+     */
+    public void setCache(SolutionCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Sets the output recording the winning strategy of each puzzle, when
+     * the puzzles are solved by a {@link PortfolioSolver}.
+     *
+     * @param winners the output, or <code>null</code> to record nothing
+     */
+    public void setWinnersLog(Writer winners) {
+        this.winners = winners;
+    }
+
+    /**
+     * Returns the number of puzzles read by the last run.
+     *
+     * @return the number of puzzles
+     */
+    public long getPuzzles() {
+        return puzzles;
+    }
+
+    /**
+     * Returns the number of puzzles solved by the last run.
+     *
+     * @return the number of solved puzzles
+     */
+    public long getSolved() {
+        return solved;
+    }
+
+    /**
+     * Solves all the puzzles of an input and writes their solutions in the
+     * same order. The format is detected from the first non-blank line.
+     *
+     * @param in the input
+     * @param out the output
+     * @throws ImportException if a puzzle of the input is not valid
+     * @throws IOException if an I/O error occurs
+     * @throws InterruptedException if interrupted while waiting for workers
+     */
+    public void run(BufferedReader in, Writer out)
+            throws ImportException, IOException, InterruptedException {
+        run(new TextSource(in), out);
+    }
+
+    /**
+     * Solves all the puzzles of a file in the one-line format, parsed from a
+     * memory mapping of the file, and writes their solutions in the same
+     * order.
+     *
+     * @param in the input
+     * @param out the output
+     * @throws ImportException if a puzzle of the input is not valid
+     * @throws IOException if an I/O error occurs
+     * @throws InterruptedException if interrupted while waiting for workers
+     */
+    public void run(MappedPuzzleReader in, Writer out)
+            throws ImportException, IOException, InterruptedException {
+        run(new MappedSource(in.split(1)), out);
+    }
+
+    /**
+     * Solves all the puzzles of a source and writes their solutions in the
+     * same order.
+     *
+     * @param source the source of the puzzles
+     * @param out the output
+     * @throws ImportException if a puzzle of the input is not valid
+     * @throws IOException if an I/O error occurs
+     * @throws InterruptedException if interrupted while waiting for workers
+     */
+    private void run(final PuzzleSource source, Writer out)
+            throws ImportException, IOException, InterruptedException {
+        puzzles = 0;
+        solved = 0;
+        final BlockingQueue<Future<Chunk>> inFlight =
+                new ArrayBlockingQueue<Future<Chunk>>(CHUNKS_PER_THREAD * threads);
+        final ExecutorService workers = Executors.newFixedThreadPool(threads);
+
+        Thread reader = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    Chunk chunk;
+                    while ((chunk = source.readChunk(chunkSize)) != null)
+                        inFlight.put(workers.submit(new SolveTask(chunk)));
+                    inFlight.put(completed(null));
+                } catch (final Exception e) {
+                    try {
+                        inFlight.put(completed(e));
+                    } catch (InterruptedException ie) {
+                        // The writer has given up already
+                    }
+                }
+            }
+        }, "BatchSolver reader");
+        reader.start();
+
+        try {
+            Chunk chunk;
+            while ((chunk = inFlight.take().get()) != null) {
+                out.write(chunk.output);
+                if (winners != null)
+                    writeWinners(chunk);
+                puzzles += chunk.boards.length;
+                solved += chunk.solved;
+            }
+            out.flush();
+            if (winners != null)
+                winners.flush();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof ImportException)
+                throw (ImportException) cause;
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            throw new IllegalStateException(cause);
+        } finally {
+            reader.interrupt();
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * Writes the winning strategies of the puzzles of a chunk, numbering the
+     * puzzles from the start of the input.
+     *
+     * @param chunk the chunk, solved
+     * @throws IOException if an I/O error occurs
+     */
+    private void writeWinners(Chunk chunk) throws IOException {
+        for (int k = 0; k < chunk.boards.length; k++) {
+            if (chunk.winners[k] != null)
+                winners.write((puzzles + k + 1) + "," + chunk.winners[k].name()
+                        + "," + chunk.winnerMicros[k] + "\n");
+        }
+    }
+
+    /**
+     * Returns a completed future, either with a <code>null</code> result to
+     * mark the end of the input, or failed with an exception.
+     *
+     * @param e the exception, or <code>null</code>
+     * @return the completed future
+     */
+    private static Future<Chunk> completed(final Exception e) {
+        FutureTask<Chunk> task = new FutureTask<Chunk>(new Callable<Chunk>() {
+            public Chunk call() throws Exception {
+                if (e != null)
+                    throw e;
+                return null;
+            }
+        });
+        task.run();
+        return task;
+    }
+
+    /**
+     * Puzzles read together, and their solutions once solved.
+     */
+    private static class Chunk {
+        private final SudokuBoard[] boards;
+        private final boolean csv;
+        private String output;
+        private int solved;
+        private final PortfolioStrategy[] winners;
+        private final long[] winnerMicros;
+
+        Chunk(SudokuBoard[] boards, boolean csv) {
+            this.boards = boards;
+            this.csv = csv;
+            winners = new PortfolioStrategy[boards.length];
+            winnerMicros = new long[boards.length];
+        }
+    }
+
+    /**
+     * Task solving the puzzles of a chunk and formatting the results.
+     */
+    private class SolveTask implements Callable<Chunk> {
+        private final Chunk chunk;
+
+        SolveTask(Chunk chunk) {
+            this.chunk = chunk;
+        }
+
+        public Chunk call() throws IOException {
+            StringBuilder out = new StringBuilder();
+            StringWriter csvOut = chunk.csv ? new StringWriter() : null;
+            CSVGridWriter csv = chunk.csv ? new CSVGridWriter(csvOut) : null;
+            for (int k = 0; k < chunk.boards.length; k++) {
+                SudokuBoard sb = chunk.boards[k];
+                SudokuBoard result = sb;
+                if (sb.checkInitialBoard()) {
+                    SudokuBoard solution = solve(sb, k);
+                    if (solution != null) {
+                        result = solution;
+                        chunk.solved++;
+                    }
+                }
+                if (chunk.csv) {
+                    csv.write(result);
+                    csv.flush();
+                    csvOut.write('\n');
+                } else {
+                    LineFormat.format(result, out);
+                    out.append('\n');
+                }
+            }
+            chunk.output = chunk.csv ? csvOut.toString() : out.toString();
+            return chunk;
+        }
+
+        /**
+         * Solves a puzzle, through the cache if there is one, and keeps the
+         * winning strategy if the solver is a portfolio.
+         *
+         * @param sb the puzzle
+         * @param k the index of the puzzle in the chunk
+         * @return the solution, or <code>null</code> if there is none
+         */
+        private SudokuBoard solve(SudokuBoard sb, int k) {
+            if (cache != null)
+                return cache.solve(sb, solverType);
+            SudokuSolver solver = solverType.create(sb);
+            boolean solved = solver.solve();
+            if (solver instanceof PortfolioSolver) {
+                PortfolioSolver portfolio = (PortfolioSolver) solver;
+                chunk.winners[k] = portfolio.getWinner();
+                chunk.winnerMicros[k] = portfolio.getWinnerNanos() / 1000;
+            }
+            return solved ? solver.getBoard() : null;
+        }
+    }
+
+    /**
+     * Source of the puzzles to solve.
+     */
+    private interface PuzzleSource {
+
+        /**
+         * Reads up to <code>max</code> puzzles.
+         *
+         * @param max the maximum number of puzzles to read
+         * @return the chunk of puzzles, or <code>null</code> at the end of the
+         *         input
+         * @throws ImportException if a puzzle is not valid
+         * @throws IOException if an I/O error occurs
+         */
+        Chunk readChunk(int max) throws ImportException, IOException;
+    }
+
+    /**
+     * Reads the puzzles of a file in the one-line format from its memory
+     * mapped segments.
+     */
+    private static class MappedSource implements PuzzleSource {
+        private final Iterator<MappedPuzzleReader.Segment> segments;
+        private MappedPuzzleReader.Segment current;
+
+        MappedSource(List<MappedPuzzleReader.Segment> segments) {
+            this.segments = segments.iterator();
+        }
+
+        public Chunk readChunk(int max) throws ImportException {
+            SudokuBoard[] boards = new SudokuBoard[max];
+            int count = 0;
+            while (count < max) {
+                if (current == null) {
+                    if (!segments.hasNext())
+                        break;
+                    current = segments.next();
+                }
+                SudokuBoard sb = new SudokuBoard(current.getSize());
+                if (current.next(sb))
+                    boards[count++] = sb;
+                else
+                    current = null;
+            }
+            if (count == 0)
+                return null;
+            return new Chunk(Arrays.copyOf(boards, count), false);
+        }
+    }
+
+    /**
+     * Reads the puzzles of a text input, in either format. CSV grids are
+     * read by a {@link CSVGridReader}, with the rules of the CSV import of
+     * the user interface.
+     */
+    private static class TextSource implements PuzzleSource {
+        // The first non-blank line is read again once the format is known
+        private static final int DETECTION_LIMIT = 1 << 20;
+
+        private final BufferedReader in;
+        private int lineNumber;
+        private Boolean csv;
+        private CSVGridReader grids;
+
+        TextSource(BufferedReader in) {
+            this.in = in;
+        }
+
+        /**
+         * Returns the next non-blank line, trimmed.
+         *
+         * @return the line, or <code>null</code> at the end of the input
+         * @throws IOException if an I/O error occurs
+         */
+        private String nextLine() throws IOException {
+            String line;
+            do {
+                line = in.readLine();
+                lineNumber++;
+            } while (line != null && line.trim().isEmpty());
+            return line == null ? null : line.trim();
+        }
+
+        /**
+         * Detects the format of the input from its first non-blank line,
+         * and goes back to the start of the input.
+         *
+         * @return <code>false</code> if the input is blank
+         * @throws IOException if an I/O error occurs
+         */
+        private boolean detect() throws IOException {
+            in.mark(DETECTION_LIMIT);
+            String line = nextLine();
+            if (line == null)
+                return false;
+            in.reset();
+            lineNumber = 0;
+            csv = line.indexOf(',') >= 0;
+            if (csv)
+                grids = new CSVGridReader(in);
+            return true;
+        }
+
+        public Chunk readChunk(int max) throws ImportException, IOException {
+            if (csv == null && !detect())
+                return null;
+            SudokuBoard[] boards = new SudokuBoard[max];
+            int count = 0;
+            try {
+                if (csv) {
+                    SudokuBoard sb;
+                    while (count < max && (sb = grids.readNext()) != null)
+                        boards[count++] = sb;
+                } else {
+                    String line;
+                    while (count < max && (line = nextLine()) != null)
+                        boards[count++] = LineFormat.parse(line);
+                }
+            } catch (ImportException e) {
+                throw new ImportException("Line " + (csv ? grids.getLineNumber()
+                        : lineNumber) + ": " + e.getMessage());
+            }
+            if (count == 0)
+                return null;
+            return new Chunk(Arrays.copyOf(boards, count), csv);
+        }
+    }
+
+    /**
+     * Prints the usage of the command and exits.
+     */
+    private static void usage() {
+        System.err.println("Usage: java cli.BatchSolver [-threads N] "
+                + "[-solver TYPE] [-chunk N] [-cache N] [-winners FILE] input output");
+        System.err.print("Solver types:");
+        for (SolverType type : SolverType.values())
+            System.err.print(" " + type.name());
+        System.err.println();
+        System.exit(2);
+    }
+
+    /**
+     * Runs the batch solver.
+     *
+     * @param args the options, the input file and the output file
+     */
+    public static void main(String[] args) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        int chunkSize = DEFAULT_CHUNK_SIZE;
+        int cacheSize = 0;
+        String winnersFile = null;
+        SolverType solverType = SolverType.CONSTRAINT_PROPAGATION;
+        int k = 0;
+        try {
+            for (; k < args.length - 2; k += 2) {
+                if (args[k].equals("-threads"))
+                    threads = Integer.parseInt(args[k + 1]);
+                else if (args[k].equals("-chunk"))
+                    chunkSize = Integer.parseInt(args[k + 1]);
+                else if (args[k].equals("-cache"))
+                    cacheSize = Integer.parseInt(args[k + 1]);
+                else if (args[k].equals("-solver"))
+                    solverType = SolverType.valueOf(args[k + 1]);
+                else if (args[k].equals("-winners"))
+                    winnersFile = args[k + 1];
+                else
+                    usage();
+            }
+        } catch (IllegalArgumentException e) {
+            usage();
+        }
+        if (k != args.length - 2 || threads < 1 || chunkSize < 1 || cacheSize < 0)
+            usage();
+
+        // The statistics of the solvers can also be watched through JMX
+        SolverStatsCollector stats;
+        try {
+            stats = SolverStatsCollector.register();
+        } catch (JMException e) {
+            stats = new SolverStatsCollector();
+            SolverMonitor.addListener(stats);
+        }
+
+        BatchSolver batch = new BatchSolver(solverType, threads, chunkSize);
+        SolutionCache cache = null;
+        if (cacheSize > 0) {
+            try {
+                cache = SolutionCache.register(cacheSize);
+            } catch (JMException e) {
+                cache = new SolutionCache(cacheSize);
+            }
+            batch.setCache(cache);
+        }
+        long start = System.nanoTime();
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                    new FileInputStream(args[k]), StandardCharsets.US_ASCII), 1 << 16);
+                Writer out = new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(args[k + 1]), StandardCharsets.US_ASCII), 1 << 16);
+                Writer winners = winnersFile == null ? null : new BufferedWriter(
+                    new OutputStreamWriter(new FileOutputStream(winnersFile),
+                    StandardCharsets.US_ASCII))) {
+            batch.setWinnersLog(winners);
+            // Files in the one-line format are parsed from a memory mapping
+            in.mark(1 << 16);
+            String first;
+            while ((first = in.readLine()) != null && first.trim().isEmpty());
+            in.reset();
+            if (first != null && first.indexOf(',') < 0) {
+                try (MappedPuzzleReader mapped = new MappedPuzzleReader(args[k])) {
+                    batch.run(mapped, out);
+                }
+            } else {
+                batch.run(in, out);
+            }
+        } catch (FileNotFoundException e) {
+            System.err.println("The file you specified was not found.\n" + e.getMessage());
+            System.exit(1);
+        } catch (ImportException e) {
+            System.err.println("An error occured while reading the input.\n"
+                    + e.getMessage());
+            System.exit(1);
+        } catch (IOException e) {
+            System.err.println("An error occured while writing the file.\n" + e);
+            System.exit(1);
+        } catch (InterruptedException e) {
+            System.exit(1);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Solved %d of %d puzzles in %.2f s (%.0f puzzles/s)%n",
+                batch.getSolved(), batch.getPuzzles(), seconds,
+                batch.getPuzzles() / seconds);
+        System.out.println("Search: " + stats);
+        if (stats.getSolves() > 0)
+            System.out.println("Hardest: " + stats.getHardest());
+        if (cache != null)
+            System.out.println("Cache: " + cache);
+        if (solverType == SolverType.PORTFOLIO) {
+            StringBuilder wins = new StringBuilder("Winners:");
+            for (PortfolioStrategy strategy : PortfolioStrategy.values()) {
+                if (PortfolioSolver.getWins(strategy) > 0)
+                    wins.append(' ').append(strategy.name()).append(' ')
+                            .append(PortfolioSolver.getWins(strategy));
+            }
+            System.out.println(wins);
+        }
+    }
+}
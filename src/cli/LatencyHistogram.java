@@ -0,0 +1,130 @@
+package cli;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of latencies, to report percentiles without keeping every
+ * sample. The buckets are linear up to 64 ns, then each power of two is
+ * split in 32 buckets, so a percentile is exact to about 3%, from
+ * nanoseconds to hours, in a fixed 15 KB.
+ * <p>
+ * Recording is a few atomic increments and can be done from any thread.
+ *
+ * @author Arthur Thouzeau
+ * @version 1.0
+ */
+public class LatencyHistogram {
+    private static final int SUB_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    private final AtomicLongArray counts =
+            new AtomicLongArray((64 - SUB_BITS + 1) * SUB_BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a latency.
+     *
+     * @param nanos the latency, in nanoseconds
+     */
+    public void record(long nanos) {
+        if (nanos < 0)
+            nanos = 0;
+        counts.incrementAndGet(indexOf(nanos));
+        count.incrementAndGet();
+        total.addAndGet(nanos);
+        long m;
+        while (nanos > (m = max.get()) && !max.compareAndSet(m, nanos));
+    }
+
+    /**
+     * Returns the bucket of a latency.
+     *
+     * @param nanos the latency, not negative
+     * @return the index of the bucket
+     */
+    private static int indexOf(long nanos) {
+        if (nanos < 2 * SUB_BUCKETS)
+            return (int) nanos;
+        int shift = 63 - Long.numberOfLeadingZeros(nanos) - SUB_BITS;
+        return shift * SUB_BUCKETS + (int) (nanos >>> shift);
+    }
+
+    /**
+     * Returns the largest latency of a bucket.
+     *
+     * @param index the index of the bucket
+     * @return the upper bound of the bucket, in nanoseconds
+     */
+    private static long upperBound(int index) {
+        if (index < 2 * SUB_BUCKETS)
+            return index;
+        int shift = index / SUB_BUCKETS - 1;
+        long sub = index - shift * SUB_BUCKETS;
+        return ((sub + 1) << shift) - 1;
+    }
+
+    /**
+     * Returns the number of latencies recorded.
+     *
+     * @return the number of samples
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Returns the mean latency.
+     *
+     * @return the mean, in nanoseconds, or 0 if nothing was recorded
+     */
+    public double getMean() {
+        long n = count.get();
+        return n == 0 ? 0 : (double) total.get() / n;
+    }
+
+    /**
+     * Returns the largest latency recorded.
+     *
+     * @return the maximum, in nanoseconds
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Returns a percentile of the latencies: the latency under which a
+     * given share of the samples lie.
+     *
+     * @param percent the percentile, between 0 and 100
+     * @return the percentile, in nanoseconds, or 0 if nothing was recorded
+     */
+    public long getPercentile(double percent) {
+        long n = count.get();
+        if (n == 0)
+            return 0;
+        long rank = Math.max(1, (long) Math.ceil(percent / 100 * n));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank)
+                return Math.min(upperBound(i), getMax());
+        }
+        return getMax();
+    }
+
+    /**
+     * Returns a summary of the latencies.
+     *
+     * @return the number of samples, the median, the 99th percentile and
+     *         the maximum
+     */
+    @Override
+    public String toString() {
+        return String.format("%d samples, p50 %.3f ms, p99 %.3f ms, max %.3f ms",
+                getCount(), getPercentile(50) / 1e6, getPercentile(99) / 1e6,
+                getMax() / 1e6);
+    }
+}
@@ -0,0 +1,221 @@
+package cli;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load generator for the {@link SolverServer}. Several connections send the
+ * puzzles of a file in turn, each waiting for the answers to a request
+ * before sending the next one, and the latency of each request is measured
+ * on the client side. The throughput and the latencies are printed at the
+ * end, followed by the statistics of the server.
+ * <p>
+ * With <code>-batch N</code>, each request is a <code>BATCH</code> of N
+ * puzzles, and its latency is the time to receive all the answers.
+ * <p>
+ * Usage: <code>java cli.LoadGenerator [-host HOST] [-port N]
+ * [-connections N] [-requests N] [-batch N] puzzles</code>
+ *
+ * @author Arthur Thouzeau
+ * @version 1.0
+ */
+public class LoadGenerator {
+    private final String host;
+    private final int port;
+    private final List<String> puzzles;
+    private final int batch;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final AtomicLong failures = new AtomicLong();
+
+    /**
+     * Initializes a new load generator.
+     *
+     * @param host the host of the server
+     * @param port the port of the server
+     * @param puzzles the puzzles to send, in the compact format
+     * @param batch the number of puzzles of a request
+     */
+    public LoadGenerator(String host, int port, List<String> puzzles, int batch) {
+        this.host = host;
+        this.port = port;
+        this.puzzles = puzzles;
+        this.batch = batch;
+    }
+
+    /**
+     * Sends requests on several connections at once, and waits for all the
+     * answers.
+     *
+     * @param connections the number of connections
+     * @param requests the number of requests sent on each connection
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void run(int connections, final int requests) throws InterruptedException {
+        Thread[] clients = new Thread[connections];
+        for (int c = 0; c < connections; c++) {
+            final int first = c * requests * batch;
+            clients[c] = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        send(first, requests);
+                    } catch (IOException e) {
+                        System.err.println("Connection failed: " + e);
+                        failures.incrementAndGet();
+                    }
+                }
+            });
+            clients[c].start();
+        }
+        for (Thread client : clients)
+            client.join();
+    }
+
+    /**
+     * Sends requests on one connection, one after the other.
+     *
+     * @param first the index of the first puzzle to send
+     * @param requests the number of requests
+     * @throws IOException if the connection fails
+     */
+    private void send(int first, int requests) throws IOException {
+        try (Socket socket = new Socket(host, port);
+                BufferedReader in = new BufferedReader(new InputStreamReader(
+                        socket.getInputStream(), StandardCharsets.US_ASCII));
+                Writer out = new BufferedWriter(new OutputStreamWriter(
+                        socket.getOutputStream(), StandardCharsets.US_ASCII))) {
+            socket.setTcpNoDelay(true);
+            int next = first;
+            for (int k = 0; k < requests; k++) {
+                long start = System.nanoTime();
+                if (batch > 1)
+                    out.write("BATCH " + batch + "\n");
+                for (int b = 0; b < batch; b++) {
+                    out.write(puzzles.get(next++ % puzzles.size()));
+                    out.write('\n');
+                }
+                out.flush();
+                for (int b = 0; b < batch; b++) {
+                    String answer = in.readLine();
+                    if (answer == null)
+                        throw new IOException("connection closed by the server");
+                    if (answer.startsWith("ERROR") || answer.equals("TIMEOUT"))
+                        failures.incrementAndGet();
+                }
+                latency.record(System.nanoTime() - start);
+            }
+            out.write("QUIT\n");
+            out.flush();
+        }
+    }
+
+    /**
+     * Asks the server for its statistics.
+     *
+     * @return the statistics, on one line
+     * @throws IOException if the connection fails
+     */
+    public String serverStats() throws IOException {
+        try (Socket socket = new Socket(host, port);
+                BufferedReader in = new BufferedReader(new InputStreamReader(
+                        socket.getInputStream(), StandardCharsets.US_ASCII));
+                Writer out = new OutputStreamWriter(
+                        socket.getOutputStream(), StandardCharsets.US_ASCII)) {
+            out.write("STATS\nQUIT\n");
+            out.flush();
+            return in.readLine();
+        }
+    }
+
+    /**
+     * Prints the usage of the load generator and exits.
+     */
+    private static void usage() {
+        System.err.println("Usage: java cli.LoadGenerator [-host HOST] [-port N] "
+                + "[-connections N] [-requests N] [-batch N] puzzles");
+        System.exit(2);
+    }
+
+    /**
+     * Runs the load generator.
+     *
+     * @param args the options and the file of puzzles, one per line
+     */
+    public static void main(String[] args) {
+        String host = "localhost";
+        int port = SolverServer.DEFAULT_PORT;
+        int connections = 4;
+        int requests = 1000;
+        int batch = 1;
+        if (args.length % 2 != 1)
+            usage();
+        try {
+            for (int k = 0; k < args.length - 1; k += 2) {
+                if (args[k].equals("-host"))
+                    host = args[k + 1];
+                else if (args[k].equals("-port"))
+                    port = Integer.parseInt(args[k + 1]);
+                else if (args[k].equals("-connections"))
+                    connections = Integer.parseInt(args[k + 1]);
+                else if (args[k].equals("-requests"))
+                    requests = Integer.parseInt(args[k + 1]);
+                else if (args[k].equals("-batch"))
+                    batch = Integer.parseInt(args[k + 1]);
+                else
+                    usage();
+            }
+        } catch (NumberFormatException e) {
+            usage();
+        }
+        if (connections < 1 || requests < 1 || batch < 1)
+            usage();
+
+        List<String> puzzles = new ArrayList<String>();
+        try {
+            for (String line : Files.readAllLines(Paths.get(args[args.length - 1]),
+                    StandardCharsets.US_ASCII)) {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#"))
+                    puzzles.add(line);
+            }
+        } catch (IOException e) {
+            System.err.println("The puzzles could not be read.\n" + e);
+            System.exit(1);
+        }
+        if (puzzles.isEmpty()) {
+            System.err.println("No puzzles to send.");
+            System.exit(1);
+        }
+
+        LoadGenerator generator = new LoadGenerator(host, port, puzzles, batch);
+        long start = System.nanoTime();
+        try {
+            generator.run(connections, requests);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long solved = generator.latency.getCount() * batch;
+        System.out.printf("%d puzzles in %.2f s over %d connections: "
+                + "%.1f puzzles/s, %d failures%n",
+                solved, seconds, connections, solved / seconds,
+                generator.failures.get());
+        System.out.println("Request latency: " + generator.latency);
+        try {
+            System.out.println("Server: " + generator.serverStats());
+        } catch (IOException e) {
+            System.err.println("The server statistics could not be read.\n" + e);
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package cli;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import model.ImportException;
+import model.LineFormat;
+import model.ResumableSolver;
+import model.SolverProgressListener;
+import model.SolverStats;
+import model.SudokuBoard;
+
+/**
+ * Command-line entry point for long searches, which survive a restart of
+ * the process. The search is run by a {@link ResumableSolver}, which saves
+ * its state to a checkpoint file periodically; if the checkpoint file
+ * exists, the search saved in it is resumed instead of starting a new one,
+ * and the puzzle can be omitted. The checkpoint file is deleted once the
+ * search is finished.
+ * <p>
+ * The puzzle is read from a CSV grid, as imported by the user interface, or
+ * from the first line of a file in the compact format of
+ * {@link LineFormat}. By default the first solution is searched; with
+ * <code>-count</code>, the solutions are counted, up to the limit given by
+ * <code>-limit</code> if any. Interrupting the process (Ctrl-C) saves the
+ * state before exiting.
+ * <p>
+ * Usage: <code>java cli.ResumableSearch [-count] [-limit N]
+ * [-interval SECONDS] checkpoint [puzzle]</code>
+ *
+ * @author Arthur Thouzeau
+ * @version 1.0
+ */
+public class ResumableSearch {
+    private static final long DEFAULT_INTERVAL = 60;
+
+    /**
+     * Prints the usage of the command and exits.
+     */
+    private static void usage() {
+        System.err.println("Usage: java cli.ResumableSearch [-count] [-limit N] "
+                + "[-interval SECONDS] checkpoint [puzzle]");
+        System.exit(2);
+    }
+
+    /**
+     * Reads a puzzle, from a CSV grid or from a line in the compact format.
+     *
+     * @param file the file of the puzzle
+     * @return the puzzle
+     * @throws ImportException if the puzzle is not valid
+     * @throws IOException if the file could not be read
+     */
+    private static SudokuBoard readPuzzle(String file) throws ImportException, IOException {
+        if (file.toLowerCase().endsWith(".csv"))
+            return SudokuBoard.importFromCSV(file);
+        List<String> lines = Files.readAllLines(Paths.get(file), StandardCharsets.US_ASCII);
+        for (String line : lines) {
+            if (!line.trim().isEmpty())
+                return LineFormat.parse(line.trim());
+        }
+        throw new ImportException("The file " + file + " is empty.");
+    }
+
+    /**
+     * Prints a board, in the compact format if its size allows it, or as
+     * CSV rows otherwise.
+     *
+     * @param sb the board
+     */
+    private static void print(SudokuBoard sb) {
+        if (sb.SIZE <= LineFormat.MAX_SIZE) {
+            System.out.println(LineFormat.format(sb));
+            return;
+        }
+        for (int i = 0; i < sb.SIZE; i++) {
+            StringBuilder row = new StringBuilder();
+            for (int j = 0; j < sb.SIZE; j++) {
+                if (j > 0)
+                    row.append(',');
+                row.append(sb.get(i, j));
+            }
+            System.out.println(row);
+        }
+    }
+
+    /**
+     * Starts or resumes a search, and prints its result.
+     *
+     * @param args the options, the checkpoint file and the puzzle
+     */
+    public static void main(String[] args) {
+        boolean count = false;
+        long limit = 0;
+        long interval = DEFAULT_INTERVAL;
+        int k = 0;
+        try {
+            for (; k < args.length && args[k].startsWith("-"); k++) {
+                if (args[k].equals("-count"))
+                    count = true;
+                else if (args[k].equals("-limit") && k + 1 < args.length)
+                    limit = Long.parseLong(args[++k]);
+                else if (args[k].equals("-interval") && k + 1 < args.length)
+                    interval = Long.parseLong(args[++k]);
+                else
+                    usage();
+            }
+        } catch (NumberFormatException e) {
+            usage();
+        }
+        if (k == args.length || args.length - k > 2 || limit < 0 || interval < 1)
+            usage();
+        Path checkpoint = Paths.get(args[k]);
+
+        final ResumableSolver solver;
+        try {
+            if (Files.exists(checkpoint)) {
+                solver = ResumableSolver.load(checkpoint, interval, TimeUnit.SECONDS);
+                System.out.printf("Resuming the search (%s) saved in %s: %d nodes "
+                        + "and %d solutions so far%n", solver.getOperation(), checkpoint,
+                        solver.getTotalVisited(), solver.getFound());
+            } else if (k + 1 < args.length) {
+                solver = new ResumableSolver(readPuzzle(args[k + 1]));
+                solver.setCheckpointFile(checkpoint, interval, TimeUnit.SECONDS);
+            } else {
+                System.err.println("There is no checkpoint to resume, and no puzzle.");
+                System.exit(1);
+                return;
+            }
+        } catch (ImportException e) {
+            System.err.println("An error occured while reading the puzzle.\n"
+                    + e.getMessage());
+            System.exit(1);
+            return;
+        } catch (IOException e) {
+            System.err.println("An error occured while reading the file.\n" + e);
+            System.exit(1);
+            return;
+        }
+
+        solver.setProgressListener(new SolverProgressListener() {
+            private long last = System.nanoTime();
+
+            public void progress(long nodes, int depth) {
+                if (System.nanoTime() - last < TimeUnit.SECONDS.toNanos(10))
+                    return;
+                last = System.nanoTime();
+                System.out.printf("%d nodes in this run, depth %d%n", nodes, depth);
+            }
+        });
+        // On Ctrl-C, stop the search and let it save its state
+        final Thread main = Thread.currentThread();
+        final Thread hook = new Thread() {
+            @Override
+            public void run() {
+                solver.cancel();
+                try {
+                    main.join(TimeUnit.SECONDS.toMillis(10));
+                } catch (InterruptedException e) {
+                    // Exit anyway
+                }
+            }
+        };
+        Runtime.getRuntime().addShutdownHook(hook);
+
+        long found;
+        if (solver.getOperation() != null)
+            found = solver.resume(null);
+        else if (count)
+            found = solver.countSolutions(limit);
+        else
+            found = solver.solve() ? 1 : 0;
+
+        if (solver.getSaveError() != null)
+            System.err.println("The checkpoint could not be written.\n"
+                    + solver.getSaveError());
+        if (!solver.isFinished()) {
+            System.out.println("Search stopped, saved to " + checkpoint);
+            return;
+        }
+        try {
+            Runtime.getRuntime().removeShutdownHook(hook);
+        } catch (IllegalStateException e) {
+            // Already shutting down
+        }
+        if (solver.getOperation().equals(SolverStats.SOLVE)) {
+            if (found > 0)
+                print(solver.getBoard());
+            else
+                System.out.println("No solution.");
+        } else {
+            System.out.println(found + " solutions");
+        }
+        System.out.printf("%d nodes in %.1f s%n", solver.getTotalVisited(),
+                solver.getTotalNanos() / 1e9);
+        try {
+            Files.deleteIfExists(checkpoint);
+        } catch (IOException e) {
+            System.err.println("The checkpoint could not be deleted.\n" + e);
+        }
+    }
+}
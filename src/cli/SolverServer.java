@@ -0,0 +1,547 @@
+package cli;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+
+import model.Difficulty;
+import model.ImportException;
+import model.LineFormat;
+import model.RandomGenerator;
+import model.SolutionCache;
+import model.SolverType;
+import model.SudokuBoard;
+import model.SudokuSolver;
+
+/**
+ * Headless solving service on a loopback socket, for other programs of the
+ * same machine. The protocol is made of text lines, in US-ASCII; puzzles
+ * and solutions are in the compact format of {@link LineFormat}:
+ * <ul>
+ * <li><code>PUZZLE</code>: solves a puzzle; the answer is its solution,
+ * <code>NONE</code> if it has none, <code>TIMEOUT</code> if the search went
+ * over the time limit, or <code>ERROR</code> and a message;</li>
+ * <li><code>BATCH n</code> followed by n puzzles: solves the puzzles, and
+ * answers with n lines in the same order;</li>
+ * <li><code>GENERATE size [difficulty]</code>: answers with a random puzzle,
+ * of a target {@link Difficulty} if one is given, up to 16*16 (larger
+ * puzzles take minutes to generate, and the generation cannot be
+ * interrupted);</li>
+ * <li><code>STATS</code>: answers with the statistics of the server;</li>
+ * <li><code>QUIT</code>: closes the connection.</li>
+ * </ul>
+ * Each connection is served by its own thread, up to a fixed number of
+ * connections, and several commands can be sent without waiting for the
+ * answers. The requests go through a bounded queue to a fixed pool of
+ * workers; when the queue is full, a request is answered with
+ * <code>ERROR busy</code> at once rather than waiting.
+ * <p>
+ * A worker takes the requests waiting in the queue together, up to a
+ * batch size which leaves a share of the backlog to the other workers, and
+ * lingers briefly for the next ones during a burst. The requests of a batch
+ * then run back to back on the same thread, on warm caches, with a single
+ * hand-off, and share the {@link SolutionCache} if there is one. The latency
+ * of each request, from its arrival to its answer, is recorded in a
+ * {@link LatencyHistogram}.
+ * <p>
+ * Usage: <code>java cli.SolverServer [-port N] [-threads N] [-solver TYPE]
+ * [-timeout SECONDS] [-cache N] [-report SECONDS]</code>
+ *
+ * @author Arthur Thouzeau
+ * @version 1.0
+ */
+public class SolverServer {
+    /**
+     * The port listened to by default.
+     */
+    public static final int DEFAULT_PORT = 7070;
+
+    private static final int MAX_CONNECTIONS = 64;
+    private static final int QUEUE_CAPACITY = 4096;
+    private static final int MAX_BATCH = 32;
+    private static final int MAX_GENERATE_SIZE = 16;
+    private static final long LINGER_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+    private static final int SOLVE = 0;
+    private static final int GENERATE = 1;
+
+    private final SolverType solverType;
+    private final int threads;
+    private final long timeoutMillis;
+    private final BlockingQueue<Request> queue =
+            new ArrayBlockingQueue<Request>(QUEUE_CAPACITY);
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final long startTime = System.nanoTime();
+    private SolutionCache cache;
+    private ExecutorService workers;
+    private ThreadPoolExecutor connections;
+
+    /**
+     * Initializes a new server. Nothing runs until {@link #serve} is called.
+     *
+     * @param solverType the algorithm used to solve the puzzles
+     * @param threads the number of worker threads
+     * @param timeoutMillis the time limit of a search, in milliseconds, or 0
+     *                      for no limit
+     */
+    public SolverServer(SolverType solverType, int threads, long timeoutMillis) {
+        this.solverType = solverType;
+        this.threads = threads;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Sets the cache of solutions looked up before solving each puzzle.
+     *
+     * @param cache the cache, or <code>null</code> to always solve
+     */
+    public void setCache(SolutionCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Starts the workers and serves the connections accepted on a socket,
+     * until the socket is closed.
+     *
+     * @param server the socket to accept connections on
+     * @throws IOException if the socket fails, other than by being closed
+     */
+    public void serve(ServerSocket server) throws IOException {
+        workers = Executors.newFixedThreadPool(threads);
+        for (int i = 0; i < threads; i++)
+            workers.execute(new Worker());
+        // Connections over the limit are refused rather than left waiting
+        connections = new ThreadPoolExecutor(0, MAX_CONNECTIONS, 60,
+                TimeUnit.SECONDS, new SynchronousQueue<Runnable>());
+        try {
+            while (!server.isClosed()) {
+                Socket socket;
+                try {
+                    socket = server.accept();
+                } catch (IOException e) {
+                    if (server.isClosed())
+                        break;
+                    throw e;
+                }
+                try {
+                    connections.execute(new Connection(socket));
+                } catch (RejectedExecutionException e) {
+                    socket.close();
+                }
+            }
+        } finally {
+            connections.shutdownNow();
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns a summary of the statistics of the server.
+     *
+     * @return the number of requests, the throughput, the batches and the
+     *         latencies
+     */
+    public String getStats() {
+        long n = requests.get();
+        long b = batches.get();
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+        return String.format("%d requests (%d rejected), %.1f requests/s, "
+                + "%d batches (%.1f requests per batch), latency %s",
+                n, rejected.get(), n / seconds, b,
+                b == 0 ? 0.0 : (double) (latency.getCount()) / b, latency);
+    }
+
+    /**
+     * Queues a request, or answers it at once if the queue is full.
+     *
+     * @param request the request
+     */
+    private void submit(Request request) {
+        requests.incrementAndGet();
+        if (!queue.offer(request)) {
+            rejected.incrementAndGet();
+            request.complete("ERROR busy");
+        }
+    }
+
+    /**
+     * Answers a request.
+     *
+     * @param request the request
+     * @return the answer, on one line
+     */
+    private String answer(Request request) {
+        try {
+            if (request.kind == GENERATE)
+                return generate(request.text);
+            return solve(request.text);
+        } catch (ImportException e) {
+            return "ERROR " + e.getMessage().replace('\n', ' ');
+        } catch (RuntimeException e) {
+            return "ERROR " + e;
+        }
+    }
+
+    /**
+     * Solves a puzzle, through the cache if there is one.
+     *
+     * @param line the puzzle, in the compact format
+     * @return the solution, or <code>NONE</code> or <code>TIMEOUT</code>
+     * @throws ImportException if the puzzle is not valid
+     */
+    private String solve(String line) throws ImportException {
+        SudokuBoard puzzle = LineFormat.parse(line);
+        if (!puzzle.checkInitialBoard())
+            return "NONE";
+        if (cache != null) {
+            try {
+                SudokuBoard solution = cache.solve(puzzle, solverType,
+                        timeoutMillis, TimeUnit.MILLISECONDS);
+                return solution != null ? LineFormat.format(solution) : "NONE";
+            } catch (TimeoutException e) {
+                return "TIMEOUT";
+            }
+        }
+        SudokuSolver solver = solverType.create(puzzle);
+        solver.setBudget(0, timeoutMillis, TimeUnit.MILLISECONDS);
+        if (solver.solve())
+            return LineFormat.format(solver.getBoard());
+        return solver.isAborted() ? "TIMEOUT" : "NONE";
+    }
+
+    /**
+     * Generates a random puzzle. The size is capped, since a worker cannot
+     * be taken back from a generation.
+     *
+     * @param args the size of the puzzle, and optionally its difficulty
+     * @return the puzzle, in the compact format, or <code>ERROR</code> and a
+     *         message if the arguments are not valid
+     */
+    private String generate(String args) {
+        String[] fields = args.trim().split("\\s+");
+        int size;
+        try {
+            size = Integer.parseInt(fields[0]);
+        } catch (NumberFormatException e) {
+            return "ERROR GENERATE needs a size";
+        }
+        if (fields.length > 2)
+            return "ERROR GENERATE takes a size and a difficulty";
+        int boxSize = (int) Math.sqrt(size);
+        if (size < 1 || size > MAX_GENERATE_SIZE || boxSize * boxSize != size)
+            return "ERROR size must be a square up to " + MAX_GENERATE_SIZE;
+        if (fields.length == 1)
+            return LineFormat.format(new RandomGenerator(size));
+        for (Difficulty difficulty : Difficulty.values()) {
+            if (difficulty.name().equalsIgnoreCase(fields[1]))
+                return LineFormat.format(new RandomGenerator(size, difficulty));
+        }
+        return "ERROR unknown difficulty " + fields[1];
+    }
+
+    /**
+     * A request, and its answer once the worker is done with it.
+     */
+    private static class Request {
+        private final int kind;
+        private final String text;
+        private final long arrival = System.nanoTime();
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile String answer;
+
+        /**
+         * Initializes a request.
+         *
+         * @param kind <code>SOLVE</code> or <code>GENERATE</code>
+         * @param text the puzzle, or the arguments of the generation
+         */
+        Request(int kind, String text) {
+            this.kind = kind;
+            this.text = text;
+        }
+
+        /**
+         * Sets the answer and wakes up the connection waiting for it.
+         *
+         * @param answer the answer
+         */
+        void complete(String answer) {
+            this.answer = answer;
+            done.countDown();
+        }
+
+        /**
+         * Waits for the answer.
+         *
+         * @return the answer
+         * @throws InterruptedException if interrupted while waiting
+         */
+        String await() throws InterruptedException {
+            done.await();
+            return answer;
+        }
+    }
+
+    /**
+     * Worker answering the requests of the queue, in batches.
+     */
+    private class Worker implements Runnable {
+        private final List<Request> batch = new ArrayList<Request>(MAX_BATCH);
+
+        public void run() {
+            try {
+                while (true) {
+                    batch.add(queue.take());
+                    // Leave a share of the backlog to the other workers
+                    int limit = Math.min(MAX_BATCH, 1 + queue.size() / threads);
+                    queue.drainTo(batch, limit - 1);
+                    if (batch.size() > 1 && batch.size() < limit) {
+                        // A burst: the next requests are probably close
+                        Request next = queue.poll(LINGER_NANOS, TimeUnit.NANOSECONDS);
+                        if (next != null) {
+                            batch.add(next);
+                            queue.drainTo(batch, limit - batch.size());
+                        }
+                    }
+                    batches.incrementAndGet();
+                    int answered = 0;
+                    try {
+                        for (Request request : batch) {
+                            String answer = "ERROR internal error";
+                            try {
+                                answer = answer(request);
+                            } finally {
+                                latency.record(System.nanoTime() - request.arrival);
+                                request.complete(answer);
+                                answered++;
+                            }
+                        }
+                    } finally {
+                        // An error escaped: its connections must not wait forever
+                        for (int k = answered; k < batch.size(); k++)
+                            batch.get(k).complete("ERROR internal error");
+                        batch.clear();
+                    }
+                }
+            } catch (InterruptedException e) {
+                // The server is shutting down
+            }
+        }
+    }
+
+    /**
+     * Reads the commands of a connection and writes the answers in the
+     * same order.
+     */
+    private class Connection implements Runnable {
+        private final Socket socket;
+
+        /**
+         * Initializes the handler of a connection.
+         *
+         * @param socket the socket of the connection
+         */
+        Connection(Socket socket) {
+            this.socket = socket;
+        }
+
+        public void run() {
+            try (Socket s = socket;
+                    BufferedReader in = new BufferedReader(new InputStreamReader(
+                            s.getInputStream(), StandardCharsets.US_ASCII));
+                    Writer out = new BufferedWriter(new OutputStreamWriter(
+                            s.getOutputStream(), StandardCharsets.US_ASCII))) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    line = line.trim();
+                    if (line.isEmpty())
+                        continue;
+                    if (line.equals("QUIT"))
+                        break;
+                    if (line.equals("STATS")) {
+                        out.write(getStats());
+                        out.write('\n');
+                    } else if (line.startsWith("BATCH")) {
+                        if (!batch(line, in, out))
+                            break;
+                    } else {
+                        boolean generate = line.equals("GENERATE")
+                                || line.startsWith("GENERATE ");
+                        Request request = generate
+                                ? new Request(GENERATE, line.substring(8))
+                                : new Request(SOLVE, line);
+                        submit(request);
+                        out.write(request.await());
+                        out.write('\n');
+                    }
+                    // Answers to commands sent together are sent together
+                    if (!in.ready())
+                        out.flush();
+                }
+                out.flush();
+            } catch (IOException e) {
+                // The client went away
+            } catch (InterruptedException e) {
+                // The server is shutting down
+            }
+        }
+
+        /**
+         * Reads the puzzles of a batch, queues them all, and writes their
+         * answers in order.
+         *
+         * @param command the <code>BATCH n</code> line
+         * @param in the input of the connection
+         * @param out the output of the connection
+         * @return <code>false</code> if the connection ended within the batch
+         * @throws IOException if an I/O error occurs
+         * @throws InterruptedException if interrupted while waiting
+         */
+        private boolean batch(String command, BufferedReader in, Writer out)
+                throws IOException, InterruptedException {
+            int n;
+            try {
+                n = Integer.parseInt(command.substring(5).trim());
+            } catch (NumberFormatException e) {
+                out.write("ERROR BATCH needs a number of puzzles\n");
+                return true;
+            }
+            List<Request> pending = new ArrayList<Request>();
+            for (int k = 0; k < n; k++) {
+                String line = in.readLine();
+                if (line == null)
+                    return false;
+                Request request = new Request(SOLVE, line.trim());
+                submit(request);
+                pending.add(request);
+            }
+            for (Request request : pending) {
+                out.write(request.await());
+                out.write('\n');
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Prints the usage of the server and exits.
+     */
+    private static void usage() {
+        System.err.println("Usage: java cli.SolverServer [-port N] [-threads N] "
+                + "[-solver TYPE] [-timeout SECONDS] [-cache N] [-report SECONDS]");
+        System.err.print("Solver types:");
+        for (SolverType type : SolverType.values())
+            System.err.print(" " + type.name());
+        System.err.println();
+        System.exit(2);
+    }
+
+    /**
+     * Runs the server on the loopback interface until it is killed. The
+     * statistics are printed regularly and on exit.
+     *
+     * @param args the options
+     */
+    public static void main(String[] args) {
+        int port = DEFAULT_PORT;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long timeout = 10;
+        int cacheSize = 0;
+        long report = 10;
+        SolverType solverType = SolverType.CONSTRAINT_PROPAGATION;
+        try {
+            if (args.length % 2 != 0)
+                usage();
+            for (int k = 0; k < args.length; k += 2) {
+                if (args[k].equals("-port"))
+                    port = Integer.parseInt(args[k + 1]);
+                else if (args[k].equals("-threads"))
+                    threads = Integer.parseInt(args[k + 1]);
+                else if (args[k].equals("-solver"))
+                    solverType = SolverType.valueOf(args[k + 1]);
+                else if (args[k].equals("-timeout"))
+                    timeout = Long.parseLong(args[k + 1]);
+                else if (args[k].equals("-cache"))
+                    cacheSize = Integer.parseInt(args[k + 1]);
+                else if (args[k].equals("-report"))
+                    report = Long.parseLong(args[k + 1]);
+                else
+                    usage();
+            }
+        } catch (IllegalArgumentException e) {
+            usage();
+        }
+        if (threads < 1 || timeout < 0 || cacheSize < 0 || report < 0)
+            usage();
+
+        final SolverServer server = new SolverServer(solverType, threads,
+                TimeUnit.SECONDS.toMillis(timeout));
+        if (cacheSize > 0) {
+            try {
+                server.setCache(SolutionCache.register(cacheSize));
+            } catch (JMException e) {
+                server.setCache(new SolutionCache(cacheSize));
+            }
+        }
+        if (report > 0) {
+            Executors.newSingleThreadScheduledExecutor(new DaemonThreads())
+                    .scheduleAtFixedRate(new Runnable() {
+                        public void run() {
+                            System.out.println(server.getStats());
+                        }
+                    }, report, report, TimeUnit.SECONDS);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            @Override
+            public void run() {
+                System.out.println(server.getStats());
+            }
+        });
+
+        try (ServerSocket socket = new ServerSocket(port, MAX_CONNECTIONS,
+                InetAddress.getLoopbackAddress())) {
+            System.out.println("Listening on " + socket.getLocalSocketAddress()
+                    + " with " + threads + " workers");
+            server.serve(socket);
+        } catch (IOException e) {
+            System.err.println("An error occured on the socket.\n" + e);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Factory of daemon threads, which do not keep the server alive.
+     */
+    private static class DaemonThreads implements ThreadFactory {
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "SolverServer report");
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
@@ -28,6 +28,8 @@ public class GenerationTask implements Callable<SudokuBoard> {
      * Returns the new randomly generated SudokuBoard
      * 
      * @return the new randomly generated SudokuBoard
+     * @throws java.util.concurrent.CancellationException if the thread is
+     *         interrupted before the puzzle is complete
      */
     @Override
     public SudokuBoard call() throws Exception {
@@ -0,0 +1,263 @@
+package gui;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import model.SudokuBoard;
+
+/**
+ * Bounded pool of ready-made random Sudokus, kept per board size. Whenever
+ * the number of puzzles of a size (ready or being generated) drops below the
+ * low-water mark, background threads generate new ones with a
+ * {@link GenerationTask} until the pool is full again. A request is then
+ * usually served immediately.
+ * <p>
+ * The pool records its hit rate, the number of puzzles generated per second
+ * and the generation latency, to help choosing its capacity.
+ *
+ * @author Arthur Thouzeau
+ * @version 1.0
+ */
+public class PuzzlePool {
+    private final int capacity;
+    private final int lowWaterMark;
+    private final ExecutorService workers;
+    private final ConcurrentMap<Integer, SizePool> pools =
+            new ConcurrentHashMap<Integer, SizePool>();
+    private final long startTime = System.nanoTime();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong generated = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong generationNanos = new AtomicLong();
+    private final AtomicLong maxGenerationNanos = new AtomicLong();
+
+    /**
+     * Initializes a new pool. No puzzle is generated until a size is
+     * requested or prefilled.
+     *
+     * @param capacity the maximum number of ready puzzles per size
+     * @param lowWaterMark the number of puzzles under which a refill starts
+     * @param threads the number of background generation threads
+     */
+    public PuzzlePool(int capacity, int lowWaterMark, int threads) {
+        this.capacity = capacity;
+        this.lowWaterMark = Math.min(lowWaterMark, capacity);
+        workers = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private final ThreadFactory defaultFactory =
+                    Executors.defaultThreadFactory();
+
+            public Thread newThread(Runnable r) {
+                Thread t = defaultFactory.newThread(r);
+                t.setDaemon(true);
+                t.setPriority(Thread.MIN_PRIORITY);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * Starts filling the pool of a size in the background.
+     *
+     * @param size the size of the Sudokus (number of rows)
+     */
+    public void prefill(int size) {
+        refill(poolOf(size));
+    }
+
+    /**
+     * Returns a ready puzzle without waiting.
+     *
+     * @param size the size of the Sudoku (number of rows)
+     * @return a new random Sudoku, or <code>null</code> if none is ready
+     */
+    public SudokuBoard poll(int size) {
+        SizePool pool = poolOf(size);
+        SudokuBoard sb = pool.ready.poll();
+        if (sb == null)
+            misses.incrementAndGet();
+        else
+            hits.incrementAndGet();
+        refill(pool);
+        return sb;
+    }
+
+    /**
+     * Waits for the next puzzle after a {@link #poll} which found none, off
+     * the event dispatch thread. The request was already counted as a miss
+     * by the poll, so it is not counted again.
+     *
+     * @param size the size of the Sudoku (number of rows)
+     * @param timeout how long to wait before giving up
+     * @param unit the unit of the timeout
+     * @return a new random Sudoku, or <code>null</code> if none was
+     *         generated in time
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public SudokuBoard await(int size, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        return poolOf(size).ready.poll(timeout, unit);
+    }
+
+    /**
+     * Returns the fraction of requests served immediately.
+     *
+     * @return the hit rate, between 0 and 1
+     */
+    public double getHitRate() {
+        long total = hits.get() + misses.get();
+        return total == 0 ? 0 : (double) hits.get() / total;
+    }
+
+    /**
+     * Returns the number of puzzles generated per second since the pool was
+     * created.
+     *
+     * @return the refill rate
+     */
+    public double getRefillRate() {
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+        return seconds == 0 ? 0 : generated.get() / seconds;
+    }
+
+    /**
+     * Returns the average time taken to generate a puzzle.
+     *
+     * @return the average generation latency in milliseconds
+     */
+    public double getAverageGenerationMillis() {
+        long count = generated.get();
+        return count == 0 ? 0 : generationNanos.get() / 1e6 / count;
+    }
+
+    /**
+     * Returns the longest time taken to generate a puzzle.
+     *
+     * @return the maximum generation latency in milliseconds
+     */
+    public double getMaxGenerationMillis() {
+        return maxGenerationNanos.get() / 1e6;
+    }
+
+    /**
+     * Returns the number of generations which threw an exception.
+     *
+     * @return the number of failed generations
+     */
+    public long getFailures() {
+        return failures.get();
+    }
+
+    /**
+     * Stops the background threads. Puzzles being generated are abandoned.
+     */
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    /**
+     * Returns a summary of the statistics of the pool.
+     *
+     * @return the statistics as a String
+     */
+    @Override
+    public String toString() {
+        return String.format("Hit rate: %.0f%% (%d/%d), refill rate: %.2f/s, "
+                + "generation: avg %.1f ms, max %.1f ms",
+                100 * getHitRate(), hits.get(), hits.get() + misses.get(),
+                getRefillRate(), getAverageGenerationMillis(),
+                getMaxGenerationMillis());
+    }
+
+    /**
+     * Returns the pool of a size, creating it if needed.
+     *
+     * @param size the size of the Sudokus (number of rows)
+     * @return the pool of this size
+     */
+    private SizePool poolOf(int size) {
+        SizePool pool = pools.get(size);
+        if (pool == null) {
+            SizePool created = new SizePool(size);
+            pool = pools.putIfAbsent(size, created);
+            if (pool == null)
+                pool = created;
+        }
+        return pool;
+    }
+
+    /**
+     * Schedules generations up to the capacity of a pool if it is below the
+     * low-water mark.
+     *
+     * @param pool the pool to refill
+     */
+    private void refill(SizePool pool) {
+        if (workers.isShutdown())
+            return;
+        synchronized (pool) {
+            int stock = pool.ready.size() + pool.pending.get();
+            if (stock >= lowWaterMark && stock > 0)
+                return;
+            for (int i = stock; i < capacity; i++) {
+                pool.pending.incrementAndGet();
+                workers.execute(new Refill(pool));
+            }
+        }
+    }
+
+    /**
+     * Ready puzzles of one size, and the number being generated.
+     */
+    private class SizePool {
+        private final int size;
+        private final BlockingQueue<SudokuBoard> ready =
+                new ArrayBlockingQueue<SudokuBoard>(capacity);
+        private final AtomicInteger pending = new AtomicInteger();
+
+        SizePool(int size) {
+            this.size = size;
+        }
+    }
+
+    /**
+     * Background generation of one puzzle for a pool.
+     */
+    private class Refill implements Runnable {
+        private final SizePool pool;
+
+        Refill(SizePool pool) {
+            this.pool = pool;
+        }
+
+        public void run() {
+            try {
+                long start = System.nanoTime();
+                SudokuBoard sb = new GenerationTask(pool.size).call();
+                long elapsed = System.nanoTime() - start;
+                generated.incrementAndGet();
+                generationNanos.addAndGet(elapsed);
+                long max = maxGenerationNanos.get();
+                while (elapsed > max
+                        && !maxGenerationNanos.compareAndSet(max, elapsed))
+                    max = maxGenerationNanos.get();
+                pool.ready.offer(sb);
+            } catch (CancellationException e) {
+                // The pool is shutting down: nothing was generated
+            } catch (Exception e) {
+                failures.incrementAndGet();
+            } finally {
+                pool.pending.decrementAndGet();
+            }
+        }
+    }
+}
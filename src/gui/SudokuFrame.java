@@ -4,23 +4,29 @@ import java.awt.BorderLayout;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.io.IOException;
+import java.util.List;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 import javax.swing.JButton;
+import javax.swing.JCheckBox;
+import javax.swing.JComboBox;
 import javax.swing.JFileChooser;
 import javax.swing.JFrame;
+import javax.swing.JLabel;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
 import javax.swing.filechooser.FileNameExtensionFilter;
 
 import model.ImportException;
-import model.RecursiveSolver;
+import model.SolverProgressListener;
+import model.SolverTraceListener;
+import model.SolverType;
 import model.SudokuBoard;
+import model.SudokuSolver;
 
 /**
  * This class represents the main window of the application.
@@ -31,7 +37,13 @@ import model.SudokuBoard;
  */
 @SuppressWarnings("serial")
 public class SudokuFrame extends JFrame {
-    private final int SIZE = 9;
+    private final int DEFAULT_SIZE = 9;
+    private final int POOL_CAPACITY = 10;
+    private final int POOL_LOW_WATER_MARK = 5;
+    private final long PROGRESS_INTERVAL = TimeUnit.MILLISECONDS.toNanos(100);
+    private final int FRAME_INTERVAL = 40; // in milliseconds, 25 frames per second
+    private final String[] BUDGET_LABELS = { "No limit", "5 s", "30 s", "2 min" };
+    private final long[] BUDGET_SECONDS = { 0, 5, 30, 120 };
     private FileNameExtensionFilter CSV_FILTER = 
             new FileNameExtensionFilter("CSV only", "csv");
     private JFileChooser fc = new JFileChooser();
@@ -41,7 +53,18 @@ public class SudokuFrame extends JFrame {
     private JButton generateButton = new JButton("Generate");
     private JButton solveButton = new JButton("Solve !");
     private JButton writeButton = new JButton("Export to CSV");
-    private SudokuPanel grid = new SudokuPanel(SIZE);
+    private JButton cancelButton = new JButton("Cancel");
+    private JPanel options = new JPanel();
+    private JComboBox<SolverType> solverChoice = 
+            new JComboBox<SolverType>(SolverType.values());
+    private JComboBox<String> budgetChoice = new JComboBox<String>(BUDGET_LABELS);
+    private JCheckBox watchBox = new JCheckBox("Watch");
+    private JLabel status = new JLabel(" ");
+    private SudokuModel gridModel = new SudokuModel(DEFAULT_SIZE);
+    private SudokuPanel grid = new SudokuPanel(gridModel);
+    private PuzzlePool pool = new PuzzlePool(POOL_CAPACITY, POOL_LOW_WATER_MARK, 1);
+    private SolveWorker solving;
+    private boolean generating;
 
     /**
      * Initializes the main frame. Set up the layout, add the different
@@ -51,31 +74,44 @@ public class SudokuFrame extends JFrame {
         setTitle("Sudoku Solver");
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         fc.setFileFilter(CSV_FILTER);
+        pool.prefill(DEFAULT_SIZE);
         
         importButton.addActionListener(new ImportButtonListener());        
-        ActionListener generateButtonListener = new GenerateButtonListener();
-        ActionListener busyGenerate = CursorController.createListener(this, generateButtonListener);
-        generateButton.addActionListener(busyGenerate);
-        ActionListener solveButtonListener = new SolveButtonListener();
-        ActionListener busySolve = CursorController.createListener(this, solveButtonListener);
-        solveButton.addActionListener(busySolve);
+        generateButton.addActionListener(new GenerateButtonListener());
+        solveButton.addActionListener(new SolveButtonListener());
+        cancelButton.addActionListener(new CancelButtonListener());
+        cancelButton.setEnabled(false);
         writeButton.addActionListener(new WriteButtonListener());
         controls.add(importButton);
         controls.add(generateButton);
         controls.add(solveButton);
+        controls.add(cancelButton);
         controls.add(writeButton);
+        solverChoice.setSelectedItem(SolverType.CONSTRAINT_PROPAGATION);
+        options.add(new JLabel("Solver:"));
+        options.add(solverChoice);
+        options.add(new JLabel("Time limit:"));
+        options.add(budgetChoice);
+        watchBox.setToolTipText("Show the steps of the search (except with "
+                + "the parallel and portfolio solvers)");
+        options.add(watchBox);
         
+        JPanel south = new JPanel(new BorderLayout());
+        south.add(options, BorderLayout.NORTH);
+        south.add(status, BorderLayout.SOUTH);
         container.add(controls, BorderLayout.NORTH);
         container.add(grid, BorderLayout.CENTER);
+        container.add(south, BorderLayout.SOUTH);
         setContentPane(container);
-        setSize(550, 530);
+        setSize(630, 590);
         setLocationRelativeTo(null);
         setVisible(true);
     }
 
     /**
      * Internal class implementing the ActionListener interface for the
-     * "Import CSV" button.
+     * "Import CSV" button. Any perfect-square size is accepted; the grid
+     * takes the size of the imported Sudoku.
      */
     class ImportButtonListener implements ActionListener {
         public void actionPerformed(ActionEvent arg0) {
@@ -85,16 +121,6 @@ public class SudokuFrame extends JFrame {
                     // Import CSV file
                     String inputFile = fc.getSelectedFile().getAbsolutePath();
                     SudokuBoard sb = SudokuBoard.importFromCSV(inputFile);
-                    // Check the dimension of the Sudoku
-                    if (sb.SIZE != SIZE) {
-                        String errorMsg = "Please check that the input CSV is a "
-                                + SIZE + "*" + SIZE + " grid.\n"
-                                + "This version of the program only accepts "
-                                + SIZE + "*" + SIZE + " Sudokus.";
-                        JOptionPane.showMessageDialog(fc, errorMsg, "Error",
-                                JOptionPane.ERROR_MESSAGE);
-                        return;
-                    }
                     // Check that SudokuBoard respects Sudoku rules
                     if (!sb.checkInitialBoard()) {
                         String errorMsg = "The initial grid seems incorrect.\n"
@@ -106,7 +132,7 @@ public class SudokuFrame extends JFrame {
                         return;
                     }
                     // Update GUI
-                    grid.updateCellsNew(sb);
+                    gridModel.load(sb);
                 } catch (ImportException e) {
                     String errorMsg = "An error occured during the import of the CSV file.\n";
                     errorMsg = errorMsg + e.getMessage();
@@ -119,49 +145,264 @@ public class SudokuFrame extends JFrame {
     
     /**
      * Internal class implementing the ActionListener interface for the
-     * "Generate" button. The duration of the current method to generate Sudokus
-     * being slightly unpredicatble, the generation is stopped after 5 seconds
-     * to let the user choose to restart under hopefully better conditions.
+     * "Generate" button. Puzzles are 9*9 and taken from a pool refilled in
+     * the background, so a click is usually served immediately. If the
+     * pool is empty, the next puzzle is awaited in the background, up to 5
+     * seconds, and loaded when it is ready; the window stays responsive
+     * meanwhile, but the grid cannot be replaced by another puzzle.
      */
     class GenerateButtonListener implements ActionListener {
         public void actionPerformed(ActionEvent arg0) {
-            ExecutorService executor = Executors.newSingleThreadExecutor();
-            Future<SudokuBoard> future = executor.submit(new GenerationTask(SIZE));
+            SudokuBoard sb = pool.poll(DEFAULT_SIZE);
+            generateButton.setToolTipText(pool.toString());
+            if (sb != null) {
+                gridModel.load(sb);
+                return;
+            }
+            generating = true;
+            importButton.setEnabled(false);
+            generateButton.setEnabled(false);
+            status.setText("Generating...");
+            new SwingWorker<SudokuBoard, Void>() {
+                @Override
+                protected SudokuBoard doInBackground() throws InterruptedException {
+                    return pool.await(DEFAULT_SIZE, 5, TimeUnit.SECONDS);
+                }
+
+                @Override
+                protected void done() {
+                    generating = false;
+                    generateButton.setToolTipText(pool.toString());
+                    // A search may have started meanwhile: its grid is kept
+                    if (solving == null) {
+                        status.setText(" ");
+                        importButton.setEnabled(true);
+                        generateButton.setEnabled(true);
+                    }
+                    try {
+                        SudokuBoard sb = get();
+                        if (sb == null) {
+                            String infoMsg = "No Sudoku is ready yet, please try again.";
+                            JOptionPane.showMessageDialog(container, infoMsg, "Info",
+                                    JOptionPane.INFORMATION_MESSAGE);
+                        } else if (solving == null) {
+                            gridModel.load(sb);
+                        }
+                    } catch (InterruptedException | ExecutionException e) {
+                        String errorMsg = "An error occured during the random generation.\n";
+                        errorMsg = errorMsg + e.toString();
+                        JOptionPane.showMessageDialog(container, errorMsg, "Error",
+                                JOptionPane.ERROR_MESSAGE);
+                    }
+                }
+            }.execute();
+        }
+    }
+
+    /**
+     * Enables the buttons changing the grid, or disables them while a
+     * search is running.
+     * 
+     * @param idle <code>true</code> if no search is running
+     */
+    private void setIdle(boolean idle) {
+        importButton.setEnabled(idle && !generating);
+        generateButton.setEnabled(idle && !generating);
+        solveButton.setEnabled(idle);
+        solverChoice.setEnabled(idle);
+        budgetChoice.setEnabled(idle);
+        watchBox.setEnabled(idle);
+        cancelButton.setEnabled(!idle);
+    }
+
+    /**
+     * Internal class implementing the ActionListener interface for the
+     * "Solve it!" button. The algorithm used is the one selected in the
+     * "Solver" list, limited to the time selected in the "Time limit" list.
+     * The search runs in the background, so that the window stays
+     * responsive and the search can be cancelled. If "Watch" is checked,
+     * the grid follows the search.
+     */
+    class SolveButtonListener implements ActionListener {
+        public void actionPerformed(ActionEvent arg0) {
+            SolverType type = (SolverType) solverChoice.getSelectedItem();
+            SudokuBoard puzzle = gridModel.getBoard();
+            SudokuSolver rs;
             try {
-                SudokuBoard sb = future.get(5, TimeUnit.SECONDS);
-                grid.updateCellsNew(sb);
-            } catch (TimeoutException e) {
-                String infoMsg = "Oops! Bad random initialization, please try again.";
-                JOptionPane.showMessageDialog(container, infoMsg, "Info",
-                        JOptionPane.INFORMATION_MESSAGE);
-            } catch (InterruptedException e) {
-                String errorMsg = "An error occured during the random generation.\n";
-                errorMsg = errorMsg + e.toString();
-                JOptionPane.showMessageDialog(container, errorMsg, "Error",
-                        JOptionPane.ERROR_MESSAGE);
-            } catch (ExecutionException e) {
-                String errorMsg = "An error occured during the random generation.\n";
-                errorMsg = errorMsg + e.toString();
-                JOptionPane.showMessageDialog(container, errorMsg, "Error",
+                rs = type.create(puzzle);
+            } catch (IllegalArgumentException e) {
+                // Some solvers are limited in size
+                JOptionPane.showMessageDialog(container, e.getMessage()
+                        + "\nPlease choose another solver.", "Error",
                         JOptionPane.ERROR_MESSAGE);
+                return;
             }
-            executor.shutdownNow();
+            long seconds = BUDGET_SECONDS[budgetChoice.getSelectedIndex()];
+            rs.setBudget(0, seconds, TimeUnit.SECONDS);
+            solving = new SolveWorker(rs, watchBox.isSelected() ? puzzle : null);
+            setIdle(false);
+            status.setText("Solving...");
+            solving.start();
         }
     }
 
     /**
      * Internal class implementing the ActionListener interface for the
-     * "Solve it!" button.
+     * "Cancel" button. It stops the running search, which ends as soon as
+     * the solver notices it.
      */
-    class SolveButtonListener implements ActionListener {
+    class CancelButtonListener implements ActionListener {
         public void actionPerformed(ActionEvent arg0) {
-            RecursiveSolver rs = new RecursiveSolver(grid.getSudokuBoard());
-            if (!rs.solve()) {
+            if (solving != null) {
+                cancelButton.setEnabled(false);
+                status.setText("Cancelling...");
+                solving.solver.cancel();
+            }
+        }
+    }
+
+    /**
+     * Background search of the grid. The progress reported by the solver
+     * is published at most every 100 ms, as the number of nodes visited
+     * and the current depth, and shown in the status line.
+     * <p>
+     * When the search is watched, each step of the solver is a single store
+     * in an array of the values to show, so the solver runs at nearly full
+     * speed. A timer copies the array to a preview of the grid at most 25
+     * times per second: the model only reports the cells which differ, so
+     * all the steps made during a frame come down to one repaint of the
+     * cells changed. A frame is read while the search goes on, so it may
+     * mix steps and break the rules; the preview leaves the board of the
+     * model untouched, and ends with the search.
+     */
+    class SolveWorker extends SwingWorker<Boolean, long[]>
+            implements SolverProgressListener, SolverTraceListener {
+        private final SudokuSolver solver;
+        private final int size;
+        private final AtomicIntegerArray shown;
+        private final Timer frames;
+        private long started;
+        private long lastPublished;
+
+        /**
+         * Initializes the search.
+         * 
+         * @param solver the solver to run
+         * @param puzzle the puzzle, if the search is watched, or
+         *               <code>null</code>
+         */
+        SolveWorker(SudokuSolver solver, SudokuBoard puzzle) {
+            this.solver = solver;
+            solver.setProgressListener(this);
+            size = gridModel.getSize();
+            if (puzzle == null) {
+                shown = null;
+                frames = null;
+                return;
+            }
+            shown = new AtomicIntegerArray(size * size);
+            for (int i = 0; i < size; i++) {
+                for (int j = 0; j < size; j++) {
+                    shown.set(i * size + j, puzzle.get(i, j));
+                }
+            }
+            solver.setTraceListener(this);
+            frames = new Timer(FRAME_INTERVAL, new ActionListener() {
+                public void actionPerformed(ActionEvent e) {
+                    showFrame();
+                }
+            });
+        }
+
+        /**
+         * Starts the search in the background, and the frames if the search
+         * is watched.
+         */
+        void start() {
+            if (frames != null)
+                frames.start();
+            execute();
+        }
+
+        public void assigned(int row, int col, int value) {
+            shown.lazySet(row * size + col, value);
+        }
+
+        public void cleared(int row, int col) {
+            shown.lazySet(row * size + col, 0);
+        }
+
+        /**
+         * Copies the values reached by the search to the preview of the
+         * grid. Only the cells whose value changed since the last frame are
+         * repainted.
+         */
+        private void showFrame() {
+            for (int i = 0; i < size; i++) {
+                for (int j = 0; j < size; j++) {
+                    gridModel.preview(shown.get(i * size + j), i, j);
+                }
+            }
+        }
+
+        @Override
+        protected Boolean doInBackground() {
+            started = System.nanoTime();
+            lastPublished = started;
+            return solver.solve();
+        }
+
+        public void progress(long nodes, int depth) {
+            long now = System.nanoTime();
+            if (now - lastPublished >= PROGRESS_INTERVAL) {
+                lastPublished = now;
+                publish(new long[] { nodes, depth, now - started });
+            }
+        }
+
+        @Override
+        protected void process(List<long[]> chunks) {
+            long[] last = chunks.get(chunks.size() - 1);
+            long rate = last[0] * TimeUnit.SECONDS.toNanos(1) / Math.max(1, last[2]);
+            status.setText("Solving... " + last[0] + " nodes, "
+                    + rate + " nodes/s, depth " + last[1]);
+        }
+
+        @Override
+        protected void done() {
+            solving = null;
+            setIdle(true);
+            if (frames != null) {
+                frames.stop();
+                gridModel.endPreview();
+            }
+            boolean solved;
+            try {
+                solved = get();
+            } catch (InterruptedException e) {
+                solved = false;
+            } catch (ExecutionException e) {
+                status.setText(" ");
+                String errorMsg = "An error occured during the search.\n"
+                        + e.getCause().toString();
+                JOptionPane.showMessageDialog(container, errorMsg, "Error",
+                        JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            status.setText(solver.getStats().toString());
+            solveButton.setToolTipText(solver.getStats().toString());
+            if (solver.isAborted()) {
+                JOptionPane.showMessageDialog(container, "The search was "
+                        + "stopped before its end (cancelled or out of time).",
+                        "Result", JOptionPane.INFORMATION_MESSAGE);
+                return;
+            }
+            if (!solved) {
                 JOptionPane.showMessageDialog(container, "No solution found!",
                         "Result", JOptionPane.INFORMATION_MESSAGE);
                 return;
             }
-            grid.updateCellsResults(rs.getBoard());
+            gridModel.setSolution(solver.getBoard());
         }
     }
 
@@ -175,7 +416,7 @@ public class SudokuFrame extends JFrame {
             if (result == JFileChooser.APPROVE_OPTION) {
                 try {
                     String outputFile = fc.getSelectedFile().getAbsolutePath();
-                    grid.getSudokuBoard().writeToCSV(outputFile);
+                    gridModel.getBoard().writeToCSV(outputFile);
                     String success = "The file has been written to:\n"
                             + outputFile;
                     JOptionPane.showMessageDialog(container, success,
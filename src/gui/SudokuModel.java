@@ -0,0 +1,204 @@
+package gui;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import model.SudokuBoard;
+
+/**
+ * Model of the grid displayed by a {@link SudokuPanel}: the board, and which
+ * of its cells are givens of the puzzle. Every change is reported to the
+ * listeners, cell by cell, so that the view only repaints what changed.
+ * <p>
+ * A preview can be shown over the board, for instance the steps of a
+ * search: while it is on, the view shows its values, which may break the
+ * rules of Sudoku, and the board itself is left untouched.
+ * <p>
+ * Like the Swing models, it is not thread-safe and is meant to be used on
+ * the event dispatch thread.
+ *
+ * @author Arthur Thouzeau
+ * @version 1.0
+ */
+public class SudokuModel {
+    private SudokuBoard board;
+    private boolean[] givens;
+    private int[] preview;
+    private final List<SudokuModelListener> listeners =
+            new ArrayList<SudokuModelListener>();
+
+    /**
+     * Initializes a model with an empty board.
+     *
+     * @param size the number of rows (or columns) of the board
+     */
+    public SudokuModel(int size) {
+        board = new SudokuBoard(size);
+        givens = new boolean[size * size];
+    }
+
+    /**
+     * Adds a listener notified of the changes of the model.
+     *
+     * @param listener the listener
+     */
+    public void addSudokuModelListener(SudokuModelListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener.
+     *
+     * @param listener the listener
+     */
+    public void removeSudokuModelListener(SudokuModelListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Returns the number of rows (or columns) of the board.
+     *
+     * @return the size of the board
+     */
+    public int getSize() {
+        return board.SIZE;
+    }
+
+    /**
+     * Returns the value shown in a cell: the value of the preview if one is
+     * on, or else the value of the board.
+     *
+     * @param row the cell's row
+     * @param col the cell's column
+     * @return the value of the cell, 0 if it is empty
+     */
+    public int get(int row, int col) {
+        if (preview != null)
+            return preview[row * board.SIZE + col];
+        return board.get(row, col);
+    }
+
+    /**
+     * Tells whether a cell is a given of the puzzle.
+     *
+     * @param row the cell's row
+     * @param col the cell's column
+     * @return <code>true</code> if the cell is a given
+     */
+    public boolean isGiven(int row, int col) {
+        return givens[row * board.SIZE + col];
+    }
+
+    /**
+     * Loads a new puzzle, whose non-empty cells become the givens. The
+     * board takes the size of the puzzle.
+     *
+     * @param puzzle the puzzle
+     */
+    public void load(SudokuBoard puzzle) {
+        preview = null;
+        if (puzzle.SIZE != board.SIZE) {
+            board = new SudokuBoard(puzzle);
+            givens = new boolean[puzzle.SIZE * puzzle.SIZE];
+        } else {
+            board.copyFrom(puzzle);
+        }
+        int size = board.SIZE;
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                givens[i * size + j] = board.get(i, j) != 0;
+            }
+        }
+        for (SudokuModelListener listener : listeners)
+            listener.boardChanged();
+    }
+
+    /**
+     * Changes the value of a cell which is not a given.
+     *
+     * @param value the new value, 0 to empty the cell
+     * @param row the cell's row
+     * @param col the cell's column
+     * @return <code>true</code> if the value changed;
+     *         <code>false</code> if it was the same or the cell is a given
+     */
+    public boolean set(int value, int row, int col) {
+        if (givens[row * board.SIZE + col] || board.get(row, col) == value)
+            return false;
+        board.set(value, row, col);
+        for (SudokuModelListener listener : listeners)
+            listener.cellChanged(row, col);
+        return true;
+    }
+
+    /**
+     * Fills the cells which are not givens with the values of a solution.
+     * Only the cells whose value changed are reported.
+     *
+     * @param solution the solution, of the size of the board
+     */
+    public void setSolution(SudokuBoard solution) {
+        int size = board.SIZE;
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                set(solution.get(i, j), i, j);
+            }
+        }
+    }
+
+    /**
+     * Changes the value shown in a cell which is not a given, without
+     * changing the board. The first call starts a preview showing the
+     * values of the board.
+     *
+     * @param value the value to show, 0 for an empty cell
+     * @param row the cell's row
+     * @param col the cell's column
+     */
+    public void preview(int value, int row, int col) {
+        int size = board.SIZE;
+        if (preview == null) {
+            preview = new int[size * size];
+            for (int i = 0; i < size; i++) {
+                for (int j = 0; j < size; j++) {
+                    preview[i * size + j] = board.get(i, j);
+                }
+            }
+        }
+        int index = row * size + col;
+        if (givens[index] || preview[index] == value)
+            return;
+        preview[index] = value;
+        for (SudokuModelListener listener : listeners)
+            listener.cellChanged(row, col);
+    }
+
+    /**
+     * Ends the preview, if any, and shows the board again. Only the cells
+     * whose value differed from the board are reported.
+     */
+    public void endPreview() {
+        if (preview == null)
+            return;
+        int[] shown = preview;
+        preview = null;
+        int size = board.SIZE;
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                if (shown[i * size + j] != board.get(i, j)) {
+                    for (SudokuModelListener listener : listeners)
+                        listener.cellChanged(i, j);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns a copy of the board, for instance to give it to a solver.
+     *
+     * @return the copy
+     */
+    public SudokuBoard getBoard() {
+        return new SudokuBoard(board);
+    }
+}
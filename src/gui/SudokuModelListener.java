@@ -0,0 +1,25 @@
+package gui;
+
+/**
+ * Listener notified of the changes of a {@link SudokuModel}. It is called on
+ * the event dispatch thread, like the model itself.
+ *
+ * @author Arthur Thouzeau
+ * @version 1.0
+ */
+public interface SudokuModelListener {
+
+    /**
+     * Called when the value of a cell changed.
+     *
+     * @param row the cell's row
+     * @param col the cell's column
+     */
+    void cellChanged(int row, int col);
+
+    /**
+     * Called when the whole board changed: a new puzzle, possibly of
+     * another size, was loaded.
+     */
+    void boardChanged();
+}
@@ -1,128 +1,246 @@
 package gui;
 
+import java.awt.BasicStroke;
 import java.awt.Color;
+import java.awt.Dimension;
 import java.awt.Font;
-import java.awt.GridLayout;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Stroke;
 
-import javax.swing.BorderFactory;
-import javax.swing.JLabel;
 import javax.swing.JPanel;
-import javax.swing.SwingConstants;
-
-import model.SudokuBoard;
 
 /**
- * 
- * This class represents a graphical Sudoku board as a two-dimensional array of
- * <code>JLabel</code>. It provides methods to initialize the labels and update
- * them.
- * 
+ *
+ * This class represents a graphical Sudoku board of any perfect-square size,
+ * the view of a {@link SudokuModel}. The cells, the box borders and the
+ * numbers are painted directly by {@link #paintComponent}, so the panel is a
+ * single component whatever the size of the board. Only the cells inside the
+ * clip are painted, and only the cells reported as changed by the model are
+ * repainted.
+ * <p>
+ * Givens are painted white, cells filled by the solver green and empty cells
+ * gray.
+ *
  * @author Arthur Thouzeau
  * @version 1.0
  */
 @SuppressWarnings("serial")
 public class SudokuPanel extends JPanel {
-    private final int SIZE;
-    private final int SQRTSIZE;
-    private final Font CELL_FONT = new Font("Arial", Font.PLAIN, 20);
+    private final Color EMPTY_COLOR = Color.LIGHT_GRAY;
+    private final Color GIVEN_COLOR = Color.WHITE;
     private final Color SOLVED_COLOR = new Color(129, 239, 97);
-    private JLabel[][] cells;
+    private final Font CELL_FONT = new Font("Arial", Font.PLAIN, 20);
+    private final int MARGIN = 4;
+    private final int PREFERRED_CELL = 40;
+    private final Stroke BOX_STROKE = new BasicStroke(3);
+    private final SudokuModel model;
+    private int size;
+    private int boxSize;
+    private String[] labels;
+
+    // Font and label widths, cached for the current cell size
+    private int fontCell = -1;
+    private Font font;
+    private FontMetrics metrics;
+    private int[] labelWidths;
 
     /**
-     * Initializes a new SudokuPanel. It adds all the JLabels and sets up the
-     * borders.
+     * Initializes a new SudokuPanel showing a model.
+     *
+     * @param model the model of the grid
      */
-    public SudokuPanel(int size) {
-        this.SIZE = size;
-        this.SQRTSIZE = (int) Math.sqrt(SIZE);
-        cells = new JLabel[SIZE][SIZE];
-        initLabels();
-        setLayout(new GridLayout(SQRTSIZE, SQRTSIZE));
-        for (int k = 0; k < SIZE; k++) {
-            JPanel box = new JPanel(new GridLayout(SQRTSIZE, SQRTSIZE));
-            box.setBorder(BorderFactory.createLineBorder(Color.BLACK, 2));
-            int boxRow = (k / SQRTSIZE) * SQRTSIZE;
-            int boxCol = (k % SQRTSIZE) * SQRTSIZE;
-            for (int i = 0; i < SQRTSIZE; i++) {
-                for (int j = 0; j < SQRTSIZE; j++) {
-                    box.add(cells[boxRow + i][boxCol + j]);
-                }
+    public SudokuPanel(SudokuModel model) {
+        this.model = model;
+        setOpaque(true);
+        setBackground(Color.WHITE);
+        resize();
+        model.addSudokuModelListener(new SudokuModelListener() {
+            public void cellChanged(int row, int col) {
+                repaintCell(row, col);
             }
-            add(box);
-        }
+
+            public void boardChanged() {
+                if (SudokuPanel.this.model.getSize() != size)
+                    resize();
+                repaint();
+            }
+        });
     }
 
     /**
-     * Initializes the JLabels. Sets the alignment, background color, font...
+     * Returns the model of the grid.
+     *
+     * @return the model
      */
-    private void initLabels() {
-        for (int i = 0; i < SIZE; i++) {
-            for (int j = 0; j < SIZE; j++) {
-                cells[i][j] = new JLabel();
-                cells[i][j].setHorizontalAlignment(SwingConstants.CENTER);
-                cells[i][j].setOpaque(true);
-                cells[i][j].setBackground(Color.WHITE);
-                cells[i][j].setBorder(BorderFactory.createLineBorder(Color.BLACK));
-                cells[i][j].setFont(CELL_FONT);
-            }
-        }
+    public SudokuModel getModel() {
+        return model;
     }
 
     /**
-     * Reset the graphical Sudoku grid when importing or generating a new
-     * Sudoku.
-     * 
-     * @param sb the new Sudoku to solve
+     * Takes the size of the board of the model.
      */
-    public void updateCellsNew(SudokuBoard sb) {
-        int value;
-        JLabel cell;
-        for (int i = 0; i < SIZE; i++) {
-            for (int j = 0; j < SIZE; j++) {
-                value = sb.get(i, j);
-                cell = cells[i][j];
-                if (value == 0) {
-                    cell.setText("");
-                    cell.setBackground(Color.LIGHT_GRAY);
-                } else {
-                    cell.setText(String.valueOf(value));
-                    cell.setBackground(Color.WHITE);
-                }
-            }
+    private void resize() {
+        size = model.getSize();
+        boxSize = (int) Math.sqrt(size);
+        labels = new String[size + 1];
+        labels[0] = "";
+        for (int v = 1; v <= size; v++) {
+            labels[v] = String.valueOf(v);
         }
+        fontCell = -1;
+        revalidate();
     }
-    
+
     /**
-     * Repaints the graphical Sudoku grid when a solution is found.
-     * 
-     * @param sb the Sudoku results
+     * Asks for a cell to be repainted.
+     *
+     * @param row the cell's row
+     * @param col the cell's column
      */
-    public void updateCellsResults(SudokuBoard sb) {
-        JLabel cell;
-        for (int i = 0; i < SIZE; i++) {
-            for (int j = 0; j < SIZE; j++) {
-                cell = cells[i][j];
-                if (cell.getText().equals(""))
-                    cell.setBackground(SOLVED_COLOR);
-                cell.setText(String.valueOf(sb.get(i, j)));
-            }
+    private void repaintCell(int row, int col) {
+        int cellSize = cellSize();
+        // The thick box borders overlap the cell by one pixel on each side
+        repaint(originX(cellSize) + col * cellSize - 2,
+                originY(cellSize) + row * cellSize - 2,
+                cellSize + 4, cellSize + 4);
+    }
+
+    /**
+     * Returns the width (and height) of a cell in pixels, so that the grid
+     * fits in the panel.
+     *
+     * @return the size of a cell
+     */
+    private int cellSize() {
+        int side = Math.min(getWidth(), getHeight()) - 2 * MARGIN;
+        return Math.max(1, side / size);
+    }
+
+    /**
+     * Returns the abscissa of the left border of the grid, centered in the
+     * panel.
+     *
+     * @param cellSize the size of a cell
+     * @return the abscissa of the grid
+     */
+    private int originX(int cellSize) {
+        return (getWidth() - cellSize * size) / 2;
+    }
+
+    /**
+     * Returns the ordinate of the top border of the grid, centered in the
+     * panel.
+     *
+     * @param cellSize the size of a cell
+     * @return the ordinate of the grid
+     */
+    private int originY(int cellSize) {
+        return (getHeight() - cellSize * size) / 2;
+    }
+
+    /**
+     * Returns the preferred size of the panel: a comfortable cell size for
+     * small boards, bounded for large ones.
+     *
+     * @return the preferred size
+     */
+    @Override
+    public Dimension getPreferredSize() {
+        int side = Math.min(PREFERRED_CELL * size, 800) + 2 * MARGIN;
+        return new Dimension(side, side);
+    }
+
+    /**
+     * Derives the font from the size of a cell, if it changed since the
+     * last paint, and measures the labels once.
+     *
+     * @param cellSize the size of a cell
+     */
+    private void updateFont(int cellSize) {
+        if (cellSize == fontCell)
+            return;
+        fontCell = cellSize;
+        // Labels of two digits or more need a smaller font to fit
+        float ratio = size < 10 ? 0.55f : 0.4f;
+        font = CELL_FONT.deriveFont(Math.max(6f, cellSize * ratio));
+        metrics = getFontMetrics(font);
+        labelWidths = new int[labels.length];
+        for (int v = 0; v < labels.length; v++) {
+            labelWidths[v] = metrics.stringWidth(labels[v]);
         }
     }
-    
+
     /**
-     * Returns the current Sudoku grid displayed.
-     * 
-     * @return the current Sudoku grid displayed
+     * Paints the cells inside the clip, their numbers, and the lines of the
+     * grid.
+     *
+     * @param g the graphics context
      */
-    public SudokuBoard getSudokuBoard() {
-        SudokuBoard sb = new SudokuBoard(SIZE);
-        for (int i = 0; i < SIZE; i++) {
-            for (int j = 0; j < SIZE; j++) {
-                String label = cells[i][j].getText();
-                int value = label.equals("") ? 0 : Integer.parseInt(label);
-                sb.set(value, i, j);
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        Graphics2D g2 = (Graphics2D) g;
+        g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING,
+                RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        int cellSize = cellSize();
+        int x0 = originX(cellSize);
+        int y0 = originY(cellSize);
+        updateFont(cellSize);
+
+        Rectangle clip = g.getClipBounds();
+        if (clip == null)
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
+        int firstRow = Math.max(0, (clip.y - y0) / cellSize - 1);
+        int lastRow = Math.min(size - 1, (clip.y + clip.height - y0) / cellSize + 1);
+        int firstCol = Math.max(0, (clip.x - x0) / cellSize - 1);
+        int lastCol = Math.min(size - 1, (clip.x + clip.width - x0) / cellSize + 1);
+
+        // Cells and numbers
+        g2.setFont(font);
+        int ascent = metrics.getAscent();
+        int textOffset = (cellSize - ascent - metrics.getDescent()) / 2 + ascent;
+        for (int i = firstRow; i <= lastRow; i++) {
+            int y = y0 + i * cellSize;
+            for (int j = firstCol; j <= lastCol; j++) {
+                int x = x0 + j * cellSize;
+                int value = model.get(i, j);
+                g2.setColor(model.isGiven(i, j) ? GIVEN_COLOR
+                        : value != 0 ? SOLVED_COLOR : EMPTY_COLOR);
+                g2.fillRect(x, y, cellSize, cellSize);
+                if (value > 0 && value <= size) {
+                    g2.setColor(Color.BLACK);
+                    g2.drawString(labels[value],
+                            x + (cellSize - labelWidths[value]) / 2, y + textOffset);
+                }
             }
         }
-        return sb;
+
+        // Thin lines between the cells, thick lines between the boxes
+        g2.setColor(Color.BLACK);
+        int top = y0 + firstRow * cellSize;
+        int bottom = y0 + (lastRow + 1) * cellSize;
+        int left = x0 + firstCol * cellSize;
+        int right = x0 + (lastCol + 1) * cellSize;
+        for (int i = firstRow; i <= lastRow + 1; i++) {
+            g2.drawLine(left, y0 + i * cellSize, right, y0 + i * cellSize);
+        }
+        for (int j = firstCol; j <= lastCol + 1; j++) {
+            g2.drawLine(x0 + j * cellSize, top, x0 + j * cellSize, bottom);
+        }
+        Stroke thin = g2.getStroke();
+        g2.setStroke(BOX_STROKE);
+        for (int i = firstRow; i <= lastRow + 1; i++) {
+            if (i % boxSize == 0)
+                g2.drawLine(left, y0 + i * cellSize, right, y0 + i * cellSize);
+        }
+        for (int j = firstCol; j <= lastCol + 1; j++) {
+            if (j % boxSize == 0)
+                g2.drawLine(x0 + j * cellSize, top, x0 + j * cellSize, bottom);
+        }
+        g2.setStroke(thin);
     }
 }
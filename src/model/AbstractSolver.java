@@ -0,0 +1,300 @@
+package model;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Base class of the solvers, keeping the counters of {@link SolverStats} and
+ * the limits of the search.
+ * <p>
+ * A solver increments the counters on its hot path, guarded by
+ * {@link SolverStats#ENABLED}, and wraps each public call between
+ * {@link #start()} and {@link #finish}, which builds the statistics of the
+ * call and notifies the listeners of {@link SolverMonitor}.
+ * <p>
+ * The search also calls {@link #checkpoint()} at every node. Every
+ * {@link #CHECK_INTERVAL} nodes, it checks whether the solver was cancelled
+ * or went over its budget, and reports the progress to the listener. Once
+ * the search is aborted, every call returns at once, and the result of the
+ * call is meaningless: see {@link #isAborted()}.
+ * <p>
+ * When enumerating, the search passes each solution to {@link #accept},
+ * and stops once it returns <code>true</code>.
+ *
+ * @author Arthur Thouzeau
+ * @version 1.0
+ */
+public abstract class AbstractSolver implements SudokuSolver {
+    /**
+     * The number of nodes between two checks of the limits.
+     */
+    public static final int CHECK_INTERVAL = 1024;
+
+    long nodes;
+    long backtracks;
+    int depth;
+    int maxDepth;
+    long checks;
+    boolean aborted;
+    boolean halted;
+    SolutionConsumer consumer;
+    private long ticks;
+    private long startTime;
+    private boolean published = true;
+    private SolverStats stats;
+    private volatile boolean cancelled;
+    private long maxNodes = Long.MAX_VALUE;
+    private long timeoutNanos;
+    private SolverProgressListener progressListener;
+    private SolverTraceListener traceListener;
+
+    /**
+     * Returns the statistics of the last call to {@link #solve()} or
+     * {@link #countSolutions()}.
+     *
+     * @return the statistics, or <code>null</code> if nothing was solved yet
+     */
+    @Override
+    public SolverStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Counts the solutions of the Sudoku, stopping once a limit is reached.
+     *
+     * @param limit the number of solutions after which the search stops,
+     *              or 0 for no limit
+     * @return the number of solutions found, at most <code>limit</code>
+     */
+    @Override
+    public long countSolutions(long limit) {
+        return enumerateSolutions(null, limit);
+    }
+
+    /**
+     * Aborts the search in progress, or the next one. A cancelled solver
+     * stays cancelled. This method can be called from any thread.
+     */
+    @Override
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Limits the next searches. Each call to {@link #solve()} or
+     * {@link #countSolutions()} is aborted once it has visited more nodes
+     * or taken more time than allowed.
+     *
+     * @param maxNodes the maximum number of nodes, or 0 for no limit
+     * @param timeout the maximum time, or 0 for no limit
+     * @param unit the unit of the timeout
+     */
+    @Override
+    public void setBudget(long maxNodes, long timeout, TimeUnit unit) {
+        this.maxNodes = maxNodes > 0 ? maxNodes : Long.MAX_VALUE;
+        this.timeoutNanos = unit.toNanos(timeout);
+    }
+
+    /**
+     * Sets the listener notified of the progress of the searches.
+     *
+     * @param listener the listener, or <code>null</code>
+     */
+    @Override
+    public void setProgressListener(SolverProgressListener listener) {
+        progressListener = listener;
+    }
+
+    /**
+     * Sets the listener notified of every step of the searches.
+     *
+     * @param listener the listener, or <code>null</code>
+     */
+    @Override
+    public void setTraceListener(SolverTraceListener listener) {
+        traceListener = listener;
+    }
+
+    /**
+     * Tells whether the last call was aborted by {@link #cancel()} or by the
+     * budget, in which case its result is meaningless.
+     *
+     * @return <code>true</code> if the last call was aborted;
+     *         <code>false</code> otherwise
+     */
+    @Override
+    public boolean isAborted() {
+        return aborted;
+    }
+
+    /**
+     * Stops notifying the listeners, for solvers used internally by another
+     * solver, which reports for them.
+     */
+    void unpublish() {
+        published = false;
+    }
+
+    /**
+     * Resets the counters and starts the clock at the start of a call.
+     */
+    final void start() {
+        nodes = 0;
+        backtracks = 0;
+        depth = 0;
+        maxDepth = 0;
+        checks = 0;
+        ticks = 0;
+        aborted = cancelled;
+        halted = false;
+        startTime = System.nanoTime();
+    }
+
+    /**
+     * Records the statistics at the end of a call and notifies the
+     * listeners.
+     *
+     * @param operation {@link SolverStats#SOLVE}, {@link SolverStats#COUNT}
+     *                  or {@link SolverStats#ENUMERATE}
+     * @param result the number of solutions found
+     */
+    final void finish(String operation, long result) {
+        consumer = null;
+        stats = new SolverStats(getClass().getSimpleName(), operation,
+                getBoard().SIZE, result, nodes, backtracks, maxDepth, checks,
+                System.nanoTime() - startTime, aborted);
+        if (published)
+            SolverMonitor.fire(stats);
+    }
+
+    /**
+     * Passes a solution to the consumer of the call, if any.
+     *
+     * @param solution the solved board
+     * @return <code>true</code> if the consumer asked to stop;
+     *         <code>false</code> otherwise
+     */
+    final boolean accept(SudokuBoard solution) {
+        if (consumer != null && !consumer.accept(solution))
+            halted = true;
+        return halted;
+    }
+
+    /**
+     * Returns the limit of a call counting solutions.
+     *
+     * @param limit the limit given by the caller, or 0 for no limit
+     * @return the number of solutions after which the search stops
+     */
+    static long toLimit(long limit) {
+        return limit > 0 ? limit : Long.MAX_VALUE;
+    }
+
+    /**
+     * Counts a node of the search and, every {@link #CHECK_INTERVAL} nodes,
+     * checks the limits and reports the progress.
+     *
+     * @return <code>true</code> if the search must stop;
+     *         <code>false</code> otherwise
+     */
+    final boolean checkpoint() {
+        if (aborted)
+            return true;
+        if (++ticks > maxNodes) {
+            aborted = true;
+            return true;
+        }
+        if ((ticks & (CHECK_INTERVAL - 1)) != 0)
+            return false;
+        if (isOverBudget(ticks)) {
+            aborted = true;
+            return true;
+        }
+        reportProgress(ticks, depth);
+        return false;
+    }
+
+    /**
+     * Checks whether the solver was cancelled, or went over its budget.
+     *
+     * @param visited the number of nodes visited
+     * @return <code>true</code> if the search must stop;
+     *         <code>false</code> otherwise
+     */
+    final boolean isOverBudget(long visited) {
+        return cancelled || visited > maxNodes || (timeoutNanos > 0
+                && System.nanoTime() - startTime > timeoutNanos);
+    }
+
+    /**
+     * Returns the number of nodes visited by the current or last call.
+     *
+     * @return the number of nodes visited
+     */
+    final long getVisited() {
+        return ticks;
+    }
+
+    /**
+     * Notifies the progress listener, if any.
+     *
+     * @param visited the number of nodes visited
+     * @param current the current depth
+     */
+    final void reportProgress(long visited, int current) {
+        SolverProgressListener listener = progressListener;
+        if (listener != null)
+            listener.progress(visited, current);
+    }
+
+    /**
+     * Notifies the trace listener, if any, of an assignment.
+     *
+     * @param row the cell's row
+     * @param col the cell's column
+     * @param value the number assigned
+     */
+    final void traceAssigned(int row, int col, int value) {
+        SolverTraceListener listener = traceListener;
+        if (listener != null)
+            listener.assigned(row, col, value);
+    }
+
+    /**
+     * Notifies the trace listener, if any, of a cleared cell.
+     *
+     * @param row the cell's row
+     * @param col the cell's column
+     */
+    final void traceCleared(int row, int col) {
+        SolverTraceListener listener = traceListener;
+        if (listener != null)
+            listener.cleared(row, col);
+    }
+
+    /**
+     * Tells whether a trace listener is set, to skip the work of preparing
+     * its notifications otherwise.
+     *
+     * @return <code>true</code> if a trace listener is set
+     */
+    final boolean isTraced() {
+        return traceListener != null;
+    }
+
+    /**
+     * Counts a node at the next depth of the search.
+     */
+    final void enter() {
+        nodes++;
+        if (++depth > maxDepth)
+            maxDepth = depth;
+    }
+
+    /**
+     * Counts a backtrack, going back to the previous depth.
+     */
+    final void backtrack() {
+        backtracks++;
+        depth--;
+    }
+}
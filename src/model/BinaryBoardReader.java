@@ -0,0 +1,135 @@
+package model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Arrays;
+
+/**
+ * This class reads Sudoku boards written by a {@link BinaryBoardWriter}.
+ * The channel is read by large blocks into a buffer, and each record is
+ * unpacked straight into the cells of a new board.
+ *
+ * @author Arthur Thouzeau
+ * @version 1.0
+ */
+public class BinaryBoardReader implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 17;
+
+    private final ReadableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private boolean eof;
+    private int flags;
+    private SudokuBoard puzzle;
+
+    /**
+     * Initializes a reader and checks the file header.
+     *
+     * @param channel the channel to read from
+     * @throws ImportException if the input is not a binary Sudoku file
+     * @throws IOException if an I/O error occurs
+     */
+    public BinaryBoardReader(ReadableByteChannel channel)
+            throws ImportException, IOException {
+        this.channel = channel;
+        buffer.flip();
+        byte[] magic = new byte[BinaryFormat.MAGIC.length];
+        if (!fill(magic.length))
+            throw new ImportException(BinaryFormat.MAGIC_ERROR);
+        buffer.get(magic);
+        if (!Arrays.equals(magic, BinaryFormat.MAGIC))
+            throw new ImportException(BinaryFormat.MAGIC_ERROR);
+    }
+
+    /**
+     * Reads the next board.
+     *
+     * @return the board, or <code>null</code> at the end of the input
+     * @throws ImportException if the record is truncated or not valid
+     * @throws IOException if an I/O error occurs
+     */
+    public SudokuBoard next() throws ImportException, IOException {
+        puzzle = null;
+        if (!fill(BinaryFormat.HEADER_LENGTH)) {
+            if (buffer.hasRemaining())
+                throw new ImportException(BinaryFormat.RECORD_ERROR);
+            return null;
+        }
+        int size = buffer.get(buffer.position()) & 0xFF;
+        flags = buffer.get(buffer.position() + 1) & 0xFF;
+        BinaryFormat.checkHeader(size, flags);
+        int prefix = BinaryFormat.prefixLength(size, flags);
+        if (!fill(prefix))
+            throw new ImportException(BinaryFormat.RECORD_ERROR);
+        int assigned = size * size;
+        if (prefix > BinaryFormat.HEADER_LENGTH) {
+            assigned = BinaryFormat.countMask(buffer,
+                    buffer.position() + BinaryFormat.HEADER_LENGTH, assigned);
+        }
+        if (!fill(BinaryFormat.recordLength(size, flags, assigned)))
+            throw new ImportException(BinaryFormat.RECORD_ERROR);
+
+        buffer.position(buffer.position() + BinaryFormat.HEADER_LENGTH);
+        SudokuBoard sb = new SudokuBoard(size);
+        if ((flags & BinaryFormat.GIVENS) != 0)
+            puzzle = new SudokuBoard(size);
+        BinaryFormat.decode(buffer, flags, sb, puzzle);
+        return sb;
+    }
+
+    /**
+     * Returns the flags of the last board read.
+     *
+     * @return a combination of {@link BinaryFormat#SOLVED} and
+     *         {@link BinaryFormat#GIVENS}
+     */
+    public int getFlags() {
+        return flags;
+    }
+
+    /**
+     * Returns the puzzle of the last board read, when it was written along
+     * with its givens.
+     *
+     * @return the puzzle, or <code>null</code> if the last record has no
+     *         givens
+     */
+    public SudokuBoard getPuzzle() {
+        return puzzle;
+    }
+
+    /**
+     * Closes the channel.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Reads from the channel until at least a number of bytes are
+     * available in the buffer, or the end of the input is reached.
+     *
+     * @param needed the number of bytes needed
+     * @return <code>true</code> if enough bytes are available;
+     *         <code>false</code> at the end of the input
+     * @throws IOException if an I/O error occurs
+     */
+    private boolean fill(int needed) throws IOException {
+        if (buffer.remaining() >= needed)
+            return true;
+        buffer.compact();
+        try {
+            while (!eof && buffer.position() < needed) {
+                if (channel.read(buffer) < 0)
+                    eof = true;
+            }
+        } finally {
+            buffer.flip();
+        }
+        return buffer.remaining() >= needed;
+    }
+}
@@ -0,0 +1,95 @@
+package model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * This class writes Sudoku boards one after the other in the binary format
+ * of {@link BinaryFormat}. The records are packed into a buffer which is
+ * written to the channel whenever it is full, so any number of boards can
+ * be written with a constant amount of memory.
+ *
+ * @author Arthur Thouzeau
+ * @version 1.0
+ */
+public class BinaryBoardWriter implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 17;
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private long count;
+
+    /**
+     * Initializes a writer and writes the file header.
+     *
+     * @param channel the channel to write to
+     */
+    public BinaryBoardWriter(WritableByteChannel channel) {
+        this.channel = channel;
+        buffer.put(BinaryFormat.MAGIC);
+    }
+
+    /**
+     * Writes a board, solved or not.
+     *
+     * @param sb the board to write, no larger than 255*255
+     * @throws IOException if an I/O error occurs
+     */
+    public void write(SudokuBoard sb) throws IOException {
+        write(sb, null);
+    }
+
+    /**
+     * Writes a solution along with the givens of its puzzle.
+     *
+     * @param solution the solved board, no larger than 255*255
+     * @param puzzle the puzzle, or <code>null</code> to write the solution
+     *               alone
+     * @throws IOException if an I/O error occurs
+     * @throws IllegalArgumentException if the solution holds a value out of
+     *                                  range, or does not match the puzzle
+     */
+    public void write(SudokuBoard solution, SudokuBoard puzzle) throws IOException {
+        if (buffer.remaining() < BinaryFormat.recordLength(solution, puzzle != null))
+            flush();
+        BinaryFormat.encode(solution, puzzle, buffer);
+        count++;
+    }
+
+    /**
+     * Returns the number of boards written.
+     *
+     * @return the number of boards written
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Writes the buffered records to the channel.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+
+    /**
+     * Writes the buffered records and closes the channel.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
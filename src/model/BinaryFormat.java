@@ -0,0 +1,311 @@
+package model;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * This class converts Sudoku boards to and from a compact binary format,
+ * used to store many boards in a single file.
+ * <p>
+ * A file starts with the four bytes <code>'S' 'D' 'K' 1</code> (the last one
+ * is the version of the format), followed by the records of the boards. Each
+ * record has a two-byte header giving the size of the board and its flags,
+ * then an optional mask of cells (one bit per cell) and the values of cells
+ * as <code>value - 1</code>, on the smallest number of bits holding
+ * <code>size - 1</code>: 4 bits for 9*9 and 16*16 boards. Bits are packed
+ * most significant first, and each part is padded to a whole byte.
+ * <ul>
+ * <li>An unsolved board is written as the mask of its assigned cells,
+ * followed by the values of these cells only. A 9*9 puzzle with 25 givens
+ * takes 26 bytes.</li>
+ * <li>A {@link #SOLVED} board is written as the values of all its cells,
+ * without mask.</li>
+ * <li>A solved board with {@link #GIVENS} is written as the mask of the
+ * cells given in its puzzle, followed by the values of all its cells. A
+ * puzzle and its solution are then stored together for little more than
+ * the cost of the solution alone.</li>
+ * </ul>
+ * Boards up to 255*255 fit in this format.
+ *
+ * @author Arthur Thouzeau
+ * @version 1.0
+ */
+public final class BinaryFormat {
+    /**
+     * Flag set when every cell of the board is assigned.
+     */
+    public static final int SOLVED = 1;
+    /**
+     * Flag set when the record is followed by the mask of the givens.
+     */
+    public static final int GIVENS = 2;
+
+    /**
+     * The largest board size which can be written in this format.
+     */
+    public static final int MAX_SIZE = 255;
+
+    static final byte[] MAGIC = { 'S', 'D', 'K', 1 };
+    static final int HEADER_LENGTH = 2;
+
+    static final String MAGIC_ERROR =
+            "Please check the file is a binary Sudoku file.";
+    static final String RECORD_ERROR =
+            "Please check the file is complete and not corrupted.";
+
+    /**
+     * Constructor
+     */
+    private BinaryFormat() {}
+
+    /**
+     * Returns the number of bits used by the value of a cell.
+     *
+     * @param size the size of the board (number of rows)
+     * @return the number of bits per value
+     */
+    public static int bitsPerCell(int size) {
+        return Math.max(1, 32 - Integer.numberOfLeadingZeros(size - 1));
+    }
+
+    /**
+     * Returns the number of bytes of a record, header included.
+     *
+     * @param size the size of the board (number of rows)
+     * @param flags the flags of the record
+     * @param assigned the number of assigned cells, used for unsolved boards
+     * @return the length of the record in bytes
+     */
+    public static int recordLength(int size, int flags, int assigned) {
+        int cells = size * size;
+        int length = HEADER_LENGTH;
+        if ((flags & (SOLVED | GIVENS)) != SOLVED)
+            length += (cells + 7) / 8;
+        if ((flags & SOLVED) == 0)
+            cells = assigned;
+        return length + (cells * bitsPerCell(size) + 7) / 8;
+    }
+
+    /**
+     * Returns the number of bytes of the record of a board.
+     *
+     * @param sb the board
+     * @param givens <code>true</code> if the board is written with the
+     *               givens of its puzzle
+     * @return the length of the record in bytes
+     */
+    public static int recordLength(SudokuBoard sb, boolean givens) {
+        int assigned = countAssigned(sb);
+        int flags = assigned == sb.SIZE * sb.SIZE ? SOLVED : 0;
+        if (givens)
+            flags |= GIVENS;
+        return recordLength(sb.SIZE, flags, assigned);
+    }
+
+    /**
+     * Writes the record of a board.
+     *
+     * @param sb the board to write, no larger than 255*255
+     * @param puzzle the puzzle whose givens are recorded along a solved
+     *               board, or <code>null</code> to write the board alone
+     * @param out the buffer to write to, with at least
+     *            {@link #recordLength(SudokuBoard, boolean)} bytes remaining
+     * @throws IllegalArgumentException if the board is too large, holds a
+     *                                  value outside of 0 to SIZE, or the
+     *                                  puzzle does not match the board
+     */
+    public static void encode(SudokuBoard sb, SudokuBoard puzzle, ByteBuffer out) {
+        int size = sb.SIZE;
+        if (size > MAX_SIZE)
+            throw new IllegalArgumentException("Board too large: " + size);
+        if (puzzle != null && puzzle.SIZE != size)
+            throw new IllegalArgumentException("The board is not a solution of the puzzle");
+        // Checked before writing anything, so that a rejected board leaves
+        // no partial record: a value out of range would also be packed over
+        // the bits of the other cells
+        int assigned = 0;
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                int value = sb.get(i, j);
+                if (value < 0 || value > size)
+                    throw new IllegalArgumentException("Value out of range at ("
+                            + i + ", " + j + "): " + value);
+                if (value != 0)
+                    assigned++;
+                if (puzzle != null && puzzle.get(i, j) != 0
+                        && puzzle.get(i, j) != value)
+                    throw new IllegalArgumentException("The board is not a solution of the puzzle");
+            }
+        }
+        boolean solved = assigned == size * size;
+        if (puzzle != null && !solved)
+            throw new IllegalArgumentException("The board is not a solution of the puzzle");
+        SudokuBoard masked = puzzle != null ? puzzle : solved ? null : sb;
+
+        out.put((byte) size);
+        out.put((byte) ((solved ? SOLVED : 0) | (puzzle != null ? GIVENS : 0)));
+        int acc = 0;
+        int filled = 0;
+        if (masked != null) {
+            for (int i = 0; i < size; i++) {
+                for (int j = 0; j < size; j++) {
+                    acc = (acc << 1) | (masked.get(i, j) != 0 ? 1 : 0);
+                    if (++filled == 8) {
+                        out.put((byte) acc);
+                        filled = 0;
+                    }
+                }
+            }
+            if (filled > 0)
+                out.put((byte) (acc << (8 - filled)));
+            filled = 0;
+        }
+
+        int bits = bitsPerCell(size);
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                int value = sb.get(i, j);
+                if (value == 0)
+                    continue;
+                acc = (acc << bits) | (value - 1);
+                filled += bits;
+                while (filled >= 8) {
+                    filled -= 8;
+                    out.put((byte) (acc >>> filled));
+                }
+            }
+        }
+        if (filled > 0)
+            out.put((byte) (acc << (8 - filled)));
+    }
+
+    /**
+     * Reads the record of a board. The whole record must be available in
+     * the buffer, which is left after it.
+     *
+     * @param in the buffer to read from
+     * @return the board
+     * @throws ImportException if the record is not valid, or is cut short
+     *                         by the end of the buffer
+     */
+    public static SudokuBoard decode(ByteBuffer in) throws ImportException {
+        try {
+            int size = in.get() & 0xFF;
+            int flags = in.get() & 0xFF;
+            checkHeader(size, flags);
+            SudokuBoard sb = new SudokuBoard(size);
+            decode(in, flags, sb, null);
+            return sb;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException
+                | IllegalArgumentException e) {
+            // A truncated record
+            throw new ImportException(RECORD_ERROR);
+        }
+    }
+
+    /**
+     * Checks the header of a record.
+     *
+     * @param size the size of the board
+     * @param flags the flags of the record
+     * @throws ImportException if the size is not a perfect square or the
+     *                         flags are not valid
+     */
+    static void checkHeader(int size, int flags) throws ImportException {
+        int boxSize = (int) Math.sqrt(size);
+        if (size == 0 || boxSize * boxSize != size
+                || (flags & ~(SOLVED | GIVENS)) != 0 || flags == GIVENS)
+            throw new ImportException(RECORD_ERROR);
+    }
+
+    /**
+     * Reads the body of a record into a board, which is entirely
+     * overwritten. The buffer must be positioned after the header of the
+     * record, with the whole record available, and is left after it.
+     *
+     * @param in the buffer to read from
+     * @param flags the flags of the record
+     * @param sb the board to fill, of the size of the record
+     * @param puzzle the board to fill with the givens of a record with
+     *               {@link #GIVENS}, or <code>null</code>
+     * @throws ImportException if a value is not valid
+     */
+    static void decode(ByteBuffer in, int flags, SudokuBoard sb, SudokuBoard puzzle)
+            throws ImportException {
+        int size = sb.SIZE;
+        int mask = -1;
+        if ((flags & (SOLVED | GIVENS)) != SOLVED) {
+            mask = in.position();
+            in.position(mask + (size * size + 7) / 8);
+        }
+        int bits = bitsPerCell(size);
+        int acc = 0;
+        int available = 0;
+        for (int i = 0, cell = 0; i < size; i++) {
+            for (int j = 0; j < size; j++, cell++) {
+                boolean inMask = mask < 0
+                        || (in.get(mask + (cell >>> 3)) & (0x80 >>> (cell & 7))) != 0;
+                int value = 0;
+                if (inMask || (flags & SOLVED) != 0) {
+                    while (available < bits) {
+                        acc = (acc << 8) | (in.get() & 0xFF);
+                        available += 8;
+                    }
+                    available -= bits;
+                    value = ((acc >>> available) & ((1 << bits) - 1)) + 1;
+                    if (value > size)
+                        throw new ImportException(RECORD_ERROR);
+                }
+                sb.set(value, i, j);
+                if (puzzle != null)
+                    puzzle.set(inMask ? value : 0, i, j);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of bytes of a record which must be available to
+     * compute its length: the header and the mask, if any.
+     *
+     * @param size the size of the board (number of rows)
+     * @param flags the flags of the record
+     * @return the length of the prefix in bytes
+     */
+    static int prefixLength(int size, int flags) {
+        if ((flags & (SOLVED | GIVENS)) == SOLVED)
+            return HEADER_LENGTH;
+        return HEADER_LENGTH + (size * size + 7) / 8;
+    }
+
+    /**
+     * Counts the bits set in the mask of a record.
+     *
+     * @param in the buffer holding the mask
+     * @param start the position of the mask
+     * @param cells the number of cells of the board
+     * @return the number of cells in the mask
+     */
+    static int countMask(ByteBuffer in, int start, int cells) {
+        int count = 0;
+        for (int k = 0; k < (cells + 7) / 8; k++)
+            count += Integer.bitCount(in.get(start + k) & 0xFF);
+        return count;
+    }
+
+    /**
+     * Counts the assigned cells of a board.
+     *
+     * @param sb the board
+     * @return the number of cells different from 0
+     */
+    private static int countAssigned(SudokuBoard sb) {
+        int count = 0;
+        for (int i = 0; i < sb.SIZE; i++) {
+            for (int j = 0; j < sb.SIZE; j++) {
+                if (sb.get(i, j) != 0)
+                    count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,264 @@
+package model;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * This class reads Sudoku grids written as CSV, one row of the grid per
+ * line and values separated by commas. It follows the rules of the CSV
+ * import of {@link SudokuBoard}: whitespaces around values are ignored, a
+ * value may be quoted, and the number of columns and rows must match.
+ * <p>
+ * An input may also hold several grids one after the other, read one at a
+ * time by {@link #readNext}.
+ * <p>
+ * The characters are read through a reusable buffer and the values are
+ * decoded in place, so no object is created per row or per cell. The same
+ * reader can be {@link #reset} on another input, which avoids any
+ * allocation when importing many files.
+ *
+ * @author Arthur Thouzeau
+ * @version 1.0
+ */
+public class CSVGridReader {
+    static final String EMPTY_ERROR = "Please check that the file is not empty.";
+    static final String COLUMNS_ERROR = "Please check the number of columns.\n"
+            + "It should be a perfect square.";
+    static final String VALUE_ERROR = "Please check all values are integer.";
+
+    private final char[] buffer = new char[8192];
+    private Reader in;
+    private int position;
+    private int limit;
+    private int[] values = new int[64];
+    private boolean badValue;
+    private boolean blank;
+    private int lineNumber;
+
+    /**
+     * Initializes a new reader.
+     *
+     * @param in the input
+     */
+    public CSVGridReader(Reader in) {
+        this.in = in;
+    }
+
+    /**
+     * Starts reading another input, keeping the buffers of this reader.
+     *
+     * @param in the new input
+     */
+    public void reset(Reader in) {
+        this.in = in;
+        position = 0;
+        limit = 0;
+        lineNumber = 0;
+    }
+
+    /**
+     * Returns the number of lines read so far. After an
+     * {@link ImportException}, it is the number of the line at fault.
+     *
+     * @return the number of lines read
+     */
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * Reads a grid which spans the whole input. The size of the grid is
+     * given by the number of columns of the first row.
+     *
+     * @return the new SudokuBoard
+     * @throws ImportException if the input is empty or the grid is not valid
+     * @throws IOException if an I/O error occurs
+     */
+    public SudokuBoard read() throws ImportException, IOException {
+        int count = readRow();
+        if (count < 0) {
+            throw new ImportException(EMPTY_ERROR);
+        }
+        // Check that the number of columns is a perfect square.
+        int tst = (int) Math.sqrt(count);
+        if (tst * tst != count) {
+            throw new ImportException(COLUMNS_ERROR);
+        }
+        SudokuBoard sb = new SudokuBoard(count);
+        fill(sb, count, false);
+        return sb;
+    }
+
+    /**
+     * Reads the next grid of an input holding several grids one after the
+     * other, possibly separated by blank lines. The size of each grid is
+     * given by the number of columns of its first row, and the input is
+     * left after its last row.
+     *
+     * @return the new SudokuBoard, or <code>null</code> at the end of the
+     *         input
+     * @throws ImportException if the grid is not valid
+     * @throws IOException if an I/O error occurs
+     */
+    public SudokuBoard readNext() throws ImportException, IOException {
+        int count;
+        do {
+            count = readRow();
+        } while (count >= 0 && blank);
+        if (count < 0)
+            return null;
+        int tst = (int) Math.sqrt(count);
+        if (tst * tst != count) {
+            throw new ImportException(COLUMNS_ERROR);
+        }
+        SudokuBoard sb = new SudokuBoard(count);
+        fill(sb, count, true);
+        return sb;
+    }
+
+    /**
+     * Reads a grid which spans the whole input into an existing board,
+     * which is entirely overwritten.
+     *
+     * @param sb the board to fill
+     * @throws ImportException if the input is empty or the grid is not valid
+     *                         or not of the size of the board
+     * @throws IOException if an I/O error occurs
+     */
+    public void read(SudokuBoard sb) throws ImportException, IOException {
+        int count = readRow();
+        if (count < 0) {
+            throw new ImportException(EMPTY_ERROR);
+        }
+        fill(sb, count, false);
+    }
+
+    /**
+     * Copies the rows of the input into a board, the first row of which has
+     * already been read. Checks there are exactly as many rows as columns,
+     * and, unless more grids may follow, that nothing comes after them.
+     *
+     * @param sb the board to fill
+     * @param count the number of columns of the first row
+     * @param next <code>true</code> if more grids may follow
+     * @throws ImportException if the grid is not valid
+     * @throws IOException if an I/O error occurs
+     */
+    private void fill(SudokuBoard sb, int count, boolean next)
+            throws ImportException, IOException {
+        int countLines = 0;
+        do {
+            if (next && blank) {
+                throw new ImportException("Please check the grid has " + sb.SIZE
+                        + " rows. (To match the number of columns)");
+            }
+            if (count != sb.SIZE) {
+                throw new ImportException("Please check each row has " + sb.SIZE
+                        + " columns. (Same as first row)");
+            }
+            if (badValue) {
+                throw new ImportException(VALUE_ERROR);
+            }
+            for (int j = 0; j < count; j++) {
+                sb.set(values[j], countLines, j);
+            }
+            countLines++;
+        } while (countLines < sb.SIZE && (count = readRow()) >= 0);
+
+        // Check there are as many rows as columns
+        if (countLines < sb.SIZE || (!next && readRow() >= 0)) {
+            throw new ImportException("Please check the input CSV file has "
+                    + sb.SIZE + " rows. (To match the number of columns)");
+        }
+    }
+
+    /**
+     * Reads one line of the input and decodes its values. A value which is
+     * not an integer is stored as 0 and recorded in <code>badValue</code>,
+     * so that the number of columns can be checked first. A line holding
+     * nothing but whitespaces is recorded in <code>blank</code>.
+     *
+     * @return the number of values of the line, or <code>-1</code> at the
+     *         end of the input
+     * @throws IOException if an I/O error occurs
+     */
+    private int readRow() throws IOException {
+        if (position == limit && !fillBuffer())
+            return -1;
+        badValue = false;
+        lineNumber++;
+        int count = 0;
+        boolean empty = true;
+        boolean quoted = false;
+        boolean negative = false;
+        boolean digits = false;
+        // 0: before the value, 1: after the sign, 2: in the digits, 3: after
+        int state = 0;
+        long value = 0;
+        while (true) {
+            int c = -1;
+            if (position < limit || fillBuffer())
+                c = buffer[position++];
+            if (c > ' ')
+                empty = false;
+            boolean endOfLine = c == -1 || (!quoted && (c == '\n' || c == '\r'));
+            if (endOfLine || (!quoted && c == ',')) {
+                if (count == values.length) {
+                    int[] larger = new int[2 * count];
+                    System.arraycopy(values, 0, larger, 0, count);
+                    values = larger;
+                }
+                if (!digits || quoted)
+                    badValue = true;
+                values[count++] = digits ? (int) (negative ? -value : value) : 0;
+                if (endOfLine) {
+                    if (c == '\r' && (position < limit || fillBuffer())
+                            && buffer[position] == '\n')
+                        position++;
+                    blank = empty && count == 1;
+                    return count;
+                }
+                negative = false;
+                digits = false;
+                state = 0;
+                value = 0;
+            } else if (c == '"') {
+                quoted = !quoted;
+            } else if (c <= ' ') {
+                if (state == 1)
+                    badValue = true;
+                else if (state == 2)
+                    state = 3;
+            } else if (c >= '0' && c <= '9' && (state == 1 || state == 2 || state == 0)) {
+                value = 10 * value + c - '0';
+                if (value > (negative ? 1L << 31 : Integer.MAX_VALUE)) {
+                    badValue = true;
+                    value = 0;
+                }
+                digits = true;
+                state = 2;
+            } else if ((c == '-' || c == '+') && state == 0) {
+                negative = c == '-';
+                state = 1;
+            } else {
+                badValue = true;
+            }
+        }
+    }
+
+    /**
+     * Reads the next characters of the input into the buffer.
+     *
+     * @return <code>false</code> at the end of the input
+     * @throws IOException if an I/O error occurs
+     */
+    private boolean fillBuffer() throws IOException {
+        int read;
+        do {
+            read = in.read(buffer, 0, buffer.length);
+        } while (read == 0);
+        position = 0;
+        limit = Math.max(read, 0);
+        return read > 0;
+    }
+}
@@ -0,0 +1,109 @@
+package model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * This class writes Sudoku grids as CSV, one row of the grid per line and
+ * values separated by commas, in the format read by {@link CSVGridReader}.
+ * The values are formatted straight into a reusable character buffer, which
+ * is written to the output whenever it is full.
+ *
+ * @author Arthur Thouzeau
+ * @version 1.0
+ */
+public class CSVGridWriter implements Closeable {
+    private final char[] buffer = new char[8192];
+    private final Writer out;
+    private int position;
+
+    /**
+     * Initializes a new writer.
+     *
+     * @param out the output
+     */
+    public CSVGridWriter(Writer out) {
+        this.out = out;
+    }
+
+    /**
+     * Writes a grid, one line per row.
+     *
+     * @param sb the board to write
+     * @throws IOException if an I/O error occurs
+     */
+    public void write(SudokuBoard sb) throws IOException {
+        for (int i = 0; i < sb.SIZE; i++) {
+            for (int j = 0; j < sb.SIZE; j++) {
+                // An int takes at most 11 characters, plus the separator
+                if (buffer.length - position < 12)
+                    flushBuffer();
+                if (j > 0)
+                    buffer[position++] = ',';
+                writeInt(sb.get(i, j));
+            }
+            if (position == buffer.length)
+                flushBuffer();
+            buffer[position++] = '\n';
+        }
+    }
+
+    /**
+     * Writes the buffered characters and flushes the output.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    public void flush() throws IOException {
+        flushBuffer();
+        out.flush();
+    }
+
+    /**
+     * Writes the buffered characters and closes the output.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flushBuffer();
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Formats an integer into the buffer, which has room for it.
+     *
+     * @param value the integer
+     */
+    private void writeInt(int value) {
+        long v = value;
+        if (v < 0) {
+            buffer[position++] = '-';
+            v = -v;
+        }
+        int end = position;
+        do {
+            end++;
+            v /= 10;
+        } while (v != 0);
+        v = Math.abs((long) value);
+        for (int k = end - 1; k >= position; k--) {
+            buffer[k] = (char) ('0' + v % 10);
+            v /= 10;
+        }
+        position = end;
+    }
+
+    /**
+     * Writes the buffered characters to the output.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    private void flushBuffer() throws IOException {
+        out.write(buffer, 0, position);
+        position = 0;
+    }
+}
@@ -0,0 +1,502 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Canonical form of a Sudoku under the symmetries keeping the rules:
+ * transposition, permutations of the bands, of the rows within a band, of
+ * the stacks and of the columns within a stack, and relabeling of the
+ * numbers. Two puzzles which are transformations of each other have the same
+ * canonical form, and the solution of one gives the solution of the other.
+ * <p>
+ * The canonical board is the smallest of all the transformed boards, read
+ * row by row, where the numbers are relabeled in their order of appearance
+ * and empty cells come after every number. It is built one row at a time:
+ * each row is the smallest one among those the band structure allows, with
+ * its columns in the smallest order the stacks allow, and only the
+ * transformations tied so far are followed. Columns which are empty in every
+ * row placed so far are kept as tied groups instead of being tried in every
+ * order, which keeps the search small on puzzles with many empty cells.
+ * <p>
+ * On very sparse or very symmetric boards (an empty board for instance),
+ * the number of tied transformations can explode. It is then capped, and
+ * the form returned is the smallest among those followed: it is still a
+ * transformation of the board, so it can safely be used as a key, but two
+ * such boards may get different forms even if they are equivalent. See
+ * {@link #isExact()}.
+ *
+ * @author Arthur Thouzeau
+ * @version 1.0
+ */
+public final class CanonicalForm {
+    private static final int MAX_CANDIDATES = 1024;
+
+    private final int size;
+    private final String key;
+    private final boolean transposed;
+    private final int[] rows;
+    private final int[] cols;
+    private final int[] labels;
+    private final boolean exact;
+
+    /**
+     * Initializes a canonical form from the transformation found.
+     *
+     * @param size the size of the board
+     * @param best the transformation giving the canonical board
+     * @param grid the cells of the board, transposed if needed
+     * @param exact whether every tied transformation was followed
+     */
+    private CanonicalForm(int size, Candidate best, int[] grid, boolean exact) {
+        this.size = size;
+        this.transposed = best.transposed;
+        this.rows = best.rows;
+        this.cols = best.cols;
+        this.labels = best.labels;
+        this.exact = exact;
+        // Numbers absent from the board get the labels left, in order
+        for (int v = 1; v <= size; v++) {
+            if (labels[v] == 0)
+                labels[v] = best.next++;
+        }
+        char[] cells = new char[size * size];
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++)
+                cells[i * size + j] = (char) labels[grid[rows[i] * size + cols[j]]];
+        }
+        key = new String(cells);
+    }
+
+    /**
+     * Computes the canonical form of a board.
+     *
+     * @param sb the board
+     * @return the canonical form
+     */
+    public static CanonicalForm of(SudokuBoard sb) {
+        return new Search(sb).run();
+    }
+
+    /**
+     * Returns the canonical board as a String of <code>SIZE * SIZE</code>
+     * characters, whose values are those of the cells (<code>0</code> for
+     * an empty cell). Equivalent boards have equal keys.
+     *
+     * @return the key of the board
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Tells whether the form is the true canonical form, or only a
+     * transformed board because too many transformations were tied.
+     *
+     * @return <code>true</code> if equivalent boards are guaranteed to have
+     *         the same form; <code>false</code> otherwise
+     */
+    public boolean isExact() {
+        return exact;
+    }
+
+    /**
+     * Applies the transformation of this form to a board of the same size,
+     * typically a solution of the board the form was computed for.
+     *
+     * @param board the board to transform
+     * @return the transformed board, as a key
+     */
+    public String toCanonical(SudokuBoard board) {
+        char[] cells = new char[size * size];
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                int value = transposed ? board.get(cols[j], rows[i])
+                        : board.get(rows[i], cols[j]);
+                cells[i * size + j] = (char) labels[value];
+            }
+        }
+        return new String(cells);
+    }
+
+    /**
+     * Applies the inverse transformation of this form to a canonical board,
+     * typically the canonical solution of an equivalent board.
+     *
+     * @param canonical the canonical board, as a key
+     * @return the board in the orientation and numbering of the board the
+     *         form was computed for
+     */
+    public SudokuBoard fromCanonical(String canonical) {
+        int[] values = new int[size + 1];
+        for (int v = 1; v <= size; v++)
+            values[labels[v]] = v;
+        SudokuBoard board = new SudokuBoard(size);
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                int value = values[canonical.charAt(i * size + j)];
+                if (transposed)
+                    board.set(value, cols[j], rows[i]);
+                else
+                    board.set(value, rows[i], cols[j]);
+            }
+        }
+        return board;
+    }
+
+    /**
+     * Transformation followed by the search: the rows placed so far, the
+     * order of the columns and the labels given so far. Consecutive columns
+     * of a stack which are empty in every row placed are still
+     * interchangeable: they form a tied group, ordered only when a later
+     * row tells them apart.
+     */
+    private static class Candidate {
+        private final boolean transposed;
+        private final int[] rows;
+        private final int[] cols;
+        private final boolean[] tied;
+        private final int[] labels;
+        private int next;
+
+        /**
+         * Initializes a candidate.
+         *
+         * @param transposed whether the board is transposed
+         * @param rows the rows placed, in canonical order
+         * @param cols the columns, in canonical order
+         * @param tied for each position, whether its column is tied with
+         *             the column of the previous position
+         * @param labels the label of each number, <code>0</code> if none yet
+         * @param next the next label to give
+         */
+        Candidate(boolean transposed, int[] rows, int[] cols, boolean[] tied,
+                int[] labels, int next) {
+            this.transposed = transposed;
+            this.rows = rows;
+            this.cols = cols;
+            this.tied = tied;
+            this.labels = labels;
+            this.next = next;
+        }
+    }
+
+    /**
+     * Search of the smallest transformed board.
+     */
+    private static class Search {
+        private final int size;
+        private final int boxSize;
+        private final int[][] grids = new int[2][];
+        private final int empty;
+        private final int[] best;
+        private final int[] current;
+        private List<Candidate> candidates = new ArrayList<Candidate>();
+        private boolean exact = true;
+
+        // Row being placed, and the arrangement of its columns being built
+        private Candidate parent;
+        private int level;
+        private int[] grid;
+        private int row;
+        private final int[] cols;
+        private final boolean[] tied;
+        private final boolean[] usedStacks;
+        private int[] labels;
+        private int next;
+        private final int[][] buffers;
+
+        /**
+         * Initializes the search.
+         *
+         * @param sb the board
+         */
+        Search(SudokuBoard sb) {
+            size = sb.SIZE;
+            boxSize = sb.getBoxSize();
+            empty = size + 1;
+            grids[0] = new int[size * size];
+            grids[1] = new int[size * size];
+            for (int i = 0; i < size; i++) {
+                for (int j = 0; j < size; j++) {
+                    grids[0][i * size + j] = sb.get(i, j);
+                    grids[1][j * size + i] = sb.get(i, j);
+                }
+            }
+            best = new int[size];
+            current = new int[size];
+            cols = new int[size];
+            tied = new boolean[size];
+            usedStacks = new boolean[boxSize];
+            buffers = new int[size + 1][size];
+        }
+
+        /**
+         * Runs the search.
+         *
+         * @return the canonical form
+         */
+        CanonicalForm run() {
+            // First row: every row of both orientations, every stack order
+            reset();
+            for (int t = 0; t < 2; t++) {
+                grid = grids[t];
+                parent = new Candidate(t == 1, new int[size], null, null,
+                        new int[size + 1], 1);
+                for (int r = 0; r < size; r++)
+                    place(r);
+            }
+
+            // Next rows: the smallest allowed by the bands, for each candidate
+            for (level = 1; level < size; level++) {
+                reset();
+                List<Candidate> followed = candidates;
+                candidates = new ArrayList<Candidate>();
+                for (Candidate c : followed) {
+                    parent = c;
+                    grid = grids[c.transposed ? 1 : 0];
+                    int bandStart = level - level % boxSize;
+                    for (int r = 0; r < size; r++) {
+                        int band = r / boxSize;
+                        if (level != bandStart) {
+                            if (band == c.rows[bandStart] / boxSize && !isPlaced(c, r))
+                                place(r);
+                        } else if (!isBandPlaced(c, band)) {
+                            place(r);
+                        }
+                    }
+                }
+            }
+
+            Candidate found = candidates.get(0);
+            return new CanonicalForm(size, found, grids[found.transposed ? 1 : 0], exact);
+        }
+
+        /**
+         * Resets the smallest row before searching a level.
+         */
+        private void reset() {
+            for (int k = 0; k < size; k++)
+                best[k] = Integer.MAX_VALUE;
+        }
+
+        /**
+         * Places a row at the current level after the rows of the parent
+         * candidate, trying every smallest arrangement of its columns.
+         *
+         * @param r the row to place
+         */
+        private void place(int r) {
+            row = r;
+            labels = parent.labels.clone();
+            next = parent.next;
+            arrange(0);
+        }
+
+        /**
+         * Arranges the columns from a position on. On the first row, a new
+         * stack is picked at the start of each stack, and its columns form
+         * a single group; on the next rows, the groups of the parent are
+         * arranged one after the other.
+         *
+         * @param position the first position to arrange
+         */
+        private void arrange(int position) {
+            if (position == size) {
+                int[] rows = parent.rows.clone();
+                rows[level] = row;
+                record(new Candidate(parent.transposed, rows, cols.clone(),
+                        tied.clone(), labels.clone(), next));
+                return;
+            }
+            int[] group = buffers[position];
+            if (level == 0) {
+                for (int s = 0; s < boxSize; s++) {
+                    if (!usedStacks[s]) {
+                        usedStacks[s] = true;
+                        for (int k = 0; k < boxSize; k++)
+                            group[k] = s * boxSize + k;
+                        arrangeGroup(position, group, boxSize);
+                        usedStacks[s] = false;
+                    }
+                }
+            } else {
+                int length = 0;
+                do {
+                    group[length] = parent.cols[position + length];
+                    length++;
+                } while (position + length < size && parent.tied[position + length]);
+                arrangeGroup(position, group, length);
+            }
+        }
+
+        /**
+         * Arranges the columns of a group in the smallest order for the
+         * current row: the numbers labeled already by increasing label, then
+         * the new numbers (every order of them is tried, as each gives
+         * different labels), then the empty cells, which stay tied.
+         *
+         * @param position the position of the group
+         * @param group the columns of the group
+         * @param length the number of columns of the group
+         */
+        private void arrangeGroup(int position, int[] group, int length) {
+            int end = position + length;
+            int p = position;
+            int[] fresh = buffers[size];
+            int freshCount = 0;
+            // Labeled numbers, by increasing label (the values of a row are
+            // distinct, so the order is total)
+            for (int label = 1; label < next && p < end; label++) {
+                for (int k = 0; k < length; k++) {
+                    int value = grid[row * size + group[k]];
+                    if (value != 0 && labels[value] == label) {
+                        cols[p] = group[k];
+                        tied[p] = false;
+                        current[p] = label;
+                        p++;
+                    }
+                }
+            }
+            if (compare(p - 1) > 0)
+                return;
+            for (int k = 0; k < length; k++) {
+                int value = grid[row * size + group[k]];
+                if (value != 0 && labels[value] == 0)
+                    fresh[freshCount++] = group[k];
+            }
+            int[] newColumns = new int[freshCount];
+            System.arraycopy(fresh, 0, newColumns, 0, freshCount);
+            placeFresh(p, newColumns, 0, group, length, end);
+        }
+
+        /**
+         * Places the new numbers of a group in every order, then its empty
+         * cells, and goes on with the next group.
+         *
+         * @param p the next position to fill
+         * @param fresh the columns of the group holding new numbers
+         * @param placed the number of them placed already
+         * @param group the columns of the group
+         * @param length the number of columns of the group
+         * @param end the position after the group
+         */
+        private void placeFresh(int p, int[] fresh, int placed, int[] group,
+                int length, int end) {
+            if (placed < fresh.length) {
+                for (int k = placed; k < fresh.length; k++) {
+                    int c = fresh[k];
+                    fresh[k] = fresh[placed];
+                    fresh[placed] = c;
+                    int value = grid[row * size + c];
+                    labels[value] = next++;
+                    cols[p] = c;
+                    tied[p] = false;
+                    current[p] = labels[value];
+                    if (compare(p) <= 0 && !isFull(p))
+                        placeFresh(p + 1, fresh, placed + 1, group, length, end);
+                    labels[value] = 0;
+                    next--;
+                    fresh[placed] = fresh[k];
+                    fresh[k] = c;
+                }
+                return;
+            }
+            boolean first = true;
+            for (int k = 0; k < length; k++) {
+                if (grid[row * size + group[k]] == 0) {
+                    cols[p] = group[k];
+                    tied[p] = !first;
+                    current[p] = empty;
+                    first = false;
+                    p++;
+                }
+            }
+            if (compare(end - 1) <= 0)
+                arrange(end);
+        }
+
+        /**
+         * Tells whether the cap of tied candidates is reached while the
+         * current row is tied with the smallest one. Such branches are not
+         * followed any more, and the form may not be exact.
+         *
+         * @param end the position of the last cell placed
+         * @return <code>true</code> if the branch must be dropped;
+         *         <code>false</code> otherwise
+         */
+        private boolean isFull(int end) {
+            if (candidates.size() < MAX_CANDIDATES || compare(end) < 0)
+                return false;
+            exact = false;
+            return true;
+        }
+
+        /**
+         * Compares the current row with the smallest one, up to a position.
+         *
+         * @param end the position of the last cell compared
+         * @return a negative number, zero or a positive number if the current
+         *         row is smaller, equal or larger up to that position
+         */
+        private int compare(int end) {
+            for (int k = 0; k <= end; k++) {
+                if (current[k] != best[k])
+                    return current[k] < best[k] ? -1 : 1;
+            }
+            return 0;
+        }
+
+        /**
+         * Records the current row if it is the smallest so far, or tied with
+         * it, along with the transformation giving it.
+         *
+         * @param candidate the transformation giving the current row
+         */
+        private void record(Candidate candidate) {
+            int cmp = compare(size - 1);
+            if (cmp < 0) {
+                System.arraycopy(current, 0, best, 0, size);
+                candidates.clear();
+                candidates.add(candidate);
+            } else if (cmp == 0) {
+                if (candidates.size() < MAX_CANDIDATES)
+                    candidates.add(candidate);
+                else
+                    exact = false;
+            }
+        }
+
+        /**
+         * Tells whether a row is one of the rows placed before the current
+         * level.
+         *
+         * @param c the candidate
+         * @param r the row
+         * @return <code>true</code> if the row is placed already
+         */
+        private boolean isPlaced(Candidate c, int r) {
+            for (int k = 0; k < level; k++) {
+                if (c.rows[k] == r)
+                    return true;
+            }
+            return false;
+        }
+
+        /**
+         * Tells whether a band holds one of the rows placed before the
+         * current level.
+         *
+         * @param c the candidate
+         * @param band the band
+         * @return <code>true</code> if the band is placed already
+         */
+        private boolean isBandPlaced(Candidate c, int band) {
+            for (int k = 0; k < level; k += boxSize) {
+                if (c.rows[k] / boxSize == band)
+                    return true;
+            }
+            return false;
+        }
+    }
+}
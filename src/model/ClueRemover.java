@@ -0,0 +1,226 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This class removes clues from a Sudoku board with a unique solution, as
+ * long as the solution stays unique. It is used by {@link RandomGenerator}
+ * to turn a complete grid into a puzzle.
+ * <p>
+ * Each worker keeps one {@link ConstraintSolver} on its own copy of the board
+ * for the whole run: a removal is tested with
+ * {@link ConstraintSolver#isUniqueWithout}, which only looks for a solution
+ * with another value in the removed cell, and accepted removals are applied
+ * to every copy.
+ * <p>
+ * With several workers, the next cells in the removal order are tested at
+ * the same time against the current board. The first cell which can be
+ * removed is removed. Cells before it are kept for good: removing more clues
+ * never makes a solution unique again, so they would fail later as well.
+ * Cells after it which passed are tested again against the new board. The
+ * result is therefore the same as a sequential run.
+ * <p>
+ * The difficulty of the puzzle can be capped with
+ * {@link #setMaxDifficulty}: a removal which passes is then graded by a
+ * {@link DifficultyGrader} as well, and undone if the puzzle becomes too
+ * hard. The grading is done in the removal order, so the result is still
+ * the same as a sequential run.
+ *
+ * @author Arthur Thouzeau
+ * @version 1.0
+ */
+public class ClueRemover {
+    private final SudokuBoard board;
+    private final int threads;
+    private DifficultyGrader grader;
+    private Difficulty maxDifficulty;
+
+    /**
+     * Initializes a new ClueRemover.
+     *
+     * @param board the board to remove clues from, which must have a unique
+     *              solution; it is modified in place
+     * @param threads the number of cells to test at the same time
+     */
+    public ClueRemover(SudokuBoard board, int threads) {
+        this.board = board;
+        this.threads = board.SIZE <= 64 ? Math.max(1, threads) : 1;
+    }
+
+    /**
+     * Caps the difficulty of the puzzle: clues are only removed as long as
+     * the puzzle stays at most as hard as a given tier.
+     *
+     * @param max the hardest tier allowed, or <code>null</code> (or
+     *            {@link Difficulty#EXTREME}) for no limit
+     * @throws IllegalArgumentException if a limit is given on a board larger
+     *                                  than 64*64
+     */
+    public void setMaxDifficulty(Difficulty max) {
+        if (max == null || max == Difficulty.EXTREME) {
+            grader = null;
+            maxDifficulty = null;
+        } else {
+            grader = new DifficultyGrader(board.SIZE);
+            maxDifficulty = max;
+        }
+    }
+
+    /**
+     * Tries to remove the clues of the board in a given order. A clue is
+     * removed if the solution stays unique without it, and the puzzle is
+     * not harder than the limit set by {@link #setMaxDifficulty}.
+     *
+     * @param order the cells to try, as <code>row * SIZE + col</code>
+     * @throws CancellationException if the thread is interrupted; the board
+     *                               is then only partly reduced, and the
+     *                               interrupt status is kept set
+     */
+    public void removeClues(int[] order) {
+        int size = board.SIZE;
+        if (size > 64) {
+            // The constraint solver only handles boards up to 64*64
+            for (int cell : order) {
+                checkInterrupted();
+                int value = board.get(cell / size, cell % size);
+                board.set(0, cell / size, cell % size);
+                if (new RecursiveSolver(board).countSolutions() > 1)
+                    board.set(value, cell / size, cell % size);
+            }
+            return;
+        }
+
+        ConstraintSolver[] solvers = new ConstraintSolver[threads];
+        for (int i = 0; i < threads; i++)
+            solvers[i] = new ConstraintSolver(board);
+
+        if (threads == 1) {
+            for (int cell : order) {
+                checkInterrupted();
+                if (solvers[0].isUniqueWithout(cell / size, cell % size)
+                        && isEasyEnoughWithout(cell))
+                    remove(solvers, cell);
+            }
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            LinkedList<Integer> pending = new LinkedList<Integer>();
+            for (int cell : order)
+                pending.add(cell);
+            while (!pending.isEmpty()) {
+                int n = Math.min(threads, pending.size());
+                int[] batch = new int[n];
+                List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+                for (int i = 0; i < n; i++) {
+                    batch[i] = pending.remove();
+                    results.add(executor.submit(
+                            new RemovalTest(solvers[i], batch[i])));
+                }
+
+                boolean removed = false;
+                LinkedList<Integer> retry = new LinkedList<Integer>();
+                for (int i = 0; i < n; i++) {
+                    if (!results.get(i).get())
+                        continue;
+                    if (!removed) {
+                        // Too hard: kept for good, as in a sequential run
+                        if (!isEasyEnoughWithout(batch[i]))
+                            continue;
+                        remove(solvers, batch[i]);
+                        removed = true;
+                    } else {
+                        retry.add(batch[i]);
+                    }
+                }
+                pending.addAll(0, retry);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while removing clues");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Stops the removal if the thread was interrupted, so that a partly
+     * reduced board is never taken for a puzzle.
+     *
+     * @throws CancellationException if the thread is interrupted
+     */
+    private static void checkInterrupted() {
+        if (Thread.currentThread().isInterrupted())
+            throw new CancellationException("Interrupted while removing clues");
+    }
+
+    /**
+     * Tells whether the puzzle stays within the difficulty limit without a
+     * clue.
+     *
+     * @param cell the cell, as <code>row * SIZE + col</code>
+     * @return <code>true</code> if there is no limit or the puzzle without
+     *         the clue is not harder than the limit
+     */
+    private boolean isEasyEnoughWithout(int cell) {
+        if (grader == null)
+            return true;
+        int row = cell / board.SIZE;
+        int col = cell % board.SIZE;
+        int value = board.get(row, col);
+        board.set(0, row, col);
+        boolean easyEnough = grader.grade(board).getDifficulty()
+                .compareTo(maxDifficulty) <= 0;
+        board.set(value, row, col);
+        return easyEnough;
+    }
+
+    /**
+     * Clears a cell on the board and on the copies of all the solvers.
+     *
+     * @param solvers the solvers
+     * @param cell the cell, as <code>row * SIZE + col</code>
+     */
+    private void remove(ConstraintSolver[] solvers, int cell) {
+        int row = cell / board.SIZE;
+        int col = cell % board.SIZE;
+        board.set(0, row, col);
+        for (ConstraintSolver solver : solvers)
+            solver.getBoard().set(0, row, col);
+    }
+
+    /**
+     * Task testing the removal of one cell with the solver of a worker.
+     */
+    private class RemovalTest implements Callable<Boolean> {
+        private final ConstraintSolver solver;
+        private final int cell;
+
+        /**
+         * Initializes the task.
+         *
+         * @param solver the solver to use, not shared with other tasks
+         * @param cell the cell, as <code>row * SIZE + col</code>
+         */
+        RemovalTest(ConstraintSolver solver, int cell) {
+            this.solver = solver;
+            this.cell = cell;
+        }
+
+        @Override
+        public Boolean call() {
+            return solver.isUniqueWithout(cell / board.SIZE, cell % board.SIZE);
+        }
+    }
+}
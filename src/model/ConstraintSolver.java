@@ -0,0 +1,480 @@
+package model;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * This class contains the routines to solve a Sudoku puzzle using constraint
+ * propagation and a backtracking search ordered by the Minimum Remaining
+ * Values heuristic.
+ * <p>
+ * After every assignment, naked singles (cells with one candidate left) and
+ * hidden singles (numbers with one possible cell left in a row, column or
+ * box) are assigned until nothing changes. The search then branches on the
+ * unassigned cell with the fewest candidates, unless a number has even fewer
+ * possible cells in some unit, in which case it branches on the cells of
+ * that number. Without the latter, sparse 25*25 boards can get the search
+ * stuck on cells with many candidates. Candidates are read from the
+ * masks of the {@link SudokuBoard}, and every assignment is pushed on a trail
+ * so that it can be undone without copying the board.
+ * <p>
+ * Candidates are held in a single <code>long</code>, so this solver is
+ * limited to boards up to 64*64.
+ * <p>
+ * A solver may share a stop flag with other solvers; the search gives up as
+ * soon as the flag is raised. This is used by {@link ParallelSolver}.
+ *
+ * @author Arthur Thouzeau
+ * @version 1.0
+ */
+public class ConstraintSolver extends AbstractSolver {
+    private SudokuBoard sb;
+    private final int[] trail;
+    private final int[] placeCounts;
+    private int top;
+    private final boolean consistent;
+    private final AtomicBoolean stop;
+    private boolean record;
+
+    /**
+     * Initializes a new Constraint Solver.
+     *
+     * @param board the Sudoku to solve
+     * @throws IllegalArgumentException if the board is larger than 64*64
+     */
+    public ConstraintSolver(SudokuBoard board) {
+        this(board, null);
+    }
+
+    /**
+     * Initializes a new Constraint Solver which gives up when a shared flag
+     * is raised. The result of an interrupted search is meaningless.
+     *
+     * @param board the Sudoku to solve
+     * @param stop the flag to check at each node, or <code>null</code>
+     * @throws IllegalArgumentException if the board is larger than 64*64
+     */
+    ConstraintSolver(SudokuBoard board, AtomicBoolean stop) {
+        this.stop = stop;
+        if (stop != null)
+            unpublish();
+        if (board.SIZE > 64)
+            throw new IllegalArgumentException("The constraint solver is "
+                    + "limited to 64*64 boards.");
+        sb = new SudokuBoard(board);
+        trail = new int[sb.SIZE * sb.SIZE];
+        placeCounts = new int[sb.SIZE];
+        consistent = sb.checkInitialBoard();
+    }
+
+    /**
+     * Returns the Sudoku board.
+     *
+     * @return the Sudoku board
+     */
+    @Override
+    public SudokuBoard getBoard() {
+        return sb;
+    }
+
+    /**
+     * Starts the search and stops at the first solution, which is left on
+     * the board.
+     *
+     * @return <code>true</code> if the sudoku has a solution;
+     *         <code>false</code> otherwise
+     */
+    @Override
+    public boolean solve() {
+        start();
+        record = true;
+        boolean solved = consistent && search(1) == 1;
+        finish(SolverStats.SOLVE, solved ? 1 : 0);
+        return solved;
+    }
+
+    /**
+     * Starts the search and stops at the second solution. Every assignment
+     * is undone, so the board is left unchanged.
+     *
+     * @return <code>0</code> if the sudoku has no solution;
+     *         <code>1</code> if it has a unique solution;
+     *         <code>2</code> if it has multiple solutions
+     */
+    @Override
+    public int countSolutions() {
+        start();
+        record = false;
+        int count = consistent ? (int) search(2) : 0;
+        finish(SolverStats.COUNT, count);
+        return count;
+    }
+
+    /**
+     * Starts the search and passes each solution to a consumer, until the
+     * consumer asks to stop or the limit is reached. Every assignment is
+     * undone, so the board is left unchanged.
+     *
+     * @param consumer the consumer of the solutions, or <code>null</code> to
+     *                 count them only
+     * @param limit the number of solutions after which the search stops,
+     *              or 0 for no limit
+     * @return the number of solutions found
+     */
+    @Override
+    public long enumerateSolutions(SolutionConsumer consumer, long limit) {
+        start();
+        record = false;
+        this.consumer = consumer;
+        long count = consistent ? search(toLimit(limit)) : 0;
+        finish(consumer != null ? SolverStats.ENUMERATE : SolverStats.COUNT, count);
+        return count;
+    }
+
+    /**
+     * Checks whether the board would still have a unique solution without the
+     * value of a cell. The board must currently have a unique solution: the
+     * cell is cleared, and the search only looks for a solution with another
+     * value in that cell. The board is restored before returning, so the
+     * same solver can be reused to test one removal after the other.
+     * <p>
+     * Each call is a search of its own: the counters are reset, and the
+     * budget applies to each call. A search aborted by the budget or by
+     * {@link #cancel()} proves nothing, so the answer is then
+     * <code>false</code>, and {@link #isAborted()} is <code>true</code>.
+     *
+     * @param row the cell's row
+     * @param col the cell's column
+     * @return <code>true</code> if the cell can be cleared without
+     *         destroying the uniqueness of the solution;
+     *         <code>false</code> otherwise, or if the search was aborted
+     */
+    public boolean isUniqueWithout(int row, int col) {
+        int value = sb.get(row, col);
+        if (value == 0)
+            return true;
+        start();
+        record = false;
+        sb.set(0, row, col);
+        long others = sb.getCandidates(row, col) & ~(1L << (value - 1));
+        boolean unique = true;
+        while (others != 0 && unique) {
+            long bit = others & -others;
+            others ^= bit;
+            int level = top;
+            assign(Long.numberOfTrailingZeros(bit) + 1, row, col);
+            unique = search(1) == 0 && !aborted;
+            undo(level);
+        }
+        sb.set(value, row, col);
+        return unique && !aborted;
+    }
+
+    /**
+     * Assigns the naked and hidden singles of the board and keeps them.
+     *
+     * @return <code>false</code> if the board has no solution;
+     *         <code>true</code> otherwise
+     */
+    boolean simplify() {
+        return consistent && propagate();
+    }
+
+    /**
+     * Recursive search. Propagates the singles, then tries each possibility
+     * of the choice point picked by {@link #chooseBranch}. When solving, the first solution found is
+     * kept on the board; otherwise each solution is passed to the consumer,
+     * if any, and the trail is unwound down to its level at the time of the
+     * call.
+     *
+     * @param limit the number of solutions after which the search stops
+     * @return the number of solutions found, at most <code>limit</code>
+     */
+    private long search(long limit) {
+        int mark = top;
+        if ((stop != null && stop.get()) || checkpoint() || !propagate()) {
+            undo(mark);
+            return 0;
+        }
+
+        int choice = chooseBranch();
+        if (choice == -1) {
+            if (!record) {
+                accept(sb);
+                undo(mark);
+            }
+            return 1;
+        }
+
+        int size = sb.SIZE;
+        long found = 0;
+        if (choice < -1) {
+            int unit = (-2 - choice) / size;
+            int num = (-2 - choice) % size + 1;
+            for (int k = 0; k < size && found < limit && !halted; k++) {
+                int row = unitRow(unit, k);
+                int col = unitCol(unit, k);
+                if (sb.get(row, col) != 0 || !sb.isNumValid(row, col, num))
+                    continue;
+                int level = top;
+                assign(num, row, col);
+                if (SolverStats.ENABLED)
+                    enter();
+                found += search(limit - found);
+                if (record && found > 0)
+                    return found;
+                undo(level);
+                if (SolverStats.ENABLED)
+                    backtrack();
+            }
+            undo(mark);
+            return found;
+        }
+
+        int row = choice / size;
+        int col = choice % size;
+        long mask = sb.getCandidates(row, col);
+        while (mask != 0 && found < limit && !halted) {
+            long bit = mask & -mask;
+            mask ^= bit;
+            int level = top;
+            assign(Long.numberOfTrailingZeros(bit) + 1, row, col);
+            if (SolverStats.ENABLED)
+                enter();
+            found += search(limit - found);
+            if (record && found > 0)
+                return found;
+            undo(level);
+            if (SolverStats.ENABLED)
+                backtrack();
+        }
+        undo(mark);
+        return found;
+    }
+
+    /**
+     * Picks the choice point of the search on a propagated board: the cell
+     * with the fewest candidates (Minimum Remaining Values), or the number
+     * with the fewest possible cells in a unit if that is fewer.
+     *
+     * @return <code>-1</code> if the board is complete;
+     *         <code>row * SIZE + col</code> to branch on the candidates of a
+     *         cell; <code>-2 - (unit * SIZE + num - 1)</code> to branch on the
+     *         possible cells of a number in a unit
+     */
+    int chooseBranch() {
+        int size = sb.SIZE;
+        int bestCell = -1;
+        int bestCount = size + 1;
+        for (int i = 0; i < size && bestCount > 2; i++) {
+            for (int j = 0; j < size; j++) {
+                if (sb.get(i, j) == 0) {
+                    if (SolverStats.ENABLED)
+                        checks++;
+                    int count = Long.bitCount(sb.getCandidates(i, j));
+                    if (count < bestCount) {
+                        bestCell = i * size + j;
+                        bestCount = count;
+                        if (count == 2)
+                            break;
+                    }
+                }
+            }
+        }
+        if (bestCell == -1 || bestCount <= 2)
+            return bestCell;
+        int number = findConstrainedNumber(bestCount);
+        return number == -1 ? bestCell : -2 - number;
+    }
+
+    /**
+     * Looks for the number having the fewest possible cells in a unit, if
+     * that is fewer than a given count.
+     *
+     * @param maxCount the count to beat (the candidates of the best cell)
+     * @return <code>unit * SIZE + num - 1</code> for the most constrained
+     *         number; <code>-1</code> if no number has fewer than
+     *         <code>maxCount</code> possible cells in any unit
+     */
+    private int findConstrainedNumber(int maxCount) {
+        int size = sb.SIZE;
+        int bestChoice = -1;
+        int bestCount = maxCount;
+        for (int unit = 0; unit < 3 * size && bestCount > 2; unit++) {
+            long placed = 0;
+            for (int d = 0; d < size; d++)
+                placeCounts[d] = 0;
+            for (int k = 0; k < size; k++) {
+                int row = unitRow(unit, k);
+                int col = unitCol(unit, k);
+                int value = sb.get(row, col);
+                if (value != 0) {
+                    placed |= 1L << (value - 1);
+                } else {
+                    long mask = sb.getCandidates(row, col);
+                    while (mask != 0) {
+                        placeCounts[Long.numberOfTrailingZeros(mask)]++;
+                        mask &= mask - 1;
+                    }
+                }
+            }
+            for (int d = 0; d < size; d++) {
+                if ((placed & (1L << d)) == 0 && placeCounts[d] < bestCount) {
+                    bestCount = placeCounts[d];
+                    bestChoice = unit * size + d;
+                }
+            }
+        }
+        return bestChoice;
+    }
+
+    /**
+     * Assigns naked and hidden singles until none is left.
+     *
+     * @return <code>false</code> if a contradiction was found (a cell without
+     *         candidates or a number without a cell in some unit);
+     *         <code>true</code> otherwise
+     */
+    private boolean propagate() {
+        int size = sb.SIZE;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+
+            // Naked singles
+            for (int i = 0; i < size; i++) {
+                for (int j = 0; j < size; j++) {
+                    if (sb.get(i, j) == 0) {
+                        if (SolverStats.ENABLED)
+                            checks++;
+                        long mask = sb.getCandidates(i, j);
+                        if (mask == 0)
+                            return false;
+                        if ((mask & (mask - 1)) == 0) {
+                            assign(Long.numberOfTrailingZeros(mask) + 1, i, j);
+                            changed = true;
+                        }
+                    }
+                }
+            }
+
+            // Hidden singles, on rows, columns and boxes
+            for (int unit = 0; unit < 3 * size; unit++) {
+                int result = propagateHiddenSingles(unit);
+                if (result < 0)
+                    return false;
+                if (result > 0)
+                    changed = true;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Assigns the numbers which can only go in one cell of a unit.
+     *
+     * @param unit the unit: rows are numbered from 0 to SIZE - 1, then columns
+     *             and boxes
+     * @return <code>-1</code> if a contradiction was found; otherwise the
+     *         number of assignments made
+     */
+    private int propagateHiddenSingles(int unit) {
+        int size = sb.SIZE;
+        long placed = 0;
+        long once = 0;
+        long twice = 0;
+        for (int k = 0; k < size; k++) {
+            int row = unitRow(unit, k);
+            int col = unitCol(unit, k);
+            int value = sb.get(row, col);
+            if (value != 0) {
+                placed |= 1L << (value - 1);
+            } else {
+                long mask = sb.getCandidates(row, col);
+                twice |= once & mask;
+                once |= mask;
+            }
+        }
+        long all = -1L >>> (64 - size);
+        if ((placed | once) != all)
+            return -1;
+
+        int assigned = 0;
+        long hidden = once & ~twice & ~placed;
+        while (hidden != 0) {
+            long bit = hidden & -hidden;
+            hidden ^= bit;
+            int num = Long.numberOfTrailingZeros(bit) + 1;
+            int k = 0;
+            while (k < size && (sb.get(unitRow(unit, k), unitCol(unit, k)) != 0
+                    || !sb.isNumValid(unitRow(unit, k), unitCol(unit, k), num)))
+                k++;
+            if (k == size)
+                return -1;
+            assign(num, unitRow(unit, k), unitCol(unit, k));
+            assigned++;
+        }
+        return assigned;
+    }
+
+    /**
+     * Returns the row of the k-th cell of a unit.
+     *
+     * @param unit the unit (rows, then columns, then boxes)
+     * @param k the index of the cell in the unit
+     * @return the row of the cell
+     */
+    int unitRow(int unit, int k) {
+        int size = sb.SIZE;
+        if (unit < size)
+            return unit;
+        if (unit < 2 * size)
+            return k;
+        int box = unit - 2 * size;
+        int boxSize = sb.getBoxSize();
+        return (box / boxSize) * boxSize + k / boxSize;
+    }
+
+    /**
+     * Returns the column of the k-th cell of a unit.
+     *
+     * @param unit the unit (rows, then columns, then boxes)
+     * @param k the index of the cell in the unit
+     * @return the column of the cell
+     */
+    int unitCol(int unit, int k) {
+        int size = sb.SIZE;
+        if (unit < size)
+            return k;
+        if (unit < 2 * size)
+            return unit - size;
+        int box = unit - 2 * size;
+        int boxSize = sb.getBoxSize();
+        return (box % boxSize) * boxSize + k % boxSize;
+    }
+
+    /**
+     * Assigns a number to an empty cell and pushes the cell on the trail.
+     *
+     * @param num the number to assign
+     * @param row the cell's row
+     * @param col the cell's column
+     */
+    private void assign(int num, int row, int col) {
+        sb.set(num, row, col);
+        trail[top++] = row * sb.SIZE + col;
+        traceAssigned(row, col, num);
+    }
+
+    /**
+     * Clears the cells assigned since the trail was at a given level.
+     *
+     * @param level the level of the trail to go back to
+     */
+    private void undo(int level) {
+        while (top > level) {
+            int cell = trail[--top];
+            sb.set(0, cell / sb.SIZE, cell % sb.SIZE);
+            traceCleared(cell / sb.SIZE, cell % sb.SIZE);
+        }
+    }
+}
@@ -0,0 +1,347 @@
+package model;
+
+/**
+ * This class contains the routines to solve a Sudoku puzzle using Knuth's
+ * Algorithm X on a Dancing Links representation of the exact cover problem.
+ * <p>
+ * Each candidate (cell, number) is a row of the exact cover matrix, which
+ * covers four constraints: the cell is filled, and the number appears on the
+ * row, the column and the box. The matrix is stored in preallocated
+ * <code>int</code> arrays (one entry per node for each link), so that no
+ * object is allocated while searching. The givens are covered once and for
+ * all at construction, and every search leaves the structure as it found it.
+ * <p>
+ * The matrix has <code>SIZE^3</code> rows and four nodes per row, which makes
+ * this solver best suited to the usual sizes (up to 25*25 or 36*36).
+ *
+ * @author Arthur Thouzeau
+ * @version 1.0
+ */
+public class DancingLinksSolver extends AbstractSolver {
+    private static final int ROOT = 0;
+
+    private SudokuBoard sb;
+    private final int nbCols;
+    private final int[] left;
+    private final int[] right;
+    private final int[] up;
+    private final int[] down;
+    private final int[] column;
+    private final int[] colSize;
+    private final int[] solution;
+    private final boolean consistent;
+    private boolean record;
+
+    /**
+     * Initializes a new Dancing Links Solver. Builds the exact cover matrix
+     * and covers the columns satisfied by the givens.
+     *
+     * @param board the Sudoku to solve
+     */
+    public DancingLinksSolver(SudokuBoard board) {
+        sb = new SudokuBoard(board);
+
+        int size = sb.SIZE;
+        int nbCells = size * size;
+        nbCols = 4 * nbCells;
+        int nbNodes = 1 + nbCols + 4 * nbCells * size;
+        left = new int[nbNodes];
+        right = new int[nbNodes];
+        up = new int[nbNodes];
+        down = new int[nbNodes];
+        column = new int[nbNodes];
+        colSize = new int[nbCols + 1];
+        solution = new int[nbCells];
+
+        buildMatrix();
+        consistent = sb.checkInitialBoard();
+        if (consistent)
+            coverGivens();
+    }
+
+    /**
+     * Links the column headers and the nodes of the exact cover matrix.
+     * Column headers are the nodes 1 to <code>nbCols</code>, node 0 being the
+     * root. The four nodes of candidate row <code>r</code> start at node
+     * <code>1 + nbCols + 4 * r</code>.
+     */
+    private void buildMatrix() {
+        int size = sb.SIZE;
+        int nbCells = size * size;
+
+        for (int c = 0; c <= nbCols; c++) {
+            left[c] = c == 0 ? nbCols : c - 1;
+            right[c] = c == nbCols ? 0 : c + 1;
+            up[c] = c;
+            down[c] = c;
+        }
+
+        int node = nbCols + 1;
+        for (int row = 0; row < size; row++) {
+            for (int col = 0; col < size; col++) {
+                int box = sb.getBox(row, col);
+                for (int d = 0; d < size; d++) {
+                    int first = node;
+                    appendNode(node++, 1 + row * size + col);
+                    appendNode(node++, 1 + nbCells + row * size + d);
+                    appendNode(node++, 1 + 2 * nbCells + col * size + d);
+                    appendNode(node++, 1 + 3 * nbCells + box * size + d);
+                    for (int k = 0; k < 4; k++) {
+                        left[first + k] = first + (k + 3) % 4;
+                        right[first + k] = first + (k + 1) % 4;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds a node at the bottom of a column.
+     *
+     * @param node the node to add
+     * @param col the column header
+     */
+    private void appendNode(int node, int col) {
+        column[node] = col;
+        up[node] = up[col];
+        down[node] = col;
+        down[up[col]] = node;
+        up[col] = node;
+        colSize[col]++;
+    }
+
+    /**
+     * Returns the first node of the row of a candidate.
+     *
+     * @param row the cell's row
+     * @param col the cell's column
+     * @param num the number, between 1 and SIZE (inclusive)
+     * @return the first node of the candidate's row
+     */
+    private int rowNode(int row, int col, int num) {
+        return 1 + nbCols + 4 * ((row * sb.SIZE + col) * sb.SIZE + num - 1);
+    }
+
+    /**
+     * Selects the rows of the givens by covering their four columns.
+     * This method must be called on a board respecting Sudoku rules.
+     */
+    private void coverGivens() {
+        for (int i = 0; i < sb.SIZE; i++) {
+            for (int j = 0; j < sb.SIZE; j++) {
+                if (sb.get(i, j) != 0) {
+                    int first = rowNode(i, j, sb.get(i, j));
+                    for (int k = 0; k < 4; k++)
+                        cover(column[first + k]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes a column from the header list, and all the rows intersecting
+     * it from the other columns.
+     *
+     * @param c the column header
+     */
+    private void cover(int c) {
+        right[left[c]] = right[c];
+        left[right[c]] = left[c];
+        for (int i = down[c]; i != c; i = down[i]) {
+            for (int j = right[i]; j != i; j = right[j]) {
+                down[up[j]] = down[j];
+                up[down[j]] = up[j];
+                colSize[column[j]]--;
+            }
+        }
+    }
+
+    /**
+     * Reverts {@link #cover}. Calls must be made in the reverse order of the
+     * covers.
+     *
+     * @param c the column header
+     */
+    private void uncover(int c) {
+        for (int i = up[c]; i != c; i = up[i]) {
+            for (int j = left[i]; j != i; j = left[j]) {
+                colSize[column[j]]++;
+                down[up[j]] = j;
+                up[down[j]] = j;
+            }
+        }
+        right[left[c]] = c;
+        left[right[c]] = c;
+    }
+
+    /**
+     * Returns the Sudoku board.
+     *
+     * @return the Sudoku board
+     */
+    @Override
+    public SudokuBoard getBoard() {
+        return sb;
+    }
+
+    /**
+     * Starts Algorithm X on the remaining columns and stops at the first
+     * solution, which is written to the board.
+     *
+     * @return <code>true</code> if the sudoku has a solution;
+     *         <code>false</code> otherwise
+     */
+    @Override
+    public boolean solve() {
+        start();
+        record = true;
+        boolean solved = consistent && search(0, 1) == 1;
+        finish(SolverStats.SOLVE, solved ? 1 : 0);
+        return solved;
+    }
+
+    /**
+     * Starts Algorithm X on the remaining columns and stops at the second
+     * solution. The board is left unchanged.
+     *
+     * @return <code>0</code> if the sudoku has no solution;
+     *         <code>1</code> if it has a unique solution;
+     *         <code>2</code> if it has multiple solutions
+     */
+    @Override
+    public int countSolutions() {
+        start();
+        record = false;
+        int count = consistent ? (int) search(0, 2) : 0;
+        finish(SolverStats.COUNT, count);
+        return count;
+    }
+
+    /**
+     * Starts Algorithm X on the remaining columns and passes each solution
+     * to a consumer, until the consumer asks to stop or the limit is
+     * reached. The board is left unchanged.
+     *
+     * @param consumer the consumer of the solutions, or <code>null</code> to
+     *                 count them only
+     * @param limit the number of solutions after which the search stops,
+     *              or 0 for no limit
+     * @return the number of solutions found
+     */
+    @Override
+    public long enumerateSolutions(SolutionConsumer consumer, long limit) {
+        start();
+        record = false;
+        this.consumer = consumer;
+        long count = consistent ? search(0, toLimit(limit)) : 0;
+        finish(consumer != null ? SolverStats.ENUMERATE : SolverStats.COUNT, count);
+        return count;
+    }
+
+    /**
+     * Recursive Algorithm X. Always branches on the column with the fewest
+     * remaining rows, and restores every column it covers before returning.
+     * When solving, the first solution is written to the board; otherwise
+     * each solution is written, passed to the consumer, if any, and cleared.
+     *
+     * @param depth the number of rows selected so far (givens excluded)
+     * @param limit the number of solutions after which the search stops
+     * @return the number of solutions found, at most <code>limit</code>
+     */
+    private long search(int depth, long limit) {
+        if (right[ROOT] == ROOT) {
+            if (record) {
+                writeSolution(depth);
+            } else if (consumer != null) {
+                writeSolution(depth);
+                accept(sb);
+                clearSolution(depth);
+            }
+            return 1;
+        }
+        if (checkpoint())
+            return 0;
+
+        int c = right[ROOT];
+        for (int j = right[c]; j != ROOT; j = right[j]) {
+            if (SolverStats.ENABLED)
+                checks++;
+            if (colSize[j] < colSize[c])
+                c = j;
+        }
+        if (colSize[c] == 0)
+            return 0;
+
+        long found = 0;
+        cover(c);
+        for (int r = down[c]; r != c && found < limit && !halted; r = down[r]) {
+            solution[depth] = r;
+            if (isTraced())
+                trace(r, true);
+            for (int j = right[r]; j != r; j = right[j])
+                cover(column[j]);
+            if (SolverStats.ENABLED)
+                enter();
+            long more = search(depth + 1, limit - found);
+            found += more;
+            for (int j = left[r]; j != r; j = left[j])
+                uncover(column[j]);
+            // Unwinding after the solution is written is not a backtrack
+            if (isTraced() && !(record && more > 0))
+                trace(r, false);
+            if (SolverStats.ENABLED) {
+                if (more == 0)
+                    backtrack();
+                else
+                    this.depth--;
+            }
+        }
+        uncover(c);
+        return found;
+    }
+
+    /**
+     * Notifies the trace listener of the selection of a row, or of its
+     * removal from the solution.
+     *
+     * @param r a node of the row
+     * @param selected <code>true</code> if the row was selected;
+     *                 <code>false</code> if it was removed
+     */
+    private void trace(int r, boolean selected) {
+        int size = sb.SIZE;
+        int candidate = (r - nbCols - 1) / 4;
+        int cell = candidate / size;
+        if (selected)
+            traceAssigned(cell / size, cell % size, candidate % size + 1);
+        else
+            traceCleared(cell / size, cell % size);
+    }
+
+    /**
+     * Copies the selected rows to the board.
+     *
+     * @param depth the number of selected rows
+     */
+    private void writeSolution(int depth) {
+        int size = sb.SIZE;
+        for (int k = 0; k < depth; k++) {
+            int candidate = (solution[k] - nbCols - 1) / 4;
+            int cell = candidate / size;
+            sb.set(candidate % size + 1, cell / size, cell % size);
+        }
+    }
+
+    /**
+     * Clears the cells of the selected rows on the board.
+     *
+     * @param depth the number of selected rows
+     */
+    private void clearSolution(int depth) {
+        int size = sb.SIZE;
+        for (int k = 0; k < depth; k++) {
+            int cell = (solution[k] - nbCols - 1) / 4 / size;
+            sb.set(0, cell / size, cell % size);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package model;
+
+/**
+ * Difficulty tiers of the puzzles, given by the hardest technique a human
+ * solver needs. See {@link DifficultyGrader}.
+ *
+ * @author Arthur Thouzeau
+ * @version 1.0
+ */
+public enum Difficulty {
+    /**
+     * Solved with singles only.
+     */
+    EASY("Easy"),
+    /**
+     * Needs locked candidates.
+     */
+    MEDIUM("Medium"),
+    /**
+     * Needs naked or hidden pairs or triples.
+     */
+    HARD("Hard"),
+    /**
+     * Needs fish patterns (X-Wing, Swordfish).
+     */
+    EXPERT("Expert"),
+    /**
+     * Cannot be solved with the techniques of the grader: needs harder
+     * techniques or guessing.
+     */
+    EXTREME("Extreme");
+
+    private final String label;
+
+    /**
+     * Initializes a tier.
+     *
+     * @param label the name of the tier, as displayed to the user
+     */
+    private Difficulty(String label) {
+        this.label = label;
+    }
+
+    /**
+     * Returns the name of the tier.
+     *
+     * @return the name of the tier, as displayed to the user
+     */
+    @Override
+    public String toString() {
+        return label;
+    }
+}
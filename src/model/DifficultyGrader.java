@@ -0,0 +1,544 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Grades the difficulty of a puzzle the way a human solver would find it:
+ * the puzzle is solved with logical techniques only, always trying the
+ * cheapest {@link Technique} first, and the grade is given by the hardest
+ * technique needed. A puzzle which cannot be solved this way is graded
+ * {@link Difficulty#EXTREME}.
+ * <p>
+ * The candidates of each cell are held as a bitmask, where bit
+ * <code>num - 1</code> stands for <code>num</code>, so every technique is a
+ * few bit operations per unit. Singles are applied in sweeps over the whole
+ * board, the other techniques one pattern at a time, after which the grader
+ * goes back to the singles. A grader keeps its arrays between calls to
+ * {@link #grade}, so one instance can grade many puzzles of the same size
+ * quickly; it is not thread-safe.
+ *
+ * @author Arthur Thouzeau
+ * @version 1.0
+ */
+public class DifficultyGrader {
+    private static final Technique[] TECHNIQUES = Technique.values();
+
+    private final int size;
+    private final int boxSize;
+    private final long all;
+    private final int[][] units;
+    private final int[][] unitsOf;
+    private final long[] candidates;
+    private final int[] values;
+    private final long[] positions;
+    private final int[] subset;
+    private int unsolved;
+    private boolean contradiction;
+    private int[] counts;
+
+    /**
+     * Initializes a grader for puzzles of a given size.
+     *
+     * @param size the number of rows (or columns) of the puzzles
+     * @throws IllegalArgumentException if the size is greater than 64
+     */
+    public DifficultyGrader(int size) {
+        if (size > 64)
+            throw new IllegalArgumentException("Candidate masks on a single "
+                    + "long are limited to 64*64 boards.");
+        this.size = size;
+        boxSize = (int) Math.sqrt(size);
+        all = -1L >>> (64 - size);
+        candidates = new long[size * size];
+        values = new int[size * size];
+        positions = new long[size];
+        subset = new int[3];
+
+        // Units 0 to size - 1 are the rows, then the columns, then the boxes
+        units = new int[3 * size][size];
+        unitsOf = new int[size * size][3];
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                int cell = i * size + j;
+                int box = (i / boxSize) * boxSize + j / boxSize;
+                int inBox = (i % boxSize) * boxSize + j % boxSize;
+                units[i][j] = cell;
+                units[size + j][i] = cell;
+                units[2 * size + box][inBox] = cell;
+                unitsOf[cell][0] = i;
+                unitsOf[cell][1] = size + j;
+                unitsOf[cell][2] = 2 * size + box;
+            }
+        }
+    }
+
+    /**
+     * Grades a puzzle. The puzzle itself is not modified.
+     *
+     * @param puzzle the puzzle, of the size of the grader
+     * @return the grade of the puzzle
+     * @throws IllegalArgumentException if the puzzle is not of the size of
+     *                                  the grader
+     */
+    public Grade grade(SudokuBoard puzzle) {
+        if (puzzle.SIZE != size)
+            throw new IllegalArgumentException("Expected a " + size + "*"
+                    + size + " board, got " + puzzle.SIZE + "*" + puzzle.SIZE);
+        Arrays.fill(candidates, all);
+        Arrays.fill(values, 0);
+        unsolved = size * size;
+        contradiction = false;
+        counts = new int[TECHNIQUES.length];
+        for (int i = 0; i < size && !contradiction; i++) {
+            for (int j = 0; j < size; j++) {
+                int value = puzzle.get(i, j);
+                if (value == 0)
+                    continue;
+                // A given which clashes with another one makes the board invalid
+                if (value < 0 || value > size
+                        || (candidates[i * size + j] & (1L << (value - 1))) == 0) {
+                    contradiction = true;
+                    break;
+                }
+                place(i * size + j, value);
+            }
+        }
+
+        while (unsolved > 0 && !contradiction && step()) {
+            // Each step applied the cheapest technique which made progress
+        }
+        return new Grade(counts, unsolved == 0 && !contradiction);
+    }
+
+    /**
+     * Applies the cheapest technique which makes progress.
+     *
+     * @return <code>true</code> if a technique made progress;
+     *         <code>false</code> if the grader is stuck
+     */
+    private boolean step() {
+        for (Technique t : TECHNIQUES) {
+            int applied = apply(t);
+            if (applied > 0) {
+                counts[t.ordinal()] += applied;
+                return true;
+            }
+            if (contradiction)
+                return false;
+        }
+        return false;
+    }
+
+    /**
+     * Applies a technique.
+     *
+     * @param t the technique
+     * @return the number of times the technique was applied, 0 if it made
+     *         no progress
+     */
+    private int apply(Technique t) {
+        switch (t) {
+        case HIDDEN_SINGLE:
+            return hiddenSingles();
+        case NAKED_SINGLE:
+            return nakedSingles();
+        case LOCKED_CANDIDATES:
+            return lockedCandidates();
+        case NAKED_PAIR:
+            return nakedSubset(2) ? 1 : 0;
+        case NAKED_TRIPLE:
+            return nakedSubset(3) ? 1 : 0;
+        case HIDDEN_PAIR:
+            return hiddenSubset(2) ? 1 : 0;
+        case HIDDEN_TRIPLE:
+            return hiddenSubset(3) ? 1 : 0;
+        case X_WING:
+            return fish(2) ? 1 : 0;
+        case SWORDFISH:
+            return fish(3) ? 1 : 0;
+        default:
+            return 0;
+        }
+    }
+
+    /**
+     * Assigns a value to a cell and removes it from the candidates of the
+     * cells of its row, column and box.
+     *
+     * @param cell the cell, as <code>row * size + col</code>
+     * @param value the value, between 1 and size (inclusive)
+     */
+    private void place(int cell, int value) {
+        values[cell] = value;
+        candidates[cell] = 0;
+        unsolved--;
+        long bit = 1L << (value - 1);
+        for (int u : unitsOf[cell]) {
+            for (int c : units[u])
+                eliminate(c, bit);
+        }
+    }
+
+    /**
+     * Removes candidates from a cell.
+     *
+     * @param cell the cell, as <code>row * size + col</code>
+     * @param mask the candidates to remove
+     * @return <code>true</code> if at least one candidate was removed
+     */
+    private boolean eliminate(int cell, long mask) {
+        if ((candidates[cell] & mask) == 0)
+            return false;
+        candidates[cell] &= ~mask;
+        if (candidates[cell] == 0 && values[cell] == 0)
+            contradiction = true;
+        return true;
+    }
+
+    /**
+     * Assigns every number which has a single possible cell in a unit.
+     *
+     * @return the number of cells assigned
+     */
+    private int hiddenSingles() {
+        int placed = 0;
+        for (int[] unit : units) {
+            long once = 0;
+            long twice = 0;
+            long present = 0;
+            for (int c : unit) {
+                if (values[c] != 0) {
+                    present |= 1L << (values[c] - 1);
+                } else {
+                    twice |= once & candidates[c];
+                    once |= candidates[c];
+                }
+            }
+            if ((once | present) != all) {
+                // A number has no place left in this unit
+                contradiction = true;
+                return placed;
+            }
+            long hidden = once & ~twice;
+            while (hidden != 0) {
+                long bit = hidden & -hidden;
+                hidden ^= bit;
+                for (int c : unit) {
+                    // An assignment earlier in the sweep may have used the cell
+                    if ((candidates[c] & bit) != 0) {
+                        place(c, Long.numberOfTrailingZeros(bit) + 1);
+                        placed++;
+                        break;
+                    }
+                }
+                if (contradiction)
+                    return placed;
+            }
+        }
+        return placed;
+    }
+
+    /**
+     * Assigns every cell which has a single candidate left.
+     *
+     * @return the number of cells assigned
+     */
+    private int nakedSingles() {
+        int placed = 0;
+        for (int cell = 0; cell < values.length && !contradiction; cell++) {
+            long mask = candidates[cell];
+            if (values[cell] == 0 && mask != 0 && (mask & (mask - 1)) == 0) {
+                place(cell, Long.numberOfTrailingZeros(mask) + 1);
+                placed++;
+            }
+        }
+        return placed;
+    }
+
+    /**
+     * Applies locked candidates in every box and line: a number whose
+     * candidates in a box all lie on one line is removed from the rest of
+     * the line (pointing), and a number whose candidates on a line all lie
+     * in one box is removed from the rest of the box (claiming).
+     *
+     * @return the number of patterns which removed candidates
+     */
+    private int lockedCandidates() {
+        int found = 0;
+        for (int box = 0; box < size; box++) {
+            int top = (box / boxSize) * boxSize;
+            int left = (box % boxSize) * boxSize;
+            for (int k = 0; k < boxSize; k++) {
+                // Pointing along row top + k, then along column left + k
+                long onRow = 0;
+                long offRow = 0;
+                long onCol = 0;
+                long offCol = 0;
+                for (int a = 0; a < boxSize; a++) {
+                    for (int b = 0; b < boxSize; b++) {
+                        long mask = candidates[(top + a) * size + left + b];
+                        if (a == k)
+                            onRow |= mask;
+                        else
+                            offRow |= mask;
+                        if (b == k)
+                            onCol |= mask;
+                        else
+                            offCol |= mask;
+                    }
+                }
+                long rowOnly = onRow & ~offRow;
+                long colOnly = onCol & ~offCol;
+                boolean removed = false;
+                for (int j = 0; j < size && rowOnly != 0; j++) {
+                    if (j < left || j >= left + boxSize)
+                        removed |= eliminate((top + k) * size + j, rowOnly);
+                }
+                for (int i = 0; i < size && colOnly != 0; i++) {
+                    if (i < top || i >= top + boxSize)
+                        removed |= eliminate(i * size + left + k, colOnly);
+                }
+                if (removed)
+                    found++;
+            }
+        }
+        for (int line = 0; line < size; line++) {
+            int band = (line / boxSize) * boxSize;
+            for (int k = 0; k < boxSize; k++) {
+                // Claiming on the row, in the k-th box it crosses, then the same for the column
+                long inRowBox = 0;
+                long outRowBox = 0;
+                long inColBox = 0;
+                long outColBox = 0;
+                for (int j = 0; j < size; j++) {
+                    if (j / boxSize == k) {
+                        inRowBox |= candidates[line * size + j];
+                        inColBox |= candidates[j * size + line];
+                    } else {
+                        outRowBox |= candidates[line * size + j];
+                        outColBox |= candidates[j * size + line];
+                    }
+                }
+                long rowOnly = inRowBox & ~outRowBox;
+                long colOnly = inColBox & ~outColBox;
+                boolean removed = false;
+                for (int a = 0; a < boxSize && (rowOnly | colOnly) != 0; a++) {
+                    for (int b = 0; b < boxSize; b++) {
+                        if (band + a == line)
+                            continue;
+                        removed |= eliminate((band + a) * size + k * boxSize + b, rowOnly);
+                        removed |= eliminate((k * boxSize + b) * size + band + a, colOnly);
+                    }
+                }
+                if (removed)
+                    found++;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Looks for a naked subset: <code>n</code> cells of a unit which have
+     * only <code>n</code> candidates between them. These candidates are
+     * removed from the other cells of the unit.
+     *
+     * @param n the size of the subset, 2 or 3
+     * @return <code>true</code> if a subset removed candidates
+     */
+    private boolean nakedSubset(int n) {
+        for (int[] unit : units) {
+            if (nakedSubset(unit, n, 0, 0, 0))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Extends a partial naked subset with cells of the unit, from a given
+     * position on.
+     *
+     * @param unit the cells of the unit
+     * @param n the size of the subset
+     * @param depth the number of cells in the subset so far
+     * @param from the first position of the unit to consider
+     * @param union the candidates of the cells in the subset so far
+     * @return <code>true</code> if a subset removed candidates
+     */
+    private boolean nakedSubset(int[] unit, int n, int depth, int from, long union) {
+        if (depth == n) {
+            if (Long.bitCount(union) != n)
+                return false;
+            boolean removed = false;
+            for (int p = 0; p < size; p++) {
+                if (!inSubset(p, n))
+                    removed |= eliminate(unit[p], union);
+            }
+            return removed;
+        }
+        for (int p = from; p < size; p++) {
+            long mask = candidates[unit[p]];
+            int count = Long.bitCount(mask);
+            if (count < 2 || count > n)
+                continue;
+            long extended = union | mask;
+            if (Long.bitCount(extended) > n)
+                continue;
+            subset[depth] = p;
+            if (nakedSubset(unit, n, depth + 1, p + 1, extended))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Looks for a hidden subset: <code>n</code> numbers of a unit which
+     * are restricted to the same <code>n</code> cells. The other candidates
+     * of these cells are removed.
+     *
+     * @param n the size of the subset, 2 or 3
+     * @return <code>true</code> if a subset removed candidates
+     */
+    private boolean hiddenSubset(int n) {
+        for (int[] unit : units) {
+            Arrays.fill(positions, 0);
+            for (int p = 0; p < size; p++) {
+                long mask = candidates[unit[p]];
+                while (mask != 0) {
+                    long bit = mask & -mask;
+                    mask ^= bit;
+                    positions[Long.numberOfTrailingZeros(bit)] |= 1L << p;
+                }
+            }
+            if (hiddenSubset(unit, n, 0, 0, 0))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Extends a partial hidden subset with numbers, from a given number on.
+     * {@link #positions} holds the cells of the unit where each number can
+     * go.
+     *
+     * @param unit the cells of the unit
+     * @param n the size of the subset
+     * @param depth the number of numbers in the subset so far
+     * @param from the first number to consider, minus one
+     * @param union the cells of the numbers in the subset so far, as
+     *              positions in the unit
+     * @return <code>true</code> if a subset removed candidates
+     */
+    private boolean hiddenSubset(int[] unit, int n, int depth, int from, long union) {
+        if (depth == n) {
+            if (Long.bitCount(union) != n)
+                return false;
+            long keep = 0;
+            for (int k = 0; k < n; k++)
+                keep |= 1L << subset[k];
+            boolean removed = false;
+            for (long cells = union; cells != 0; cells &= cells - 1)
+                removed |= eliminate(unit[Long.numberOfTrailingZeros(cells)], ~keep);
+            return removed;
+        }
+        for (int d = from; d < size; d++) {
+            int count = Long.bitCount(positions[d]);
+            if (count < 2 || count > n)
+                continue;
+            long extended = union | positions[d];
+            if (Long.bitCount(extended) > n)
+                continue;
+            subset[depth] = d;
+            if (hiddenSubset(unit, n, depth + 1, d + 1, extended))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Looks for a fish: a number restricted to the same <code>n</code>
+     * columns in <code>n</code> rows (or the reverse). The number is
+     * removed from the other cells of these columns (or rows).
+     *
+     * @param n the number of lines, 2 for an X-Wing, 3 for a Swordfish
+     * @return <code>true</code> if a fish removed candidates
+     */
+    private boolean fish(int n) {
+        for (int d = 0; d < size; d++) {
+            long bit = 1L << d;
+            for (int across = 0; across < 2; across++) {
+                // Base lines are the rows, then the columns
+                for (int line = 0; line < size; line++) {
+                    long cells = 0;
+                    for (int k = 0; k < size; k++) {
+                        int cell = across == 0 ? line * size + k : k * size + line;
+                        if ((candidates[cell] & bit) != 0)
+                            cells |= 1L << k;
+                    }
+                    positions[line] = cells;
+                }
+                if (fish(n, bit, across == 0, 0, 0, 0))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Extends a partial fish with base lines, from a given line on.
+     * {@link #positions} holds the cover lines where the number can go on
+     * each base line.
+     *
+     * @param n the number of lines
+     * @param bit the number, as a bitmask
+     * @param rows <code>true</code> if the base lines are rows;
+     *             <code>false</code> if they are columns
+     * @param depth the number of base lines so far
+     * @param from the first base line to consider
+     * @param union the cover lines of the base lines so far
+     * @return <code>true</code> if a fish removed candidates
+     */
+    private boolean fish(int n, long bit, boolean rows, int depth, int from, long union) {
+        if (depth == n) {
+            if (Long.bitCount(union) != n)
+                return false;
+            boolean removed = false;
+            for (int line = 0; line < size; line++) {
+                if (inSubset(line, n))
+                    continue;
+                for (long cover = union; cover != 0; cover &= cover - 1) {
+                    int k = Long.numberOfTrailingZeros(cover);
+                    removed |= eliminate(rows ? line * size + k : k * size + line, bit);
+                }
+            }
+            return removed;
+        }
+        for (int line = from; line < size; line++) {
+            int count = Long.bitCount(positions[line]);
+            if (count < 2 || count > n)
+                continue;
+            long extended = union | positions[line];
+            if (Long.bitCount(extended) > n)
+                continue;
+            subset[depth] = line;
+            if (fish(n, bit, rows, depth + 1, line + 1, extended))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Tells whether a position is one of the <code>n</code> first entries
+     * of {@link #subset}.
+     *
+     * @param p the position
+     * @param n the size of the subset
+     * @return <code>true</code> if the position is in the subset
+     */
+    private boolean inSubset(int p, int n) {
+        for (int k = 0; k < n; k++) {
+            if (subset[k] == p)
+                return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,126 @@
+package model;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Result of the grading of a puzzle by the {@link DifficultyGrader}: the
+ * techniques needed, how many times each was applied, and the resulting
+ * difficulty tier and score.
+ * <p>
+ * The score is the rating of the hardest technique needed, or
+ * {@link #UNSOLVED_SCORE} if the grader could not solve the puzzle.
+ *
+ * @author Arthur Thouzeau
+ * @version 1.0
+ */
+public final class Grade {
+    /**
+     * The score of a puzzle the grader could not solve, above the rating of
+     * every technique.
+     */
+    public static final double UNSOLVED_SCORE = 5.0;
+
+    private final int[] counts;
+    private final boolean solved;
+    private final Difficulty difficulty;
+    private final double score;
+
+    /**
+     * Initializes a grade.
+     *
+     * @param counts the number of times each technique was applied, indexed
+     *               by ordinal
+     * @param solved whether the grader solved the puzzle
+     */
+    Grade(int[] counts, boolean solved) {
+        this.counts = counts;
+        this.solved = solved;
+        Difficulty hardest = Difficulty.EASY;
+        double rating = 0;
+        for (Technique t : Technique.values()) {
+            if (counts[t.ordinal()] > 0) {
+                rating = Math.max(rating, t.getRating());
+                if (t.getDifficulty().compareTo(hardest) > 0)
+                    hardest = t.getDifficulty();
+            }
+        }
+        difficulty = solved ? hardest : Difficulty.EXTREME;
+        score = solved ? rating : UNSOLVED_SCORE;
+    }
+
+    /**
+     * Returns the tier of difficulty of the puzzle.
+     *
+     * @return the tier of the hardest technique needed, or
+     *         {@link Difficulty#EXTREME} if the puzzle was not solved
+     */
+    public Difficulty getDifficulty() {
+        return difficulty;
+    }
+
+    /**
+     * Returns the score of the puzzle.
+     *
+     * @return the rating of the hardest technique needed, or
+     *         {@link #UNSOLVED_SCORE} if the puzzle was not solved
+     */
+    public double getScore() {
+        return score;
+    }
+
+    /**
+     * Tells whether the grader solved the puzzle with its techniques.
+     *
+     * @return <code>true</code> if the puzzle was solved;
+     *         <code>false</code> if it needs harder techniques, guessing,
+     *         or has no solution
+     */
+    public boolean isSolved() {
+        return solved;
+    }
+
+    /**
+     * Returns the number of times a technique was applied. Singles count
+     * once per cell assigned, the other techniques once per pattern found.
+     *
+     * @param technique the technique
+     * @return the number of applications
+     */
+    public int getCount(Technique technique) {
+        return counts[technique.ordinal()];
+    }
+
+    /**
+     * Returns the techniques applied at least once.
+     *
+     * @return the techniques needed
+     */
+    public Set<Technique> getTechniques() {
+        Set<Technique> used = EnumSet.noneOf(Technique.class);
+        for (Technique t : Technique.values()) {
+            if (counts[t.ordinal()] > 0)
+                used.add(t);
+        }
+        return used;
+    }
+
+    /**
+     * Returns a summary of the grade.
+     *
+     * @return the tier, the score and the techniques applied
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%s (%.1f)", difficulty, score));
+        String separator = ": ";
+        for (Technique t : Technique.values()) {
+            if (counts[t.ordinal()] > 0) {
+                sb.append(separator).append(t).append(" x").append(counts[t.ordinal()]);
+                separator = ", ";
+            }
+        }
+        return sb.toString();
+    }
+}
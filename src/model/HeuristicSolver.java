@@ -0,0 +1,323 @@
+package model;
+
+import java.util.Random;
+
+/**
+ * This class contains the routines to solve a Sudoku puzzle by backtracking,
+ * with a choice of heuristics for the order of the cells and of the numbers,
+ * so that a {@link PortfolioSolver} can race several searches which get
+ * stuck on different puzzles:
+ * <ul>
+ * <li>the cells can be taken in reverse row-major order, or by fewest
+ * candidates first (re-evaluated at every node);</li>
+ * <li>the numbers can be tried in ascending, descending or random order;</li>
+ * <li>with a random order, the search can restart from scratch, with a new
+ * order, each time it has visited a number of nodes without success. The
+ * allowance doubles at each restart, so a puzzle is still solved or proven
+ * unsolvable in the end.</li>
+ * </ul>
+ * The search runs in a loop, like {@link RecursiveSolver}, on arrays
+ * allocated once with the solver. Candidates are read from the masks of the
+ * {@link SudokuBoard} as a single <code>long</code>, so this solver is
+ * limited to boards up to 64*64.
+ *
+ * @author Arthur Thouzeau
+ * @version 1.0
+ */
+public class HeuristicSolver extends AbstractSolver {
+    private SudokuBoard sb;
+    private final boolean fewestCandidates;
+    private final boolean descending;
+    private final Random random;
+    private final long restartNodes;
+    private final int[] empty;
+    private final long[] options;
+    private int restarts;
+
+    /**
+     * Initializes a new Heuristic Solver with a deterministic order.
+     *
+     * @param board the Sudoku to solve
+     * @param fewestCandidates <code>true</code> to branch on the cell with
+     *                         the fewest candidates; <code>false</code> to
+     *                         take the cells in reverse row-major order
+     * @param descending <code>true</code> to try the numbers in descending
+     *                   order; <code>false</code> for ascending order
+     * @throws IllegalArgumentException if the board is larger than 64*64
+     */
+    public HeuristicSolver(SudokuBoard board, boolean fewestCandidates,
+            boolean descending) {
+        this(board, fewestCandidates, descending, null, 0);
+    }
+
+    /**
+     * Initializes a new Heuristic Solver branching on the cell with the
+     * fewest candidates, breaking ties at random and trying the numbers in
+     * random order, with restarts.
+     *
+     * @param board the Sudoku to solve
+     * @param seed the seed of the random orders
+     * @param restartNodes the number of nodes after which the first search
+     *                     restarts, doubled at each restart, or 0 for no
+     *                     restart
+     * @throws IllegalArgumentException if the board is larger than 64*64
+     */
+    public HeuristicSolver(SudokuBoard board, long seed, long restartNodes) {
+        this(board, true, false, new Random(seed), restartNodes);
+    }
+
+    /**
+     * Initializes a new Heuristic Solver.
+     *
+     * @param board the Sudoku to solve
+     * @param fewestCandidates <code>true</code> to branch on the cell with
+     *                         the fewest candidates
+     * @param descending <code>true</code> to try the numbers in descending
+     *                   order
+     * @param random the source of the random orders, or <code>null</code>
+     *               for a deterministic order
+     * @param restartNodes the number of nodes after which the first search
+     *                     restarts, or 0 for no restart
+     * @throws IllegalArgumentException if the board is larger than 64*64
+     */
+    private HeuristicSolver(SudokuBoard board, boolean fewestCandidates,
+            boolean descending, Random random, long restartNodes) {
+        if (board.SIZE > 64)
+            throw new IllegalArgumentException("The heuristic solver is "
+                    + "limited to 64*64 boards.");
+        sb = new SudokuBoard(board);
+        this.fewestCandidates = fewestCandidates;
+        this.descending = descending;
+        this.random = random;
+        this.restartNodes = random != null ? restartNodes : 0;
+        empty = new int[sb.SIZE * sb.SIZE];
+        options = new long[sb.SIZE * sb.SIZE + 1];
+    }
+
+    /**
+     * Returns the Sudoku board.
+     *
+     * @return the Sudoku board
+     */
+    @Override
+    public SudokuBoard getBoard() {
+        return sb;
+    }
+
+    /**
+     * Returns the number of times the last search restarted.
+     *
+     * @return the number of restarts
+     */
+    public int getRestarts() {
+        return restarts;
+    }
+
+    /**
+     * Searches for the first solution, which is left on the board,
+     * restarting if needed.
+     *
+     * @return <code>true</code> if the sudoku has a solution;
+     *         <code>false</code> otherwise
+     */
+    @Override
+    public boolean solve() {
+        start();
+        boolean solved = false;
+        if (sb.checkInitialBoard()) {
+            restarts = 0;
+            long allowance = restartNodes > 0 ? restartNodes : Long.MAX_VALUE;
+            long result;
+            while ((result = search(listEmptyCells(), 1, true, allowance)) < 0) {
+                restarts++;
+                allowance *= 2;
+            }
+            solved = result == 1;
+        }
+        finish(SolverStats.SOLVE, solved ? 1 : 0);
+        return solved;
+    }
+
+    /**
+     * Searches for the first two solutions, without restarts. The board is
+     * left unchanged.
+     *
+     * @return <code>0</code> if the sudoku has no solution;
+     *         <code>1</code> if it has a unique solution;
+     *         <code>2</code> if it has multiple solutions
+     */
+    @Override
+    public int countSolutions() {
+        start();
+        int count = sb.checkInitialBoard()
+                ? (int) search(listEmptyCells(), 2, false, Long.MAX_VALUE) : 0;
+        finish(SolverStats.COUNT, count);
+        return count;
+    }
+
+    /**
+     * Searches for the solutions, without restarts, and passes each one to
+     * a consumer. The board is left unchanged.
+     *
+     * @param consumer the consumer of the solutions, or <code>null</code> to
+     *                 count them only
+     * @param limit the number of solutions after which the search stops,
+     *              or 0 for no limit
+     * @return the number of solutions found
+     */
+    @Override
+    public long enumerateSolutions(SolutionConsumer consumer, long limit) {
+        start();
+        this.consumer = consumer;
+        long count = sb.checkInitialBoard()
+                ? search(listEmptyCells(), toLimit(limit), false, Long.MAX_VALUE) : 0;
+        finish(consumer != null ? SolverStats.ENUMERATE : SolverStats.COUNT, count);
+        return count;
+    }
+
+    /**
+     * Lists the unassigned cells, in reverse row-major order.
+     *
+     * @return the number of unassigned cells
+     */
+    private int listEmptyCells() {
+        int size = sb.SIZE;
+        int k = 0;
+        for (int cell = size * size - 1; cell >= 0; cell--) {
+            if (sb.get(cell / size, cell % size) == 0)
+                empty[k++] = cell;
+        }
+        return k;
+    }
+
+    /**
+     * Picks the cell of a level among the cells not assigned yet, moves it
+     * to the position of the level in the list, and returns its candidates.
+     *
+     * @param level the level of the search
+     * @param nbEmpty the number of unassigned cells of the puzzle
+     * @return the candidates of the chosen cell
+     */
+    private long chooseCell(int level, int nbEmpty) {
+        int size = sb.SIZE;
+        if (!fewestCandidates)
+            return sb.getCandidates(empty[level] / size, empty[level] % size);
+
+        int best = level;
+        long bestCandidates = 0;
+        int bestCount = Integer.MAX_VALUE;
+        int ties = 0;
+        for (int k = level; k < nbEmpty; k++) {
+            if (SolverStats.ENABLED)
+                checks++;
+            long candidates = sb.getCandidates(empty[k] / size, empty[k] % size);
+            int count = Long.bitCount(candidates);
+            if (count < bestCount) {
+                best = k;
+                bestCandidates = candidates;
+                bestCount = count;
+                ties = 1;
+                if (count <= 1)
+                    break;
+            } else if (count == bestCount && random != null
+                    && random.nextInt(++ties) == 0) {
+                best = k;
+                bestCandidates = candidates;
+            }
+        }
+        int cell = empty[best];
+        empty[best] = empty[level];
+        empty[level] = cell;
+        return bestCandidates;
+    }
+
+    /**
+     * Picks the next number to try among the remaining candidates of a
+     * cell, following the order of the numbers.
+     *
+     * @param candidates the remaining candidates, not empty
+     * @return the bit of the number
+     */
+    private long nextNumber(long candidates) {
+        if (random != null) {
+            for (int k = random.nextInt(Long.bitCount(candidates)); k > 0; k--)
+                candidates &= candidates - 1;
+            return Long.lowestOneBit(candidates);
+        }
+        return descending ? Long.highestOneBit(candidates) : Long.lowestOneBit(candidates);
+    }
+
+    /**
+     * Backtracking loop. The cells of levels 0 to <code>level - 1</code> of
+     * the list are assigned; <code>options</code> holds the candidates not
+     * tried yet at each level. When solving, the search stops at the first
+     * solution, which is left on the board; otherwise it goes on after each
+     * solution and the board is restored at the end.
+     *
+     * @param nbEmpty the number of unassigned cells
+     * @param limit the number of solutions after which the search stops
+     * @param record <code>true</code> to stop at the first solution and
+     *               leave it on the board
+     * @param allowance the number of nodes after which the search gives up
+     *                  to restart
+     * @return the number of solutions found, or -1 if the search gave up
+     *         to restart
+     */
+    private long search(int nbEmpty, long limit, boolean record, long allowance) {
+        int size = sb.SIZE;
+        long count = 0;
+        long visited = 0;
+        int level = 0;
+        if (nbEmpty > 0)
+            options[0] = chooseCell(0, nbEmpty);
+
+        while (true) {
+            if (level == nbEmpty) {
+                count++;
+                if (record)
+                    return count;
+                if (accept(sb) || count >= limit || level == 0)
+                    break;
+            } else if (options[level] != 0) {
+                long bit = nextNumber(options[level]);
+                options[level] &= ~bit;
+                int num = Long.numberOfTrailingZeros(bit) + 1;
+                int row = empty[level] / size;
+                int col = empty[level] % size;
+                sb.set(num, row, col);
+                traceAssigned(row, col, num);
+                if (SolverStats.ENABLED)
+                    enter();
+                level++;
+                if (level < nbEmpty) {
+                    if (checkpoint())
+                        break;
+                    if (++visited > allowance) {
+                        count = -1;
+                        break;
+                    }
+                    options[level] = chooseCell(level, nbEmpty);
+                }
+                continue;
+            } else if (level == 0) {
+                return count;
+            }
+            // Go back to the previous cell and try its next number
+            level--;
+            sb.set(0, empty[level] / size, empty[level] % size);
+            traceCleared(empty[level] / size, empty[level] % size);
+            if (SolverStats.ENABLED)
+                backtrack();
+        }
+
+        // Stopped early: remove the values of the current branch
+        while (level > 0) {
+            level--;
+            sb.set(0, empty[level] / size, empty[level] % size);
+            traceCleared(empty[level] / size, empty[level] % size);
+            if (SolverStats.ENABLED)
+                backtrack();
+        }
+        return count;
+    }
+}
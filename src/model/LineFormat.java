@@ -0,0 +1,133 @@
+package model;
+
+/**
+ * This class converts Sudoku boards to and from the compact one-line format,
+ * where the cells are written row after row with one character each, like
+ * <code>53..7....6..195....98....6.8...</code> for a 9*9 Sudoku.
+ * <p>
+ * Unassigned cells are written as <code>.</code> (<code>0</code> is also
+ * accepted when reading). Values 1 to 9 are written as digits, and larger
+ * values as letters (<code>A</code> for 10 up to <code>Z</code> for 35), so
+ * that boards up to 25*25 fit in this format.
+ *
+ * @author Arthur Thouzeau
+ * @version 1.0
+ */
+public final class LineFormat {
+    /**
+     * The largest board size which can be written in this format.
+     */
+    public static final int MAX_SIZE = 25;
+
+    static final String LENGTH_ERROR = "Please check the length of the line.\n"
+            + "It should be 81 characters for a 9*9 Sudoku.";
+    static final String VALUE_ERROR =
+            "Please check all values are digits, letters or dots.";
+
+    /**
+     * Constructor
+     */
+    private LineFormat() {}
+
+    /**
+     * Returns the size of the board written on a line of a given length.
+     *
+     * @param length the number of cells on the line
+     * @return the size of the board, or <code>-1</code> if the length is not
+     *         the square of a perfect square no larger than 25*25
+     */
+    public static int sizeOf(int length) {
+        int size = (int) Math.sqrt(length);
+        int boxSize = (int) Math.sqrt(size);
+        if (size * size != length || boxSize * boxSize != size
+                || size == 0 || size > MAX_SIZE)
+            return -1;
+        return size;
+    }
+
+    /**
+     * Returns the value of a cell character.
+     *
+     * @param c the character
+     * @return the value of the cell (0 for an unassigned cell), or
+     *         <code>-1</code> if the character is not a valid cell
+     */
+    public static int valueOf(int c) {
+        if (c == '.' || c == '0')
+            return 0;
+        if (c >= '1' && c <= '9')
+            return c - '0';
+        if (c >= 'A' && c <= 'Z')
+            return c - 'A' + 10;
+        if (c >= 'a' && c <= 'z')
+            return c - 'a' + 10;
+        return -1;
+    }
+
+    /**
+     * Returns the character of a cell value.
+     *
+     * @param value the value of the cell, between 0 and 35 (inclusive)
+     * @return the character representing the value
+     */
+    public static char charOf(int value) {
+        if (value == 0)
+            return '.';
+        if (value < 10)
+            return (char) ('0' + value);
+        return (char) ('A' + value - 10);
+    }
+
+    /**
+     * Reads a board from a line. Trailing whitespaces are ignored.
+     *
+     * @param line the line to read
+     * @return the new SudokuBoard
+     * @throws ImportException if the length of the line or one of the
+     *                         characters is not valid
+     */
+    public static SudokuBoard parse(CharSequence line) throws ImportException {
+        int length = line.length();
+        while (length > 0 && Character.isWhitespace(line.charAt(length - 1)))
+            length--;
+        int size = sizeOf(length);
+        if (size == -1) {
+            throw new ImportException(LENGTH_ERROR);
+        }
+        SudokuBoard sb = new SudokuBoard(size);
+        for (int i = 0; i < length; i++) {
+            int value = valueOf(line.charAt(i));
+            if (value < 0 || value > size) {
+                throw new ImportException(VALUE_ERROR);
+            }
+            sb.set(value, i / size, i % size);
+        }
+        return sb;
+    }
+
+    /**
+     * Writes a board on a line, without line terminator.
+     *
+     * @param sb the board to write, no larger than 25*25
+     * @param out the builder to append the line to
+     */
+    public static void format(SudokuBoard sb, StringBuilder out) {
+        for (int i = 0; i < sb.SIZE; i++) {
+            for (int j = 0; j < sb.SIZE; j++) {
+                out.append(charOf(sb.get(i, j)));
+            }
+        }
+    }
+
+    /**
+     * Writes a board on a line, without line terminator.
+     *
+     * @param sb the board to write, no larger than 25*25
+     * @return the line
+     */
+    public static String format(SudokuBoard sb) {
+        StringBuilder out = new StringBuilder(sb.SIZE * sb.SIZE);
+        format(sb, out);
+        return out.toString();
+    }
+}
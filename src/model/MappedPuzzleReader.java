@@ -0,0 +1,254 @@
+package model;
+
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class reads large files of Sudokus written in the one-line format of
+ * {@link LineFormat}, one puzzle per line. The file is mapped in memory and
+ * the characters are decoded straight from the mapped bytes into the cells
+ * of a {@link SudokuBoard}, without creating any String.
+ * <p>
+ * The file can be split into segments starting and ending at line
+ * boundaries. Each segment is mapped separately and has its own cursor, so
+ * several threads can parse different parts of the file at the same time.
+ * A segment is never larger than 1 GB, so files over the 2 GB limit of a
+ * single mapping are handled as well.
+ *
+ * @author Arthur Thouzeau
+ * @version 1.0
+ */
+public class MappedPuzzleReader implements Closeable {
+    private static final long MAX_SEGMENT = 1L << 30;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final long length;
+    private int size;
+
+    /**
+     * Opens a file of puzzles.
+     *
+     * @param inputFile the pathname of the file
+     * @throws ImportException if the file was not found
+     * @throws IOException if an I/O error occurs
+     */
+    public MappedPuzzleReader(String inputFile) throws ImportException, IOException {
+        try {
+            file = new RandomAccessFile(inputFile, "r");
+        } catch (FileNotFoundException e) {
+            throw new ImportException("The file you specified was not found.");
+        }
+        channel = file.getChannel();
+        length = channel.size();
+    }
+
+    /**
+     * Returns the size of the Sudokus of the file, given by the length of
+     * the first non-blank line.
+     *
+     * @return the size of the Sudokus (number of rows)
+     * @throws ImportException if the file is empty or the length of the
+     *                         first line is not valid
+     * @throws IOException if an I/O error occurs
+     */
+    public int getSize() throws ImportException, IOException {
+        if (size != 0)
+            return size;
+        long start = skipBlanks(0);
+        if (start == length)
+            throw new ImportException("Please check that the file is not empty.");
+        long end = findLineEnd(start);
+        while (end > start && isBlank(byteAt(end - 1)))
+            end--;
+        int found = LineFormat.sizeOf((int) Math.min(end - start, Integer.MAX_VALUE));
+        if (found == -1) {
+            throw new ImportException(LineFormat.LENGTH_ERROR);
+        }
+        size = found;
+        return size;
+    }
+
+    /**
+     * Splits the file into segments of about the same length, each starting
+     * at the beginning of a line. More segments than requested are returned
+     * if needed to keep each of them under 1 GB.
+     *
+     * @param parts the number of segments wanted
+     * @return the segments, in file order
+     * @throws ImportException if the size of the Sudokus is not valid
+     * @throws IOException if an I/O error occurs
+     */
+    public List<Segment> split(int parts) throws ImportException, IOException {
+        int boardSize = getSize();
+        long target = Math.max(1, Math.min(MAX_SEGMENT, (length + parts - 1) / parts));
+        List<Segment> segments = new ArrayList<Segment>();
+        long start = 0;
+        while (start < length) {
+            long end = Math.min(length, start + target);
+            if (end < length) {
+                // Move the cut just after the end of a line
+                end = Math.min(length, findLineEnd(end - 1) + 1);
+                if (end - start > MAX_SEGMENT) {
+                    throw new ImportException(LineFormat.LENGTH_ERROR);
+                }
+            }
+            segments.add(new Segment(channel.map(FileChannel.MapMode.READ_ONLY,
+                    start, end - start), start, boardSize));
+            start = end;
+        }
+        return segments;
+    }
+
+    /**
+     * Closes the file. Segments already mapped stay readable.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+
+    /**
+     * Returns the position of the first non-blank byte from a position.
+     *
+     * @param position the position to start from
+     * @return the position of the first non-blank byte, or the length of
+     *         the file
+     * @throws IOException if an I/O error occurs
+     */
+    private long skipBlanks(long position) throws IOException {
+        while (position < length && isBlank(byteAt(position)))
+            position++;
+        return position;
+    }
+
+    /**
+     * Returns the position of the end of the line containing a position.
+     *
+     * @param position a position in the file
+     * @return the position of the next <code>'\n'</code>, or the length of
+     *         the file
+     * @throws IOException if an I/O error occurs
+     */
+    private long findLineEnd(long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        while (position < length) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n')
+                    return position + i;
+            }
+            position += read;
+        }
+        return length;
+    }
+
+    /**
+     * Reads one byte of the file.
+     *
+     * @param position the position of the byte
+     * @return the byte
+     * @throws IOException if an I/O error occurs
+     */
+    private byte byteAt(long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(1);
+        channel.read(buffer, position);
+        return buffer.get(0);
+    }
+
+    /**
+     * Tests whether a byte is a whitespace or a line terminator.
+     *
+     * @param b the byte
+     * @return <code>true</code> if the byte is blank;
+     *         <code>false</code> otherwise
+     */
+    private static boolean isBlank(byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+    }
+
+    /**
+     * A part of the file made of whole lines, with its own cursor. A segment
+     * must only be used by one thread at a time.
+     */
+    public static class Segment {
+        private final MappedByteBuffer buffer;
+        private final long offset;
+        private final int size;
+        private int position;
+
+        /**
+         * Initializes a segment.
+         *
+         * @param buffer the mapped bytes of the segment
+         * @param offset the position of the segment in the file
+         * @param size the size of the Sudokus
+         */
+        Segment(MappedByteBuffer buffer, long offset, int size) {
+            this.buffer = buffer;
+            this.offset = offset;
+            this.size = size;
+        }
+
+        /**
+         * Returns the size of the Sudokus of the segment.
+         *
+         * @return the size of the Sudokus (number of rows)
+         */
+        public int getSize() {
+            return size;
+        }
+
+        /**
+         * Reads the next puzzle of the segment into an existing board, which
+         * is entirely overwritten. Blank lines are skipped.
+         *
+         * @param sb the board to fill, of the size of the segment
+         * @return <code>true</code> if a puzzle was read;
+         *         <code>false</code> at the end of the segment
+         * @throws ImportException if the length of the line or one of its
+         *                         characters is not valid
+         */
+        public boolean next(SudokuBoard sb) throws ImportException {
+            int limit = buffer.limit();
+            while (position < limit && isBlank(buffer.get(position)))
+                position++;
+            if (position == limit)
+                return false;
+
+            int start = position;
+            int end = start;
+            while (end < limit && buffer.get(end) != '\n')
+                end++;
+            position = end;
+            while (end > start && isBlank(buffer.get(end - 1)))
+                end--;
+
+            if (end - start != size * size || sb.SIZE != size) {
+                throw new ImportException("At byte " + (offset + start) + ": "
+                        + LineFormat.LENGTH_ERROR);
+            }
+            for (int i = 0; i < size; i++) {
+                for (int j = 0; j < size; j++) {
+                    int value = LineFormat.valueOf(buffer.get(start++));
+                    if (value < 0 || value > size) {
+                        throw new ImportException("At byte " + (offset + start - 1)
+                                + ": " + LineFormat.VALUE_ERROR);
+                    }
+                    sb.set(value, i, j);
+                }
+            }
+            return true;
+        }
+    }
+}
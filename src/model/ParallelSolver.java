@@ -0,0 +1,388 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * This class contains the routines to solve a Sudoku puzzle on several cores,
+ * using a fork/join pool with work stealing.
+ * <p>
+ * The top levels of the search tree are split into tasks: a task simplifies
+ * its board by propagation, picks the same choice point as the sequential
+ * search (usually the cell with the fewest candidates) and forks one subtask
+ * per possibility, each with its own copy of the board. The split stops when
+ * the pool has enough queued work, and the subtree is then searched
+ * sequentially by a {@link ConstraintSolver}. All the tasks of a
+ * search share a stop flag: it is raised as soon as a solution is found (or
+ * the limit is reached when counting), and the other tasks give up.
+ * <p>
+ * The solutions found by the tasks are counted together, so counting all the
+ * solutions of a board with many of them runs on every core. When
+ * enumerating, the solutions are passed to the consumer one at a time, in no
+ * particular order.
+ * <p>
+ * The statistics of a search add up those of all its tasks: each forked
+ * subtask counts as a node, and the counters of the sequential searches are
+ * added to them. The nodes visited by the sequential searches are also
+ * added up as they go, to enforce the budget and report the progress.
+ * <p>
+ * Like {@link ConstraintSolver}, this solver is limited to boards up to
+ * 64*64. It is meant for large boards, on small ones the cost of the tasks
+ * outweighs the gain.
+ *
+ * @author Arthur Thouzeau
+ * @version 1.0
+ */
+public class ParallelSolver extends AbstractSolver {
+    private static final ForkJoinPool POOL = new ForkJoinPool();
+    private static final int MAX_SPLIT_DEPTH = 12;
+    private static final int MAX_SURPLUS_TASKS = 2;
+
+    private SudokuBoard sb;
+    private final AtomicBoolean stop = new AtomicBoolean();
+    private final AtomicLong solutions = new AtomicLong();
+    private final AtomicReference<SudokuBoard> solution =
+            new AtomicReference<SudokuBoard>();
+    private long limit;
+    private SolutionConsumer target;
+    private boolean targetStopped;
+    private final SolutionConsumer leafSolutions = new LeafSolutions();
+    private final AtomicLong totalNodes = new AtomicLong();
+    private final AtomicLong totalBacktracks = new AtomicLong();
+    private final AtomicLong totalChecks = new AtomicLong();
+    private final AtomicInteger deepest = new AtomicInteger();
+    private final AtomicLong visited = new AtomicLong();
+    private volatile boolean tasksAborted;
+
+    /**
+     * Initializes a new Parallel Solver.
+     *
+     * @param board the Sudoku to solve
+     * @throws IllegalArgumentException if the board is larger than 64*64
+     */
+    public ParallelSolver(SudokuBoard board) {
+        if (board.SIZE > 64)
+            throw new IllegalArgumentException("The parallel solver is "
+                    + "limited to 64*64 boards.");
+        sb = new SudokuBoard(board);
+    }
+
+    /**
+     * Returns the Sudoku board.
+     *
+     * @return the Sudoku board
+     */
+    @Override
+    public SudokuBoard getBoard() {
+        return sb;
+    }
+
+    /**
+     * Searches the tree in parallel and stops at the first solution, which
+     * is copied to the board.
+     *
+     * @return <code>true</code> if the sudoku has a solution;
+     *         <code>false</code> otherwise
+     */
+    @Override
+    public boolean solve() {
+        start();
+        if (!aborted && sb.checkInitialBoard())
+            run(1, new FirstSolution());
+        SudokuBoard found = solution.get();
+        if (found != null)
+            sb.copyFrom(found);
+        finishTasks(SolverStats.SOLVE, found != null ? 1 : 0);
+        return found != null;
+    }
+
+    /**
+     * Searches the tree in parallel and stops once two solutions have been
+     * found by any of the tasks. The board is left unchanged.
+     *
+     * @return <code>0</code> if the sudoku has no solution;
+     *         <code>1</code> if it has a unique solution;
+     *         <code>2</code> if it has multiple solutions
+     */
+    @Override
+    public int countSolutions() {
+        start();
+        if (!aborted && sb.checkInitialBoard())
+            run(2, null);
+        int count = (int) Math.min(2, solutions.get());
+        finishTasks(SolverStats.COUNT, count);
+        return count;
+    }
+
+    /**
+     * Searches the tree in parallel and passes the solutions found by the
+     * tasks to a consumer, until the consumer asks to stop or the limit is
+     * reached. The board is left unchanged.
+     *
+     * @param consumer the consumer of the solutions, or <code>null</code> to
+     *                 count them only
+     * @param limit the number of solutions after which the search stops,
+     *              or 0 for no limit
+     * @return the number of solutions found
+     */
+    @Override
+    public long enumerateSolutions(SolutionConsumer consumer, long limit) {
+        start();
+        long max = toLimit(limit);
+        if (!aborted && sb.checkInitialBoard())
+            run(max, consumer);
+        long count = Math.min(max, solutions.get());
+        finishTasks(consumer != null ? SolverStats.ENUMERATE : SolverStats.COUNT, count);
+        return count;
+    }
+
+    /**
+     * Aborts the search in progress, or the next one, by raising the stop
+     * flag shared by the tasks.
+     */
+    @Override
+    public void cancel() {
+        super.cancel();
+        stop.set(true);
+    }
+
+    /**
+     * Runs the root task in the pool.
+     *
+     * @param limit the number of solutions after which the search stops
+     * @param consumer the consumer of the solutions, or <code>null</code>
+     */
+    private void run(long limit, SolutionConsumer consumer) {
+        this.limit = limit;
+        target = consumer;
+        targetStopped = false;
+        stop.set(false);
+        POOL.invoke(new SearchTask(new SudokuBoard(sb), 0));
+    }
+
+    /**
+     * Records the statistics of all the tasks of a call, and resets the
+     * shared state for the next one.
+     *
+     * @param operation {@link SolverStats#SOLVE} or {@link SolverStats#COUNT}
+     * @param result the number of solutions found
+     */
+    private void finishTasks(String operation, long result) {
+        nodes = totalNodes.getAndSet(0);
+        backtracks = totalBacktracks.getAndSet(0);
+        checks = totalChecks.getAndSet(0);
+        maxDepth = deepest.getAndSet(0);
+        visited.set(0);
+        if (tasksAborted)
+            aborted = true;
+        tasksAborted = false;
+        solutions.set(0);
+        solution.set(null);
+        target = null;
+        finish(operation, result);
+    }
+
+    /**
+     * Adds the statistics of a sequential search to those of the call.
+     *
+     * @param stats the statistics of the search
+     * @param depth the depth of the task which ran the search
+     */
+    private void addStats(SolverStats stats, int depth) {
+        if (!SolverStats.ENABLED)
+            return;
+        totalNodes.addAndGet(stats.getNodes());
+        totalBacktracks.addAndGet(stats.getBacktracks());
+        totalChecks.addAndGet(stats.getChecks());
+        int reached = depth + stats.getMaxDepth();
+        int current = deepest.get();
+        while (reached > current && !deepest.compareAndSet(current, reached))
+            current = deepest.get();
+    }
+
+    /**
+     * Adds nodes to the number visited by the call, and raises the stop flag
+     * if the solver was cancelled or went over its budget.
+     *
+     * @param count the number of nodes visited since the last report
+     * @return the number of nodes visited by the call so far
+     */
+    private long addVisited(long count) {
+        long total = visited.addAndGet(count);
+        if (isOverBudget(total)) {
+            tasksAborted = true;
+            stop.set(true);
+        }
+        return total;
+    }
+
+    /**
+     * Records a solution found by a task and passes it to the consumer, if
+     * any. The stop flag is raised once the limit is reached or the
+     * consumer asked to stop. Solutions beyond the limit are ignored.
+     *
+     * @param board the solved board
+     * @return <code>true</code> if the task must stop;
+     *         <code>false</code> otherwise
+     */
+    private boolean report(SudokuBoard board) {
+        if (target != null) {
+            synchronized (this) {
+                if (targetStopped || solutions.get() >= limit)
+                    return true;
+                solutions.incrementAndGet();
+                if (!target.accept(board))
+                    targetStopped = true;
+            }
+            if (targetStopped || solutions.get() >= limit) {
+                stop.set(true);
+                return true;
+            }
+            return false;
+        }
+        if (solutions.incrementAndGet() >= limit) {
+            stop.set(true);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Task searching the subtree of a board.
+     */
+    private class SearchTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final SudokuBoard board;
+        private final int depth;
+
+        /**
+         * Initializes a task.
+         *
+         * @param board the board of the task, owned by the task
+         * @param depth the depth of the task in the tree of tasks
+         */
+        SearchTask(SudokuBoard board, int depth) {
+            this.board = board;
+            this.depth = depth;
+        }
+
+        /**
+         * Creates a subtask on a copy of the board with one more cell set.
+         *
+         * @param parent the board to copy
+         * @param num the number to set
+         * @param row the cell's row
+         * @param col the cell's column
+         * @return the subtask
+         */
+        private SearchTask subtask(SudokuBoard parent, int num, int row, int col) {
+            SudokuBoard child = new SudokuBoard(parent);
+            child.set(num, row, col);
+            return new SearchTask(child, depth + 1);
+        }
+
+        @Override
+        protected void compute() {
+            if (stop.get())
+                return;
+            ConstraintSolver cs = new ConstraintSolver(board, stop);
+            if (depth >= MAX_SPLIT_DEPTH
+                    || getSurplusQueuedTaskCount() > MAX_SURPLUS_TASKS) {
+                LeafProgress progress = new LeafProgress(depth);
+                cs.setProgressListener(progress);
+                cs.enumerateSolutions(leafSolutions, 0);
+                addStats(cs.getStats(), depth);
+                addVisited(cs.getVisited() - progress.reported);
+                return;
+            }
+
+            if (!cs.simplify())
+                return;
+            SudokuBoard simplified = cs.getBoard();
+            int choice = cs.chooseBranch();
+            if (choice == -1) {
+                report(simplified);
+                return;
+            }
+
+            // One subtask per possibility of the choice point
+            int size = simplified.SIZE;
+            List<SearchTask> subtasks = new ArrayList<SearchTask>();
+            if (choice < -1) {
+                int unit = (-2 - choice) / size;
+                int num = (-2 - choice) % size + 1;
+                for (int k = 0; k < size; k++) {
+                    int row = cs.unitRow(unit, k);
+                    int col = cs.unitCol(unit, k);
+                    if (simplified.get(row, col) == 0
+                            && simplified.isNumValid(row, col, num))
+                        subtasks.add(subtask(simplified, num, row, col));
+                }
+            } else {
+                int row = choice / size;
+                int col = choice % size;
+                long mask = simplified.getCandidates(row, col);
+                while (mask != 0) {
+                    int num = Long.numberOfTrailingZeros(mask) + 1;
+                    mask &= mask - 1;
+                    subtasks.add(subtask(simplified, num, row, col));
+                }
+            }
+            if (SolverStats.ENABLED)
+                totalNodes.addAndGet(subtasks.size());
+            addVisited(subtasks.size());
+            invokeAll(subtasks);
+        }
+    }
+
+    /**
+     * Consumer of the sequential searches of the tasks, reporting their
+     * solutions to the call.
+     */
+    private class LeafSolutions implements SolutionConsumer {
+        public boolean accept(SudokuBoard board) {
+            return !report(board);
+        }
+    }
+
+    /**
+     * Consumer keeping a copy of the first solution, when solving.
+     */
+    private class FirstSolution implements SolutionConsumer {
+        public boolean accept(SudokuBoard board) {
+            solution.compareAndSet(null, new SudokuBoard(board));
+            return false;
+        }
+    }
+
+    /**
+     * Progress of the sequential search of a task, added to the nodes
+     * visited by the call.
+     */
+    private class LeafProgress implements SolverProgressListener {
+        private final int depth;
+        private long reported;
+
+        /**
+         * Initializes the progress of a task.
+         *
+         * @param depth the depth of the task in the tree of tasks
+         */
+        LeafProgress(int depth) {
+            this.depth = depth;
+        }
+
+        public void progress(long nodes, int current) {
+            long total = addVisited(nodes - reported);
+            reported = nodes;
+            if (!stop.get())
+                reportProgress(total, depth + current);
+        }
+    }
+}
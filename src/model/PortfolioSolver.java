@@ -0,0 +1,403 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This class contains the routines to solve a Sudoku puzzle by racing
+ * several searches at once, on separate threads: the time a search takes
+ * varies hugely from a puzzle to another, and a puzzle which is hard for one
+ * order of the cells or of the numbers is often easy for another. Each
+ * {@link PortfolioStrategy} supporting the size of the board runs in its own
+ * thread, the first one on the calling thread and the others on a shared
+ * pool; the first to give a definite answer wins, and cancels the others at
+ * once (they stop within {@link AbstractSolver#CHECK_INTERVAL} nodes).
+ * <p>
+ * The winner of each call is kept ({@link #getWinner()}), and the number of
+ * wins of each strategy is added up over all the portfolio solvers
+ * ({@link #getWins}), so that the portfolio can be tuned on real inputs.
+ * The statistics of a call are those of the winning search.
+ * <p>
+ * Counting races the searches too, since every search finds the same
+ * number of solutions. Enumerating with a consumer, which would otherwise
+ * see the same solutions several times, runs the first strategy only. With
+ * fewer cores than strategies, the searches share the cores, and the
+ * portfolio still answers about as soon as its fastest search would alone
+ * on one core divided by the number of searches.
+ *
+ * @author Arthur Thouzeau
+ * @version 1.0
+ */
+public class PortfolioSolver extends AbstractSolver {
+    private static final ExecutorService POOL =
+            Executors.newCachedThreadPool(new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "PortfolioSolver");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+    private static final AtomicLongArray WINS =
+            new AtomicLongArray(PortfolioStrategy.values().length);
+
+    private SudokuBoard sb;
+    private final List<PortfolioStrategy> strategies;
+    private long maxNodes;
+    private long timeoutNanos;
+    private volatile Race current;
+    private PortfolioStrategy winner;
+    private long winnerNanos;
+
+    /**
+     * Initializes a new Portfolio Solver racing all the strategies which
+     * support the size of the board.
+     *
+     * @param board the Sudoku to solve
+     */
+    public PortfolioSolver(SudokuBoard board) {
+        this(board, Arrays.asList(PortfolioStrategy.values()));
+    }
+
+    /**
+     * Initializes a new Portfolio Solver racing some strategies, those which
+     * do not support the size of the board being left out.
+     *
+     * @param board the Sudoku to solve
+     * @param strategies the strategies to race, the first one being used
+     *                   alone to enumerate solutions
+     * @throws IllegalArgumentException if none of the strategies supports
+     *                                  the size of the board
+     */
+    public PortfolioSolver(SudokuBoard board, List<PortfolioStrategy> strategies) {
+        sb = new SudokuBoard(board);
+        this.strategies = new ArrayList<PortfolioStrategy>();
+        for (PortfolioStrategy strategy : strategies) {
+            if (strategy.supports(sb.SIZE) && !this.strategies.contains(strategy))
+                this.strategies.add(strategy);
+        }
+        if (this.strategies.isEmpty())
+            throw new IllegalArgumentException("No strategy of the portfolio "
+                    + "supports " + sb.SIZE + "*" + sb.SIZE + " boards.");
+    }
+
+    /**
+     * Returns the number of calls won by a strategy, over all the portfolio
+     * solvers since the start of the program.
+     *
+     * @param strategy the strategy
+     * @return the number of wins
+     */
+    public static long getWins(PortfolioStrategy strategy) {
+        return WINS.get(strategy.ordinal());
+    }
+
+    /**
+     * Returns the Sudoku board.
+     *
+     * @return the Sudoku board
+     */
+    @Override
+    public SudokuBoard getBoard() {
+        return sb;
+    }
+
+    /**
+     * Returns the strategies raced by this solver.
+     *
+     * @return the strategies, in order
+     */
+    public List<PortfolioStrategy> getStrategies() {
+        return new ArrayList<PortfolioStrategy>(strategies);
+    }
+
+    /**
+     * Returns the strategy which answered the last call first.
+     *
+     * @return the winner, or <code>null</code> if the last call was aborted
+     */
+    public PortfolioStrategy getWinner() {
+        return winner;
+    }
+
+    /**
+     * Returns the time the winner of the last call took to answer.
+     *
+     * @return the time, in nanoseconds
+     */
+    public long getWinnerNanos() {
+        return winnerNanos;
+    }
+
+    /**
+     * Limits the next searches, each search of the race having the whole
+     * budget.
+     *
+     * @param maxNodes the maximum number of nodes, or 0 for no limit
+     * @param timeout the maximum time, or 0 for no limit
+     * @param unit the unit of the timeout
+     */
+    @Override
+    public void setBudget(long maxNodes, long timeout, TimeUnit unit) {
+        super.setBudget(maxNodes, timeout, unit);
+        this.maxNodes = maxNodes;
+        this.timeoutNanos = unit.toNanos(timeout);
+    }
+
+    /**
+     * Aborts the race in progress, or the next one. This method can be
+     * called from any thread.
+     */
+    @Override
+    public void cancel() {
+        super.cancel();
+        Race race = current;
+        if (race != null)
+            race.cancel(-1);
+    }
+
+    /**
+     * Races the strategies and stops at the first solution, which is copied
+     * to the board.
+     *
+     * @return <code>true</code> if the sudoku has a solution;
+     *         <code>false</code> otherwise
+     */
+    @Override
+    public boolean solve() {
+        start();
+        SudokuSolver first = race(strategies, 0);
+        boolean solved = first != null && first.getStats().getResult() == 1;
+        if (solved)
+            sb.copyFrom(first.getBoard());
+        finish(SolverStats.SOLVE, solved ? 1 : 0);
+        return solved;
+    }
+
+    /**
+     * Races the strategies, each stopping at the second solution. The board
+     * is left unchanged.
+     *
+     * @return <code>0</code> if the sudoku has no solution;
+     *         <code>1</code> if it has a unique solution;
+     *         <code>2</code> if it has multiple solutions
+     */
+    @Override
+    public int countSolutions() {
+        start();
+        SudokuSolver first = race(strategies, 2);
+        int count = first != null ? (int) first.getStats().getResult() : 0;
+        finish(SolverStats.COUNT, count);
+        return count;
+    }
+
+    /**
+     * Counts the solutions by racing the strategies, or passes them to a
+     * consumer using the first strategy only. The board is left unchanged.
+     *
+     * @param consumer the consumer of the solutions, or <code>null</code> to
+     *                 count them only
+     * @param limit the number of solutions after which the search stops,
+     *              or 0 for no limit
+     * @return the number of solutions found
+     */
+    @Override
+    public long enumerateSolutions(SolutionConsumer consumer, long limit) {
+        start();
+        SudokuSolver first = race(consumer != null ? strategies.subList(0, 1)
+                : strategies, toLimit(limit), consumer);
+        long count = first != null ? first.getStats().getResult() : 0;
+        finish(consumer != null ? SolverStats.ENUMERATE : SolverStats.COUNT, count);
+        return count;
+    }
+
+    /**
+     * Races strategies which solve or count solutions.
+     *
+     * @param strategies the strategies to race
+     * @param limit 0 to solve, or the limit of the count
+     * @return the solver of the winning search, or <code>null</code> if the
+     *         race was aborted or the board breaks the rules
+     */
+    private SudokuSolver race(List<PortfolioStrategy> strategies, long limit) {
+        return race(strategies, limit, null);
+    }
+
+    /**
+     * Runs the searches of some strategies at once, waits for the first
+     * definite answer, and cancels the other searches. The winner is
+     * recorded, and its statistics become those of the call.
+     *
+     * @param strategies the strategies to race
+     * @param limit 0 to solve, or the limit of the count
+     * @param consumer the consumer of the solutions, or <code>null</code>
+     * @return the solver of the winning search, or <code>null</code> if the
+     *         race was aborted or the board breaks the rules
+     */
+    private SudokuSolver race(List<PortfolioStrategy> strategies, long limit,
+            SolutionConsumer consumer) {
+        winner = null;
+        winnerNanos = 0;
+        if (!sb.checkInitialBoard())
+            return null;
+        Race race = new Race(strategies, limit, consumer);
+        current = race;
+        // A cancel() which came before the race was published
+        if (aborted || isOverBudget(0)) {
+            current = null;
+            aborted = true;
+            return null;
+        }
+
+        for (int i = 1; i < strategies.size(); i++)
+            POOL.execute(race.task(i));
+        // The first strategy runs on the calling thread, without a hand-off
+        race.run(0);
+        int index = race.await();
+        current = null;
+
+        if (index < 0) {
+            if (race.failure != null)
+                throw race.failure;
+            aborted = true;
+            return null;
+        }
+        SudokuSolver first = race.solvers[index];
+        winner = strategies.get(index);
+        winnerNanos = race.winnerNanos;
+        WINS.incrementAndGet(winner.ordinal());
+        SolverStats stats = first.getStats();
+        nodes = stats.getNodes();
+        backtracks = stats.getBacktracks();
+        maxDepth = stats.getMaxDepth();
+        checks = stats.getChecks();
+        return first;
+    }
+
+    /**
+     * The searches of a race. Each search creates its solver on its own
+     * thread, so that the first one starts at once, from a copy of the board
+     * made with the race: the board of the portfolio solver is not read by
+     * the other threads, so a search still starting after the end of the
+     * race cannot see it change. The first search to give
+     * a definite answer cancels the others, so that the race ends as soon as
+     * possible even if the search running on the calling thread is not the
+     * winner.
+     */
+    private class Race {
+        private final List<PortfolioStrategy> strategies;
+        private final SudokuBoard puzzle = new SudokuBoard(sb);
+        private final SudokuSolver[] solvers;
+        private final long limit;
+        private final SolutionConsumer consumer;
+        private final long startTime = System.nanoTime();
+        private boolean over;
+        private int first = -1;
+        private int finished;
+        private long winnerNanos;
+        private RuntimeException failure;
+
+        /**
+         * Initializes a race.
+         *
+         * @param strategies the strategies to race
+         * @param limit 0 to solve, or the limit of the count
+         * @param consumer the consumer of the solutions, or <code>null</code>
+         */
+        Race(List<PortfolioStrategy> strategies, long limit, SolutionConsumer consumer) {
+            this.strategies = strategies;
+            this.solvers = new SudokuSolver[strategies.size()];
+            this.limit = limit;
+            this.consumer = consumer;
+        }
+
+        /**
+         * Returns a task running a search of the race.
+         *
+         * @param index the index of the search
+         * @return the task
+         */
+        Runnable task(final int index) {
+            return new Runnable() {
+                public void run() {
+                    Race.this.run(index);
+                }
+            };
+        }
+
+        /**
+         * Runs a search, and cancels the others if it is the first to give
+         * a definite answer.
+         *
+         * @param index the index of the search
+         */
+        void run(int index) {
+            RuntimeException error = null;
+            SudokuSolver solver = null;
+            try {
+                solver = strategies.get(index).create(puzzle);
+                ((AbstractSolver) solver).unpublish();
+                solver.setBudget(maxNodes, timeoutNanos, TimeUnit.NANOSECONDS);
+                synchronized (this) {
+                    solvers[index] = solver;
+                    if (over)
+                        solver.cancel();
+                }
+                if (limit == 0)
+                    solver.solve();
+                else
+                    solver.enumerateSolutions(consumer, limit);
+            } catch (RuntimeException e) {
+                error = e;
+            }
+            synchronized (this) {
+                finished++;
+                if (error != null) {
+                    if (failure == null)
+                        failure = error;
+                } else if (first < 0 && !solver.isAborted()) {
+                    first = index;
+                    winnerNanos = System.nanoTime() - startTime;
+                    cancel(index);
+                }
+                notifyAll();
+            }
+        }
+
+        /**
+         * Ends the race: cancels the searches running, and those which have
+         * not started yet.
+         *
+         * @param winner the index of the search to keep, or -1
+         */
+        synchronized void cancel(int winner) {
+            over = true;
+            for (int i = 0; i < solvers.length; i++) {
+                if (i != winner && solvers[i] != null)
+                    solvers[i].cancel();
+            }
+        }
+
+        /**
+         * Waits for the first definite answer, or for the end of all the
+         * searches. If interrupted, the searches are cancelled.
+         *
+         * @return the index of the winning search, or -1 if there is none
+         */
+        synchronized int await() {
+            try {
+                while (first < 0 && finished < solvers.length)
+                    wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancel(-1);
+            }
+            return first;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package model;
+
+/**
+ * Enumerates the searches raced by a {@link PortfolioSolver}. Each constant
+ * knows how to create its solver, and which board sizes it can take.
+ *
+ * @author Arthur Thouzeau
+ * @version 1.0
+ */
+public enum PortfolioStrategy {
+    CONSTRAINT_PROPAGATION("Propagation + MRV") {
+        @Override
+        public SudokuSolver create(SudokuBoard board) {
+            return new ConstraintSolver(board);
+        }
+    },
+    DANCING_LINKS("Dancing Links") {
+        @Override
+        public SudokuSolver create(SudokuBoard board) {
+            return new DancingLinksSolver(board);
+        }
+
+        @Override
+        public boolean supports(int size) {
+            // The exact cover matrix grows with SIZE^3
+            return size <= 36;
+        }
+    },
+    BACKTRACKING("Backtracking") {
+        @Override
+        public SudokuSolver create(SudokuBoard board) {
+            return new RecursiveSolver(board);
+        }
+    },
+    FEWEST_CANDIDATES("Fewest candidates first") {
+        @Override
+        public SudokuSolver create(SudokuBoard board) {
+            return new HeuristicSolver(board, true, false);
+        }
+    },
+    REVERSE_ORDER("Reverse order, descending numbers") {
+        @Override
+        public SudokuSolver create(SudokuBoard board) {
+            return new HeuristicSolver(board, false, true);
+        }
+    },
+    RANDOM_RESTARTS("Random order with restarts") {
+        @Override
+        public SudokuSolver create(SudokuBoard board) {
+            return new HeuristicSolver(board, SEED, RESTART_NODES);
+        }
+    };
+
+    private static final long SEED = 0x5EED;
+    private static final long RESTART_NODES = 1000;
+
+    private final String label;
+
+    /**
+     * Initializes a strategy.
+     *
+     * @param label the name displayed to the user
+     */
+    private PortfolioStrategy(String label) {
+        this.label = label;
+    }
+
+    /**
+     * Creates a new solver running this strategy.
+     *
+     * @param board the Sudoku to solve
+     * @return the new solver
+     */
+    public abstract SudokuSolver create(SudokuBoard board);
+
+    /**
+     * Tells whether this strategy can take boards of a size.
+     *
+     * @param size the size of the board
+     * @return <code>true</code> if the strategy supports the size
+     */
+    public boolean supports(int size) {
+        return this == BACKTRACKING || size <= 64;
+    }
+
+    /**
+     * Returns the name displayed to the user.
+     *
+     * @return the name of the strategy
+     */
+    @Override
+    public String toString() {
+        return label;
+    }
+}
@@ -1,85 +1,338 @@
 package model;
 
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
 
 /**
  * This class is a subclass of SudokuBoard. It contains a constructor to
  * generate random Sudoku grids with a unique solution.
- * 
+ * <p>
+ * Generation is reproducible: two generators built with the same size and
+ * seed produce the same board.
+ * <p>
+ * A target {@link Difficulty} can be given. Clues are then only removed as
+ * long as the puzzle stays within the target, as graded by a
+ * {@link DifficultyGrader}, so puzzles never overshoot it. Puzzles which end
+ * up easier than the target are generated again from a new grid, a bounded
+ * number of times; the hardest attempt is kept, see {@link #getGrade()}.
+ * <p>
+ * Generation stops if the thread is interrupted: the constructors then throw
+ * a {@link java.util.concurrent.CancellationException} rather than return a
+ * half-made puzzle.
+ *
  * @author Arthur Thouzeau
  * @version 1.0
  */
 public class RandomGenerator extends SudokuBoard {
+    private static final int MAX_FILL_ATTEMPTS = 5;
+    private static final int FILL_BUDGET_PER_CELL = 20;
+    private static final int MAX_GRADE_ATTEMPTS = 50;
+
+    private int budget;
+    private Grade grade;
 
     /**
      * Initializes a new random SudokuBoard with a unique solution.
-     * 
+     *
      * @param size the size of the Sudokuboard to generate (number of rows)
      */
-    @SuppressWarnings("unchecked")
     public RandomGenerator(int size) {
+        this(size, new Random());
+    }
+
+    /**
+     * Initializes a new random SudokuBoard with a unique solution, from a
+     * given seed.
+     *
+     * @param size the size of the Sudokuboard to generate (number of rows)
+     * @param seed the seed of the random generator
+     */
+    public RandomGenerator(int size, long seed) {
+        this(size, new Random(seed));
+    }
+
+    /**
+     * Initializes a new random SudokuBoard with a unique solution, of a given
+     * difficulty.
+     *
+     * @param size the size of the Sudokuboard to generate (number of rows),
+     *             at most 64
+     * @param difficulty the target difficulty
+     * @throws IllegalArgumentException if the size is greater than 64
+     */
+    public RandomGenerator(int size, Difficulty difficulty) {
+        this(size, new Random(), difficulty);
+    }
+
+    /**
+     * Initializes a new random SudokuBoard with a unique solution, of a given
+     * difficulty, from a given seed.
+     *
+     * @param size the size of the Sudokuboard to generate (number of rows),
+     *             at most 64
+     * @param seed the seed of the random generator
+     * @param difficulty the target difficulty
+     * @throws IllegalArgumentException if the size is greater than 64
+     */
+    public RandomGenerator(int size, long seed, Difficulty difficulty) {
+        this(size, new Random(seed), difficulty);
+    }
+
+    /**
+     * Initializes a new random SudokuBoard with a unique solution.
+     *
+     * @param size the size of the Sudokuboard to generate (number of rows)
+     * @param random the source of randomness
+     */
+    private RandomGenerator(int size, Random random) {
         super(size);
-        
-        LinkedList<Integer>[] available = new LinkedList[SIZE * SIZE];
-        int cell = 0;
-        int[] cellCoord = new int[2];
-        int num;
-
-        // Initialization of the "available" array used to keep
-        // track of what numbers we can still use in each cell
-        for (int i = 0; i < available.length; i++) {
-            available[i] = new LinkedList<Integer>();
-            for (int j = 1; j < SIZE + 1; j++) {
-                available[i].add(j);
+        generate(random, null);
+    }
+
+    /**
+     * Initializes a new random SudokuBoard with a unique solution, of a given
+     * difficulty.
+     *
+     * @param size the size of the Sudokuboard to generate (number of rows)
+     * @param random the source of randomness
+     * @param difficulty the target difficulty
+     */
+    private RandomGenerator(int size, Random random, Difficulty difficulty) {
+        super(size);
+        DifficultyGrader grader = new DifficultyGrader(size);
+        int[] best = null;
+        for (int attempt = 0; attempt < MAX_GRADE_ATTEMPTS; attempt++) {
+            if (attempt > 0)
+                clear();
+            generate(random, difficulty);
+            Grade g = grader.grade(this);
+            int cmp = best == null ? 1
+                    : g.getDifficulty().compareTo(grade.getDifficulty());
+            if (cmp > 0 || (cmp == 0 && g.getScore() > grade.getScore())) {
+                grade = g;
+                best = cells();
             }
+            if (g.getDifficulty() == difficulty)
+                break;
         }
-        
+        for (int i = 0; i < SIZE * SIZE; i++) {
+            set(best[i], i / SIZE, i % SIZE);
+        }
+    }
+
+    /**
+     * Returns the grade of the puzzle, if it was generated for a target
+     * difficulty. It may be easier than the target if no attempt reached it.
+     *
+     * @return the grade of the puzzle, or <code>null</code> if no difficulty
+     *         was given
+     */
+    public Grade getGrade() {
+        return grade;
+    }
+
+    /**
+     * Generates a puzzle on the empty board.
+     *
+     * @param random the source of randomness
+     * @param difficulty the hardest tier allowed, or <code>null</code> for
+     *                   no limit
+     */
+    private void generate(Random random, Difficulty difficulty) {
         /*
          * Part I - Generate a complete random grid respecting Sudoku rules
          */
-        while (cell < SIZE * SIZE) {
-            cellCoord[0] = cell / SIZE;
-            cellCoord[1] = cell % SIZE;
-            
-            if (!available[cell].isEmpty()) {
-                Collections.shuffle(available[cell]);
-                num = available[cell].remove();
-                if (isNumValid(cellCoord, num)) {
-                    set(num, cellCoord[0], cellCoord[1]);
-                    cell++;
-                }
-            } else {
-                for (int i = 1; i < SIZE + 1; i++) {
-                    available[cell].add(i);
-                }
-                cell--;
-                set(0, cell / SIZE, cell % SIZE);
-            }
-        }
-        
+        fillGrid(random);
+
         /*
          * Part II - From this random complete grid, create a board with a
          * unique solution such that it is not possible to remove any more
-         * numbers without destroying the uniqueness of the solution.
+         * numbers without destroying the uniqueness of the solution (or
+         * going over the target difficulty).
          */
-        LinkedList<Integer> cells = new LinkedList<Integer>();
+        List<Integer> cells = new ArrayList<Integer>();
         for (int i = 0; i < SIZE * SIZE; i++) {
             cells.add(i);
         }
-        Collections.shuffle(cells);
-        int row;
-        int col;
-        int temp;
-        while (!cells.isEmpty()) {
-            cell = cells.remove();
-            row = cell / SIZE;
-            col = cell % SIZE;
-            temp = get(row, col);
-            set(0, row, col);
-            RecursiveSolver rc = new RecursiveSolver(this);
-            if (rc.countSolutions() > 1)
-                set(temp, row, col);
-        }     
+        Collections.shuffle(cells, random);
+        int[] order = new int[cells.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = cells.get(i);
+        }
+        // Small boards are checked too quickly to benefit from several threads
+        int threads = SIZE < 16 ? 1 : Runtime.getRuntime().availableProcessors();
+        ClueRemover remover = new ClueRemover(this, threads);
+        remover.setMaxDifficulty(difficulty);
+        remover.removeClues(order);
+    }
+
+    /**
+     * Empties the board.
+     */
+    private void clear() {
+        for (int i = 0; i < SIZE; i++) {
+            for (int j = 0; j < SIZE; j++) {
+                set(0, i, j);
+            }
+        }
+    }
+
+    /**
+     * Returns the values of the cells.
+     *
+     * @return the values, indexed by <code>row * SIZE + col</code>
+     */
+    private int[] cells() {
+        int[] values = new int[SIZE * SIZE];
+        for (int i = 0; i < SIZE * SIZE; i++) {
+            values[i] = get(i / SIZE, i % SIZE);
+        }
+        return values;
+    }
+
+    /**
+     * Fills the empty board with a random complete grid. A randomized
+     * backtracking search is tried a few times, each time with a bounded
+     * number of nodes. If none succeeds, which is very unlikely, the grid is
+     * obtained by shuffling a solved pattern grid instead, so the time spent
+     * here is always bounded.
+     *
+     * @param random the source of randomness
+     */
+    private void fillGrid(Random random) {
+        // Candidate masks on a single long are limited to 64*64 boards
+        if (SIZE <= 64) {
+            for (int attempt = 0; attempt < MAX_FILL_ATTEMPTS; attempt++) {
+                budget = FILL_BUDGET_PER_CELL * SIZE * SIZE;
+                if (fillBacktrack(random))
+                    return;
+                clear();
+            }
+        }
+        fillFromPattern(random);
+    }
+
+    /**
+     * Randomized backtracking on the candidate masks. Always fills the cell
+     * with the fewest candidates, trying its candidates in random order.
+     *
+     * @param random the source of randomness
+     * @return <code>true</code> if the grid is complete;
+     *         <code>false</code> if this branch failed or the node budget is
+     *         exhausted
+     */
+    private boolean fillBacktrack(Random random) {
+        int bestRow = -1;
+        int bestCol = -1;
+        long bestMask = 0;
+        int bestCount = SIZE + 1;
+        for (int i = 0; i < SIZE && bestCount > 1; i++) {
+            for (int j = 0; j < SIZE; j++) {
+                if (get(i, j) == 0) {
+                    long mask = getCandidates(i, j);
+                    int count = Long.bitCount(mask);
+                    if (count < bestCount) {
+                        bestRow = i;
+                        bestCol = j;
+                        bestMask = mask;
+                        bestCount = count;
+                        if (count <= 1)
+                            break;
+                    }
+                }
+            }
+        }
+        if (bestRow == -1)
+            return true;
+        if (--budget < 0)
+            return false;
+
+        while (bestMask != 0) {
+            // Pick one of the remaining candidates at random
+            long bit = bestMask;
+            for (int k = random.nextInt(Long.bitCount(bestMask)); k > 0; k--)
+                bit &= bit - 1;
+            bit &= -bit;
+            bestMask ^= bit;
+
+            set(Long.numberOfTrailingZeros(bit) + 1, bestRow, bestCol);
+            if (fillBacktrack(random))
+                return true;
+            if (budget < 0)
+                return false;
+            set(0, bestRow, bestCol);
+        }
+        return false;
+    }
+
+    /**
+     * Fills the board with a solved pattern grid, to which random
+     * transformations keeping Sudoku rules are applied: relabelling of the
+     * numbers, permutation of the rows within each band and of the bands,
+     * the same for columns and stacks, and transposition.
+     *
+     * @param random the source of randomness
+     */
+    private void fillFromPattern(Random random) {
+        int boxSize = getBoxSize();
+        int[] numbers = shuffledRange(SIZE, random);
+        int[] rows = shuffledLines(boxSize, random);
+        int[] cols = shuffledLines(boxSize, random);
+        boolean transpose = random.nextBoolean();
+
+        for (int i = 0; i < SIZE; i++) {
+            for (int j = 0; j < SIZE; j++) {
+                int r = rows[i];
+                int c = cols[j];
+                int pattern = (boxSize * (r % boxSize) + r / boxSize + c) % SIZE;
+                if (transpose)
+                    set(numbers[pattern] + 1, j, i);
+                else
+                    set(numbers[pattern] + 1, i, j);
+            }
+        }
+    }
+
+    /**
+     * Returns a random permutation of the rows (or columns) of the board
+     * which keeps each band (or stack) together.
+     *
+     * @param boxSize the size of a box
+     * @param random the source of randomness
+     * @return the permutation
+     */
+    private static int[] shuffledLines(int boxSize, Random random) {
+        int[] bands = shuffledRange(boxSize, random);
+        int[] lines = new int[boxSize * boxSize];
+        for (int b = 0; b < boxSize; b++) {
+            int[] inBand = shuffledRange(boxSize, random);
+            for (int k = 0; k < boxSize; k++) {
+                lines[b * boxSize + k] = bands[b] * boxSize + inBand[k];
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Returns a random permutation of the numbers 0 to n - 1.
+     *
+     * @param n the number of elements
+     * @param random the source of randomness
+     * @return the permutation
+     */
+    private static int[] shuffledRange(int n, Random random) {
+        int[] range = new int[n];
+        for (int i = 0; i < n; i++) {
+            range[i] = i;
+        }
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = range[i];
+            range[i] = range[j];
+            range[j] = tmp;
+        }
+        return range;
     }
 }
@@ -1,169 +1,208 @@
 package model;
 
 /**
- * This class contains the routines to solve a Sudoku puzzle using 
- * the Recursive Backtracking method.
- * 
+ * This class contains the routines to solve a Sudoku puzzle using
+ * the Backtracking method.
+ * <p>
+ * The search tries the numbers of the unassigned cells in row-major order,
+ * like a recursion over the cells would, but in a single loop: its state is
+ * the value tried at each level, kept in arrays allocated once with the
+ * solver, so the depth of the search (the number of unassigned cells) is
+ * not limited by the size of the thread's stack, up to the largest boards.
+ * The arrays have room for every cell, since the cells of the board can
+ * be cleared between two calls.
+ *
  * @author Arthur Thouzeau
  * @version 1.0
  */
-public class RecursiveSolver {
+public class RecursiveSolver extends AbstractSolver {
     private SudokuBoard sb;
+    private final int[] rows;
+    private final int[] cols;
+    private final int[] tried;
 
     /**
      * Initializes a new Recursive Solver.
-     * 
+     *
      * @param board the Sudoku to solve
      */
     public RecursiveSolver(SudokuBoard board) {
-        sb = new SudokuBoard(board.SIZE);
-        for (int i = 0; i < sb.SIZE; i++) {
-            for (int j = 0; j < sb.SIZE; j++) {
-                sb.set(board.get(i, j), i, j);
-            }
-        }
+        sb = new SudokuBoard(board);
+        int cells = sb.SIZE * sb.SIZE;
+        rows = new int[cells];
+        cols = new int[cells];
+        tried = new int[cells + 1];
     }
 
     /**
      * Returns the Sudoku board.
-     * 
+     *
      * @return the Sudoku board
      */
+    @Override
     public SudokuBoard getBoard() {
         return sb;
     }
 
     /**
-     * Enumerates all unassigned cells of a Sudoku board.
-     * 
-     * @return the list of unassigned cells in a Sudoku board as a 2D array
+     * Enumerates all unassigned cells of a Sudoku board, in row-major order.
+     *
+     * @param rows the array receiving the rows of the cells
+     * @param cols the array receiving the columns of the cells
+     * @return the number of unassigned cells
      */
-    private int[][] listEmptyCells() {
-        int nbEmpty = 0;
-        int[][] emptyCells;
+    private int listEmptyCells(int[] rows, int[] cols) {
         int k = 0;
 
-        for (int i = 0; i < sb.SIZE; i++) {
-            for (int j = 0; j < sb.SIZE; j++) {
-                if (sb.get(i, j) == 0)
-                    nbEmpty++;
-            }
-        }
-        emptyCells = new int[nbEmpty][2];
-
         for (int i = 0; i < sb.SIZE; i++) {
             for (int j = 0; j < sb.SIZE; j++) {
                 if (sb.get(i, j) == 0) {
-                    emptyCells[k][0] = i;
-                    emptyCells[k][1] = j;
+                    rows[k] = i;
+                    cols[k] = j;
                     k++;
                 }
             }
         }
-        return emptyCells;
+        return k;
     }
 
     /**
-     * Creates the list of unassigned cells and starts the recursive procedure
-     * with the first one (calls the recursive method {@link #solveBacktrack}).
-     * 
+     * Lists the unassigned cells and searches for the first solution
+     * (calls {@link #search}).
+     *
      * @return <code>true</code> if the sudoku has a solution;
      *         <code>false</code> otherwise
      */
+    @Override
     public boolean solve() {
-        int[][] emptyCells = listEmptyCells();
-        return solveBacktrack(emptyCells, 0);
+        start();
+        int nbEmpty = listEmptyCells(rows, cols);
+        boolean solved = search(nbEmpty, 1, true) == 1;
+        finish(SolverStats.SOLVE, solved ? 1 : 0);
+        return solved;
     }
 
     /**
-     * Recursive Backtracking function carrying out trial and error,
-     * trying to find a compatible value for each unassigned cell.
-     * In case of multiple solutions, this method will stop at the 
-     * first one discovered.
-     * 
-     * @param emptyCells the list of unassigned cells
-     * @param ind the index indicating where the algorithm is at in the list of
-     *            unassigned cells
-     * @return <code>true</code> if the sudoku has a solution;
-     *         <code>false</code> otherwise
-     */
-    private boolean solveBacktrack(int[][] emptyCells, int ind) {
-
-        if (ind == emptyCells.length)
-            return true;
-
-        for (int num = 1; num <= sb.SIZE; num++) {
-            if (sb.isNumValid(emptyCells[ind], num)) {
-
-                // If "num" doesn't break any rule, insert it in the board and
-                // move to the next unassigned cell.
-                sb.set(num, emptyCells[ind][0], emptyCells[ind][1]);
-
-                if (solveBacktrack(emptyCells, ind + 1))
-                    return true;
-
-                // If "num" finally doesn't lead to a solution, remove it and
-                // try with "num+1".
-                sb.set(0, emptyCells[ind][0], emptyCells[ind][1]);
-            }
-        }
-        return false;
-    }
-    
-    /**
-     * Creates the list of unassigned cells and starts the recursive procedure
-     * with the first one (calls the recursive method {@link #countSolutionsBacktrack}).
-     * 
+     * Lists the unassigned cells and searches for the first two solutions
+     * (calls {@link #search}).
+     *
      * @return <code>0</code> if the sudoku has no solution;
      *         <code>1</code> if it has a unique solution;
      *         <code>2</code> if it has multiple solutions
      */
+    @Override
     public int countSolutions() {
-        int[][] emptyCells = listEmptyCells();
-        return countSolutionsBacktrack(emptyCells, 0, false);
+        start();
+        int nbEmpty = listEmptyCells(rows, cols);
+        int count = (int) search(nbEmpty, 2, false);
+        finish(SolverStats.COUNT, count);
+        return count;
     }
-    
+
     /**
-     * Recursive Backtracking function carrying out trial and error, trying to
-     * find a compatible value for each unassigned cell. In case of multiple
-     * solutions, this method will stop at the second one discovered.
-     * 
-     * @param emptyCells the list of unassigned cells
-     * @param ind the index indicating where the algorithm is at in the list of
-     *            unassigned cells
-     * @param flag the parameter indicating whether a first solution has already
-     *            been discovered
-     * @return <code>0</code> if the sudoku has no solution; 
-     *         <code>1</code> if it has a unique solution; 
-     *         <code>2</code> if it has multiple solutions
+     * Lists the unassigned cells and searches for the solutions (calls
+     * {@link #search}), passing each solution to a consumer.
+     *
+     * @param consumer the consumer of the solutions, or <code>null</code> to
+     *                 count them only
+     * @param limit the number of solutions after which the search stops,
+     *              or 0 for no limit
+     * @return the number of solutions found
      */
-    private int countSolutionsBacktrack(int[][] emptyCells, int ind, boolean flag) {
-        int count = 0;
-
-        if (ind == emptyCells.length)
-            return 1;
-
-        for (int num = 1; num <= sb.SIZE; num++) {
-            
-            // Check if we have already found 2 solutions
-            if (count > 1 || (flag && count == 1))
-                return count;
-            
-            if (sb.isNumValid(emptyCells[ind], num)) {
+    @Override
+    public long enumerateSolutions(SolutionConsumer consumer, long limit) {
+        start();
+        this.consumer = consumer;
+        int nbEmpty = listEmptyCells(rows, cols);
+        long count = search(nbEmpty, toLimit(limit), false);
+        finish(consumer != null ? SolverStats.ENUMERATE : SolverStats.COUNT, count);
+        return count;
+    }
 
-                // If "trial" doesn't break any rule, insert it in the board and
+    /**
+     * Backtracking loop carrying out trial and error, trying to find a
+     * compatible value for each unassigned cell. <code>level</code> is the
+     * index of the current cell in the list; the cells before it hold the
+     * values of <code>tried</code>, and the next value to try on the current
+     * cell is <code>tried[level] + 1</code>.
+     * <p>
+     * When solving, the search stops at the first solution, which is left on
+     * the board. Otherwise it goes on after each solution, and stops once
+     * <code>limit</code> solutions have been discovered or the consumer
+     * asked to stop; the board is then restored.
+     *
+     * @param nbEmpty the number of unassigned cells
+     * @param limit the number of solutions after which the search stops
+     * @param record <code>true</code> to stop at the first solution and
+     *               leave it on the board
+     * @return the number of solutions found, at most <code>limit</code>
+     */
+    private long search(int nbEmpty, long limit, boolean record) {
+        int[] rows = this.rows;
+        int[] cols = this.cols;
+        int[] tried = this.tried;
+        int size = sb.SIZE;
+        long count = 0;
+        int level = 0;
+        tried[0] = 0;
+
+        while (true) {
+            if (level == nbEmpty) {
+                count++;
+                if (record)
+                    return count;
+                if (accept(sb) || count >= limit || level == 0)
+                    break;
+                // Go on with the next value of the last cell
+                level--;
+                sb.set(0, rows[level], cols[level]);
+                traceCleared(rows[level], cols[level]);
+                if (SolverStats.ENABLED)
+                    backtrack();
+                continue;
+            }
+            if (tried[level] == 0 && checkpoint())
+                break;
+
+            int row = rows[level];
+            int col = cols[level];
+            int num = tried[level];
+            while (++num <= size) {
+                if (SolverStats.ENABLED)
+                    checks++;
+                if (sb.isNumValid(row, col, num))
+                    break;
+            }
+            if (num <= size) {
+                // If "num" doesn't break any rule, insert it in the board and
                 // move to the next unassigned cell.
-                sb.set(num, emptyCells[ind][0], emptyCells[ind][1]);
-                
-                if (count == 1) { // just found first solution, turn flag on
-                    count += countSolutionsBacktrack(emptyCells, ind + 1,true);
-                } else {
-                    count += countSolutionsBacktrack(emptyCells, ind + 1, flag);
-                }
-
-                sb.set(0, emptyCells[ind][0], emptyCells[ind][1]);
+                tried[level] = num;
+                sb.set(num, row, col);
+                traceAssigned(row, col, num);
+                if (SolverStats.ENABLED)
+                    enter();
+                tried[++level] = 0;
+            } else {
+                // If no number fits, go back to the previous cell and try
+                // its next number.
+                if (level == 0)
+                    return count;
+                level--;
+                sb.set(0, rows[level], cols[level]);
+                traceCleared(rows[level], cols[level]);
+                if (SolverStats.ENABLED)
+                    backtrack();
             }
         }
+
+        // Stopped early: remove the values of the current branch
+        while (level > 0) {
+            level--;
+            sb.set(0, rows[level], cols[level]);
+            traceCleared(rows[level], cols[level]);
+            if (SolverStats.ENABLED)
+                backtrack();
+        }
         return count;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,346 @@
+package model;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class contains the routines to solve a Sudoku puzzle or count its
+ * solutions by backtracking, like {@link RecursiveSolver}, in a search which
+ * can be saved to a file and resumed later, for searches running for hours.
+ * <p>
+ * The search runs in a loop on an explicit stack, a {@link SearchState}
+ * holding the value tried at each level, instead of on the call stack. With
+ * a checkpoint file set, the state is written to it periodically, and when
+ * the search ends or is aborted; each write replaces the previous one
+ * atomically. {@link #load} reads the state back, and {@link #resume}
+ * continues the search from there: it visits the same nodes in the same
+ * order as an uninterrupted search, so it finds the same first solution, or
+ * the same number of solutions, counting those found before the save.
+ * <p>
+ * Cancelling the solver or setting a budget is the way to stop a search
+ * cleanly: the state is then saved before the call returns.
+ *
+ * @author Arthur Thouzeau
+ * @version 1.0
+ */
+public class ResumableSolver extends AbstractSolver {
+    private final SudokuBoard puzzle;
+    private SudokuBoard sb;
+    private SearchState state;
+    private Path file;
+    private long intervalNanos;
+    private IOException saveError;
+
+    /**
+     * Initializes a new Resumable Solver.
+     *
+     * @param board the Sudoku to solve
+     */
+    public ResumableSolver(SudokuBoard board) {
+        puzzle = new SudokuBoard(board);
+        sb = new SudokuBoard(board);
+    }
+
+    /**
+     * Initializes a solver continuing a saved search.
+     *
+     * @param state the state of the search
+     */
+    private ResumableSolver(SearchState state) {
+        this.state = state;
+        puzzle = state.toBoard(0);
+        sb = state.toBoard(state.level);
+    }
+
+    /**
+     * Reads a search saved to a checkpoint file, to continue it with
+     * {@link #resume}. The checkpoint file of the new solver is the file
+     * read, with the given interval.
+     *
+     * @param file the checkpoint file
+     * @param interval the time between two saves
+     * @param unit the unit of the interval
+     * @return a solver continuing the search
+     * @throws IOException if the file could not be read, or does not hold a
+     *                     search state
+     */
+    public static ResumableSolver load(Path file, long interval, TimeUnit unit)
+            throws IOException {
+        ResumableSolver solver = new ResumableSolver(SearchState.load(file));
+        solver.setCheckpointFile(file, interval, unit);
+        return solver;
+    }
+
+    /**
+     * Sets the file the state of the searches is saved to.
+     *
+     * @param file the checkpoint file, or <code>null</code> to save nothing
+     * @param interval the time between two saves
+     * @param unit the unit of the interval
+     */
+    public void setCheckpointFile(Path file, long interval, TimeUnit unit) {
+        this.file = file;
+        this.intervalNanos = unit.toNanos(interval);
+    }
+
+    /**
+     * Returns the Sudoku board.
+     *
+     * @return the Sudoku board
+     */
+    @Override
+    public SudokuBoard getBoard() {
+        return sb;
+    }
+
+    /**
+     * Returns the operation of the current or last search.
+     *
+     * @return {@link SolverStats#SOLVE}, {@link SolverStats#COUNT} or
+     *         {@link SolverStats#ENUMERATE}, or <code>null</code> if nothing
+     *         was searched yet
+     */
+    public String getOperation() {
+        return state != null ? state.operation : null;
+    }
+
+    /**
+     * Tells whether the current or last search went to its end, rather than
+     * being aborted.
+     *
+     * @return <code>true</code> if the search is finished
+     */
+    public boolean isFinished() {
+        return state != null && state.finished;
+    }
+
+    /**
+     * Returns the number of solutions found by the search, including those
+     * found before it was saved.
+     *
+     * @return the number of solutions found so far
+     */
+    public long getFound() {
+        return state != null ? state.found : 0;
+    }
+
+    /**
+     * Returns the number of nodes visited by the search, including those
+     * visited before it was saved.
+     *
+     * @return the number of nodes visited so far
+     */
+    public long getTotalVisited() {
+        return state != null ? state.visited : 0;
+    }
+
+    /**
+     * Returns the time spent on the search, including the time spent before
+     * it was saved.
+     *
+     * @return the time, in nanoseconds
+     */
+    public long getTotalNanos() {
+        return state != null ? state.elapsedNanos : 0;
+    }
+
+    /**
+     * Returns the error of the last save which failed. A failed save does not
+     * stop the search: the previous checkpoint stays in place, and the save
+     * is tried again after the interval.
+     *
+     * @return the error, or <code>null</code> if the last save succeeded
+     */
+    public IOException getSaveError() {
+        return saveError;
+    }
+
+    /**
+     * Starts a new search, stopping at the first solution, which is left on
+     * the board.
+     *
+     * @return <code>true</code> if the sudoku has a solution;
+     *         <code>false</code> otherwise
+     */
+    @Override
+    public boolean solve() {
+        state = new SearchState(puzzle, SolverStats.SOLVE, 1);
+        return resume(null) == 1;
+    }
+
+    /**
+     * Starts a new search, stopping at the second solution. The board is
+     * left unchanged.
+     *
+     * @return <code>0</code> if the sudoku has no solution;
+     *         <code>1</code> if it has a unique solution;
+     *         <code>2</code> if it has multiple solutions
+     */
+    @Override
+    public int countSolutions() {
+        state = new SearchState(puzzle, SolverStats.COUNT, 2);
+        return (int) resume(null);
+    }
+
+    /**
+     * Starts a new search passing each solution to a consumer, until the
+     * consumer asks to stop or the limit is reached. The board is left
+     * unchanged.
+     *
+     * @param consumer the consumer of the solutions, or <code>null</code> to
+     *                 count them only
+     * @param limit the number of solutions after which the search stops,
+     *              or 0 for no limit
+     * @return the number of solutions found
+     */
+    @Override
+    public long enumerateSolutions(SolutionConsumer consumer, long limit) {
+        state = new SearchState(puzzle, consumer != null ? SolverStats.ENUMERATE
+                : SolverStats.COUNT, toLimit(limit));
+        return resume(consumer);
+    }
+
+    /**
+     * Continues the current search from where it stopped, up to its end or
+     * until it is aborted again. A search which was saved while enumerating
+     * passes the solutions it has not passed yet to the consumer.
+     *
+     * @param consumer the consumer of the next solutions, or
+     *                 <code>null</code> to count them only
+     * @return the number of solutions found, including those found before
+     *         the search stopped, at most the limit of the search
+     * @throws IllegalStateException if there is no search to continue
+     */
+    public long resume(SolutionConsumer consumer) {
+        if (state == null)
+            throw new IllegalStateException("There is no search to resume.");
+        start();
+        this.consumer = consumer;
+        sb = state.toBoard(state.level);
+        long startTime = System.nanoTime();
+        long visitedBefore = state.visited;
+        if (!state.finished && state.visited == 0 && !puzzle.checkInitialBoard())
+            state.finished = true;
+        else
+            search(startTime, visitedBefore);
+        state.visited = visitedBefore + getVisited();
+        state.elapsedNanos += System.nanoTime() - startTime;
+        if (file != null)
+            save();
+        finish(state.operation, state.found);
+        return state.found;
+    }
+
+    /**
+     * Backtracking loop. The state is read once, kept in local variables
+     * while searching, and written back before each save and at the end.
+     * When solving, the first solution is left on the board; otherwise each
+     * solution is passed to the consumer, if any, and the board is restored
+     * at the end.
+     *
+     * @param startTime the start of this run, in nanoseconds
+     * @param visitedBefore the number of nodes visited by the previous runs
+     */
+    private void search(long startTime, long visitedBefore) {
+        SearchState s = state;
+        int size = sb.SIZE;
+        int n = s.empty.length;
+        int[] empty = s.empty;
+        int[] tried = s.tried;
+        int level = s.level;
+        long found = s.found;
+        boolean solving = s.operation.equals(SolverStats.SOLVE);
+        long nextSave = file != null ? startTime + intervalNanos : Long.MAX_VALUE;
+        depth = level;
+
+        while (!s.finished) {
+            if (level == n) {
+                found++;
+                if (solving || accept(sb) || found >= s.limit || level == 0) {
+                    s.finished = true;
+                    break;
+                }
+                // Go on with the next value of the last cell
+                level--;
+                sb.set(0, empty[level] / size, empty[level] % size);
+                traceCleared(empty[level] / size, empty[level] % size);
+                if (SolverStats.ENABLED)
+                    backtrack();
+                continue;
+            }
+            if (tried[level] == 0) {
+                // A new node
+                if (checkpoint())
+                    break;
+                if ((getVisited() & (CHECK_INTERVAL - 1)) == 0
+                        && System.nanoTime() >= nextSave) {
+                    s.level = level;
+                    s.found = found;
+                    s.visited = visitedBefore + getVisited();
+                    s.elapsedNanos += System.nanoTime() - startTime;
+                    save();
+                    s.elapsedNanos -= System.nanoTime() - startTime;
+                    nextSave = System.nanoTime() + intervalNanos;
+                }
+            }
+
+            int row = empty[level] / size;
+            int col = empty[level] % size;
+            int num = tried[level];
+            while (++num <= size) {
+                if (SolverStats.ENABLED)
+                    checks++;
+                if (sb.isNumValid(row, col, num))
+                    break;
+            }
+            if (num <= size) {
+                // If "num" doesn't break any rule, insert it in the board and
+                // move to the next unassigned cell.
+                tried[level] = num;
+                sb.set(num, row, col);
+                traceAssigned(row, col, num);
+                if (SolverStats.ENABLED)
+                    enter();
+                tried[++level] = 0;
+            } else {
+                // No value left for this cell: go back to the previous one
+                tried[level] = 0;
+                if (level == 0) {
+                    s.finished = true;
+                    break;
+                }
+                level--;
+                sb.set(0, empty[level] / size, empty[level] % size);
+                traceCleared(empty[level] / size, empty[level] % size);
+                if (SolverStats.ENABLED)
+                    backtrack();
+            }
+        }
+
+        s.level = level;
+        s.found = found;
+        if (!(solving && s.finished && found > 0)) {
+            // Leave the board as it was given
+            for (int k = level - 1; k >= 0; k--) {
+                sb.set(0, empty[k] / size, empty[k] % size);
+                traceCleared(empty[k] / size, empty[k] % size);
+                if (SolverStats.ENABLED)
+                    backtrack();
+            }
+        }
+    }
+
+    /**
+     * Writes the state of the search to the checkpoint file, and records the
+     * error if the write fails.
+     */
+    private void save() {
+        try {
+            state.save(file);
+            saveError = null;
+        } catch (IOException e) {
+            saveError = e;
+        }
+    }
+}
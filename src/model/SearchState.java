@@ -0,0 +1,149 @@
+package model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * The state of a backtracking search, kept on an explicit stack instead of
+ * the call stack so that it can be saved and resumed: the puzzle, its empty
+ * cells in the order they are filled, and the value last tried at each
+ * level of the search.
+ * <p>
+ * Cells <code>0</code> to <code>level - 1</code> of the list hold the values
+ * of <code>tried</code>; the cell at <code>level</code> is empty, and the
+ * next value to try there is <code>tried[level] + 1</code>.
+ *
+ * @author Arthur Thouzeau
+ * @version 1.0
+ */
+final class SearchState implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    final int size;
+    final int[] givens;
+    final int[] empty;
+    final int[] tried;
+    final String operation;
+    final long limit;
+    int level;
+    long found;
+    long visited;
+    long elapsedNanos;
+    boolean finished;
+
+    /**
+     * Initializes the state of a new search, before its first node.
+     *
+     * @param sb the puzzle
+     * @param operation {@link SolverStats#SOLVE}, {@link SolverStats#COUNT}
+     *                  or {@link SolverStats#ENUMERATE}
+     * @param limit the number of solutions after which the search stops
+     */
+    SearchState(SudokuBoard sb, String operation, long limit) {
+        size = sb.SIZE;
+        givens = new int[size * size];
+        int nbEmpty = 0;
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                givens[i * size + j] = sb.get(i, j);
+                if (sb.get(i, j) == 0)
+                    nbEmpty++;
+            }
+        }
+        empty = new int[nbEmpty];
+        for (int cell = 0, k = 0; cell < givens.length; cell++) {
+            if (givens[cell] == 0)
+                empty[k++] = cell;
+        }
+        tried = new int[nbEmpty + 1];
+        this.operation = operation;
+        this.limit = limit;
+    }
+
+    /**
+     * Writes the state to a file, atomically: the state is written to a
+     * temporary file next to it, flushed to the disk, and moved in place, so
+     * that the file holds either the previous state or the new one, even if
+     * the process dies while writing.
+     *
+     * @param file the file to write
+     * @throws IOException if the file could not be written
+     */
+    void save(Path file) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(tmp.toFile())) {
+            ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(fos));
+            out.writeObject(this);
+            out.flush();
+            fos.getFD().sync();
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads a state written by {@link #save}.
+     *
+     * @param file the file to read
+     * @return the state
+     * @throws IOException if the file could not be read, or does not hold a
+     *                     valid search state
+     */
+    static SearchState load(Path file) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+            Object state = new ObjectInputStream(in).readObject();
+            if (!(state instanceof SearchState))
+                throw new InvalidObjectException("Not a search state: " + file);
+            ((SearchState) state).validate();
+            return (SearchState) state;
+        } catch (ClassNotFoundException e) {
+            throw new InvalidObjectException("Not a search state: " + file);
+        }
+    }
+
+    /**
+     * Checks the consistency of a state read from a file.
+     *
+     * @throws InvalidObjectException if the state is not consistent
+     */
+    private void validate() throws InvalidObjectException {
+        if (size < 1 || givens == null || givens.length != size * size
+                || empty == null || tried == null || tried.length != empty.length + 1
+                || level < 0 || level > empty.length || operation == null)
+            throw new InvalidObjectException("Inconsistent search state.");
+        for (int k = 0; k < empty.length; k++) {
+            if (empty[k] < 0 || empty[k] >= givens.length || givens[empty[k]] != 0
+                    || tried[k] < 0 || tried[k] > size)
+                throw new InvalidObjectException("Inconsistent search state.");
+        }
+    }
+
+    /**
+     * Rebuilds the board of a node of the current branch: the givens, and
+     * the values of the levels above it.
+     *
+     * @param depth the level of the node, from 0 (the puzzle) to
+     *              <code>level</code> (the current node)
+     * @return the board
+     */
+    SudokuBoard toBoard(int depth) {
+        SudokuBoard sb = new SudokuBoard(size);
+        for (int cell = 0; cell < givens.length; cell++) {
+            if (givens[cell] != 0)
+                sb.set(givens[cell], cell / size, cell % size);
+        }
+        for (int k = 0; k < depth; k++)
+            sb.set(tried[k], empty[k] / size, empty[k] % size);
+        return sb;
+    }
+}
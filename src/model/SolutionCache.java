@@ -0,0 +1,283 @@
+package model;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Bounded cache of solutions, keyed by the {@link CanonicalForm} of the
+ * puzzles. A puzzle which is a transformation of a puzzle solved before
+ * (numbers relabeled, board transposed, rows, columns, bands or stacks
+ * swapped) is served from the cache: the cached solution is mapped back to
+ * the orientation and numbering of the puzzle.
+ * <p>
+ * The solutions are held in canonical form, in segments selected by the
+ * hash of the key. Each segment is a map in access order guarded by its
+ * own lock, and drops its least recently used solution when full, so
+ * threads looking up different puzzles seldom wait for each other.
+ * <p>
+ * Every lookup pays for the canonical form (from a few tens to a few
+ * hundreds of microseconds for a 9*9 puzzle), so the cache pays off with
+ * slow solvers, hard puzzles or inputs where the same puzzles come back
+ * often. The hit rate and the cost of the canonical
+ * forms can be watched through JMX, see {@link #register(int)}.
+ *
+ * @author Arthur Thouzeau
+ * @version 1.0
+ */
+public class SolutionCache implements SolutionCacheMBean {
+    /**
+     * The name of the MBean registered by {@link #register(int)}.
+     */
+    public static final String OBJECT_NAME = "model:type=SolutionCache";
+
+    private static final int SEGMENTS = 16;
+
+    private final int capacity;
+    private final Segment[] segments;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong canonicalNanos = new AtomicLong();
+
+    /**
+     * Initializes an empty cache.
+     *
+     * @param capacity the largest number of solutions held
+     * @throws IllegalArgumentException if the capacity is not positive
+     */
+    public SolutionCache(int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("Capacity: " + capacity);
+        this.capacity = capacity;
+        int count = capacity < 4 * SEGMENTS ? 1 : SEGMENTS;
+        segments = new Segment[count];
+        for (int k = 0; k < count; k++)
+            segments[k] = new Segment(capacity / count + (k < capacity % count ? 1 : 0));
+    }
+
+    /**
+     * Creates a cache and registers it as a platform MBean.
+     *
+     * @param capacity the largest number of solutions held
+     * @return the cache
+     * @throws JMException if the MBean cannot be registered
+     */
+    public static SolutionCache register(int capacity) throws JMException {
+        SolutionCache cache = new SolutionCache(capacity);
+        ManagementFactory.getPlatformMBeanServer().registerMBean(cache,
+                new ObjectName(OBJECT_NAME));
+        return cache;
+    }
+
+    /**
+     * Computes the canonical form of a puzzle, to look it up.
+     *
+     * @param puzzle the puzzle
+     * @return the canonical form of the puzzle
+     */
+    public CanonicalForm canonicalize(SudokuBoard puzzle) {
+        long start = System.nanoTime();
+        CanonicalForm form = CanonicalForm.of(puzzle);
+        canonicalNanos.addAndGet(System.nanoTime() - start);
+        return form;
+    }
+
+    /**
+     * Looks up the solution of a puzzle.
+     *
+     * @param form the canonical form of the puzzle
+     * @return the solution, in the orientation of the puzzle, or
+     *         <code>null</code> if it is not in the cache
+     */
+    public SudokuBoard get(CanonicalForm form) {
+        String solution = segmentOf(form).get(form.getKey());
+        if (solution == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return form.fromCanonical(solution);
+    }
+
+    /**
+     * Adds the solution of a puzzle.
+     *
+     * @param form the canonical form of the puzzle
+     * @param solution the solution, in the orientation of the puzzle
+     */
+    public void put(CanonicalForm form, SudokuBoard solution) {
+        segmentOf(form).put(form.getKey(), form.toCanonical(solution));
+    }
+
+    /**
+     * Solves a puzzle, from the cache if it holds the solution of an
+     * equivalent puzzle, otherwise with a new solver whose solution is then
+     * added to the cache.
+     *
+     * @param puzzle the puzzle
+     * @param type the type of solver used on a miss
+     * @return the solution, or <code>null</code> if the puzzle has none
+     */
+    public SudokuBoard solve(SudokuBoard puzzle, SolverType type) {
+        try {
+            return solve(puzzle, type, 0, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // Cannot happen without a time limit
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Solves a puzzle like {@link #solve(SudokuBoard, SolverType)}, the
+     * search made on a miss being limited in time. A search which goes over
+     * the limit adds nothing to the cache.
+     *
+     * @param puzzle the puzzle
+     * @param type the type of solver used on a miss
+     * @param timeout the time limit of the search, or 0 for no limit
+     * @param unit the unit of the timeout
+     * @return the solution, or <code>null</code> if the puzzle has none
+     * @throws TimeoutException if the search went over the time limit
+     */
+    public SudokuBoard solve(SudokuBoard puzzle, SolverType type, long timeout,
+            TimeUnit unit) throws TimeoutException {
+        CanonicalForm form = canonicalize(puzzle);
+        SudokuBoard solution = get(form);
+        if (solution != null)
+            return solution;
+        SudokuSolver solver = type.create(puzzle);
+        solver.setBudget(0, timeout, unit);
+        if (!solver.solve()) {
+            if (solver.isAborted())
+                throw new TimeoutException("No answer within " + timeout
+                        + " " + unit.toString().toLowerCase());
+            return null;
+        }
+        put(form, solver.getBoard());
+        return solver.getBoard();
+    }
+
+    /**
+     * Returns the segment holding a key.
+     *
+     * @param form the canonical form of the puzzle
+     * @return the segment
+     */
+    private Segment segmentOf(CanonicalForm form) {
+        int h = form.getKey().hashCode();
+        return segments[((h >>> 16) ^ h) & (segments.length - 1)];
+    }
+
+    @Override
+    public long getHits() {
+        return hits.get();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @Override
+    public double getHitRate() {
+        long lookups = getHits() + getMisses();
+        return lookups == 0 ? 0 : (double) getHits() / lookups;
+    }
+
+    @Override
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    @Override
+    public int getSize() {
+        int size = 0;
+        for (Segment segment : segments)
+            size += segment.size();
+        return size;
+    }
+
+    @Override
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public double getCanonicalMicros() {
+        long lookups = getHits() + getMisses();
+        return lookups == 0 ? 0 : canonicalNanos.get() / 1e3 / lookups;
+    }
+
+    @Override
+    public void clear() {
+        for (Segment segment : segments)
+            segment.clear();
+        hits.set(0);
+        misses.set(0);
+        evictions.set(0);
+        canonicalNanos.set(0);
+    }
+
+    /**
+     * Returns a summary of the statistics.
+     *
+     * @return the statistics as a String
+     */
+    @Override
+    public String toString() {
+        return String.format("%d hits, %d misses (%.1f%% hit rate), %d/%d "
+                + "entries, %d evictions, %.1f us per canonical form",
+                getHits(), getMisses(), 100 * getHitRate(), getSize(),
+                getCapacity(), getEvictions(), getCanonicalMicros());
+    }
+
+    /**
+     * Part of the cache, with its own lock, dropping its least recently
+     * used entry when full.
+     */
+    private class Segment {
+        private final Map<String, String> map;
+
+        /**
+         * Initializes an empty segment.
+         *
+         * @param maxEntries the largest number of entries held
+         */
+        Segment(final int maxEntries) {
+            map = new LinkedHashMap<String, String>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                    if (size() <= maxEntries)
+                        return false;
+                    evictions.incrementAndGet();
+                    return true;
+                }
+            };
+        }
+
+        synchronized String get(String key) {
+            return map.get(key);
+        }
+
+        synchronized void put(String key, String value) {
+            map.put(key, value);
+        }
+
+        synchronized int size() {
+            return map.size();
+        }
+
+        synchronized void clear() {
+            map.clear();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package model;
+
+/**
+ * Management interface of {@link SolutionCache}, exposed through JMX.
+ *
+ * @author Arthur Thouzeau
+ * @version 1.0
+ */
+public interface SolutionCacheMBean {
+
+    /**
+     * Returns the number of lookups which found a solution.
+     *
+     * @return the number of hits
+     */
+    long getHits();
+
+    /**
+     * Returns the number of lookups which found nothing.
+     *
+     * @return the number of misses
+     */
+    long getMisses();
+
+    /**
+     * Returns the share of lookups which found a solution.
+     *
+     * @return the hit rate, between 0 and 1
+     */
+    double getHitRate();
+
+    /**
+     * Returns the number of solutions dropped to make room for new ones.
+     *
+     * @return the number of evictions
+     */
+    long getEvictions();
+
+    /**
+     * Returns the number of solutions held.
+     *
+     * @return the number of entries
+     */
+    int getSize();
+
+    /**
+     * Returns the largest number of solutions held.
+     *
+     * @return the capacity
+     */
+    int getCapacity();
+
+    /**
+     * Returns the average time taken to compute the canonical form of a
+     * puzzle, paid by every lookup.
+     *
+     * @return the average time, in microseconds
+     */
+    double getCanonicalMicros();
+
+    /**
+     * Drops all the solutions and sets the counters back to zero.
+     */
+    void clear();
+}
@@ -0,0 +1,26 @@
+package model;
+
+/**
+ * Consumer receiving the solutions of a Sudoku one at a time, from
+ * {@link SudokuSolver#enumerateSolutions}. Solutions are never stored by
+ * the solver, so any number of them can be enumerated in constant memory.
+ * <p>
+ * The board given to the consumer is the one the solver works on: it is
+ * only valid during the call and must not be modified. A consumer keeping
+ * solutions must copy them. The calls of a {@link ParallelSolver} come from
+ * the threads of its pool, one at a time.
+ *
+ * @author Arthur Thouzeau
+ * @version 1.0
+ */
+public interface SolutionConsumer {
+
+    /**
+     * Called for each solution found.
+     *
+     * @param solution the solved board, valid during the call only
+     * @return <code>true</code> to go on with the next solution;
+     *         <code>false</code> to stop the enumeration
+     */
+    boolean accept(SudokuBoard solution);
+}
@@ -0,0 +1,22 @@
+package model;
+
+/**
+ * Listener notified by the solvers at the end of each call to
+ * {@link SudokuSolver#solve()} or {@link SudokuSolver#countSolutions()}.
+ * Listeners are registered with {@link SolverMonitor}.
+ * <p>
+ * The listener is called on the thread of the solver, so it should return
+ * quickly.
+ *
+ * @author Arthur Thouzeau
+ * @version 1.0
+ */
+public interface SolverListener {
+
+    /**
+     * Called when a solver has finished a call.
+     *
+     * @param stats the statistics of the call
+     */
+    void solveFinished(SolverStats stats);
+}
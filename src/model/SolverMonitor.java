@@ -0,0 +1,51 @@
+package model;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Registry of the {@link SolverListener} notified of every solve. When no
+ * listener is registered, notifying costs a single check.
+ *
+ * @author Arthur Thouzeau
+ * @version 1.0
+ */
+public final class SolverMonitor {
+    private static final List<SolverListener> listeners =
+            new CopyOnWriteArrayList<SolverListener>();
+
+    /**
+     * Constructor
+     */
+    private SolverMonitor() {}
+
+    /**
+     * Registers a listener.
+     *
+     * @param listener the listener to notify of every solve
+     */
+    public static void addListener(SolverListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Unregisters a listener.
+     *
+     * @param listener the listener to remove
+     */
+    public static void removeListener(SolverListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Notifies the registered listeners.
+     *
+     * @param stats the statistics of the call which has finished
+     */
+    static void fire(SolverStats stats) {
+        if (listeners.isEmpty())
+            return;
+        for (SolverListener listener : listeners)
+            listener.solveFinished(stats);
+    }
+}
@@ -0,0 +1,24 @@
+package model;
+
+/**
+ * Listener notified regularly of the progress of a search, every
+ * {@link AbstractSolver#CHECK_INTERVAL} nodes.
+ * <p>
+ * The listener is called on the thread of the search (or on the threads of
+ * the pool for a {@link ParallelSolver}), so it must be thread-safe and
+ * return quickly.
+ *
+ * @author Arthur Thouzeau
+ * @version 1.0
+ */
+public interface SolverProgressListener {
+
+    /**
+     * Called while a search is running.
+     *
+     * @param nodes the number of nodes visited so far
+     * @param depth the current depth of the search, or 0 if the counters of
+     *              {@link SolverStats} are turned off
+     */
+    void progress(long nodes, int depth);
+}
@@ -0,0 +1,190 @@
+package model;
+
+/**
+ * Statistics of one call to {@link SudokuSolver#solve()} or
+ * {@link SudokuSolver#countSolutions()}:
+ * <ul>
+ * <li>the number of nodes, that is of assignments tried by the search;</li>
+ * <li>the number of backtracks, that is of tried assignments undone because
+ * they led to no solution (or no more solutions);</li>
+ * <li>the largest depth reached by the search;</li>
+ * <li>the number of candidate checks (a value tested against the rules, or
+ * the candidates of a cell or of a column of the exact cover matrix
+ * read);</li>
+ * <li>the time taken.</li>
+ * </ul>
+ * The counters are updated on the hot path of the solvers. They can be
+ * turned off with <code>-Dsudoku.stats=false</code>, in which case the
+ * updates are compiled away and only the time and the result are recorded.
+ *
+ * @author Arthur Thouzeau
+ * @version 1.0
+ */
+public class SolverStats {
+    /**
+     * Whether the solvers update their counters.
+     */
+    public static final boolean ENABLED = Boolean.parseBoolean(
+            System.getProperty("sudoku.stats", "true"));
+
+    /**
+     * Operation of a call to {@link SudokuSolver#solve()}.
+     */
+    public static final String SOLVE = "solve";
+    /**
+     * Operation of a call to {@link SudokuSolver#countSolutions()}.
+     */
+    public static final String COUNT = "count";
+    /**
+     * Operation of a call to {@link SudokuSolver#enumerateSolutions}.
+     */
+    public static final String ENUMERATE = "enumerate";
+
+    private final String solver;
+    private final String operation;
+    private final int size;
+    private final long result;
+    private final long nodes;
+    private final long backtracks;
+    private final int maxDepth;
+    private final long checks;
+    private final long elapsedNanos;
+    private final boolean aborted;
+
+    /**
+     * Initializes the statistics of a call.
+     *
+     * @param solver the name of the solver
+     * @param operation {@link #SOLVE}, {@link #COUNT} or {@link #ENUMERATE}
+     * @param size the size of the board
+     * @param result the number of solutions found
+     * @param nodes the number of nodes
+     * @param backtracks the number of backtracks
+     * @param maxDepth the largest depth reached
+     * @param checks the number of candidate checks
+     * @param elapsedNanos the time taken, in nanoseconds
+     * @param aborted whether the call was aborted
+     */
+    SolverStats(String solver, String operation, int size, long result, long nodes,
+            long backtracks, int maxDepth, long checks, long elapsedNanos,
+            boolean aborted) {
+        this.solver = solver;
+        this.operation = operation;
+        this.size = size;
+        this.result = result;
+        this.nodes = nodes;
+        this.backtracks = backtracks;
+        this.maxDepth = maxDepth;
+        this.checks = checks;
+        this.elapsedNanos = elapsedNanos;
+        this.aborted = aborted;
+    }
+
+    /**
+     * Returns the name of the solver.
+     *
+     * @return the name of the class of the solver
+     */
+    public String getSolver() {
+        return solver;
+    }
+
+    /**
+     * Returns the operation measured.
+     *
+     * @return {@link #SOLVE}, {@link #COUNT} or {@link #ENUMERATE}
+     */
+    public String getOperation() {
+        return operation;
+    }
+
+    /**
+     * Returns the size of the board.
+     *
+     * @return the size of the board (number of rows)
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the number of solutions found.
+     *
+     * @return the number of solutions found, at most 1 when solving and the
+     *         limit of the call when counting or enumerating
+     */
+    public long getResult() {
+        return result;
+    }
+
+    /**
+     * Returns the number of nodes of the search.
+     *
+     * @return the number of assignments tried
+     */
+    public long getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Returns the number of backtracks of the search.
+     *
+     * @return the number of assignments undone
+     */
+    public long getBacktracks() {
+        return backtracks;
+    }
+
+    /**
+     * Returns the largest depth reached by the search.
+     *
+     * @return the largest depth
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * Returns the number of candidate checks.
+     *
+     * @return the number of candidate checks
+     */
+    public long getChecks() {
+        return checks;
+    }
+
+    /**
+     * Returns the time taken.
+     *
+     * @return the time taken, in nanoseconds
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Tells whether the call was cancelled or went over its budget.
+     *
+     * @return <code>true</code> if the call was aborted;
+     *         <code>false</code> otherwise
+     */
+    public boolean isAborted() {
+        return aborted;
+    }
+
+    /**
+     * Returns a summary of the statistics.
+     *
+     * @return the statistics as a String
+     */
+    @Override
+    public String toString() {
+        String summary = String.format("%s %s %dx%d: %s in %.2f ms",
+                solver, operation, size, size, aborted ? "aborted"
+                        : result + " solution(s)", elapsedNanos / 1e6);
+        if (!ENABLED)
+            return summary;
+        return summary + String.format(", %d nodes, %d backtracks, depth %d, "
+                + "%d checks", nodes, backtracks, maxDepth, checks);
+    }
+}
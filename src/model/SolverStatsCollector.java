@@ -0,0 +1,190 @@
+package model;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Listener aggregating the statistics of all the solves: totals, maxima and
+ * the number of hard inputs (those needing more nodes than a threshold).
+ * The counters are thread-safe, so solvers running on several threads can
+ * report to the same collector.
+ * <p>
+ * A collector can be registered as a JMX MBean with {@link #register()}, to
+ * be watched with JConsole or any monitoring tool.
+ *
+ * @author Arthur Thouzeau
+ * @version 1.0
+ */
+public class SolverStatsCollector implements SolverListener, SolverStatsCollectorMBean {
+    /**
+     * The name of the MBean registered by {@link #register()}.
+     */
+    public static final String OBJECT_NAME = "model:type=SolverStats";
+
+    private static final long DEFAULT_HARD_NODE_THRESHOLD = 100000;
+
+    private final AtomicLong solves = new AtomicLong();
+    private final AtomicLong unsolved = new AtomicLong();
+    private final AtomicLong nodes = new AtomicLong();
+    private final AtomicLong backtracks = new AtomicLong();
+    private final AtomicLong checks = new AtomicLong();
+    private final AtomicLong maxDepth = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+    private final AtomicLong hardSolves = new AtomicLong();
+    private final AtomicReference<SolverStats> hardest =
+            new AtomicReference<SolverStats>();
+    private volatile long hardNodeThreshold = DEFAULT_HARD_NODE_THRESHOLD;
+
+    /**
+     * Creates a collector, registers it as a listener of all the solvers and
+     * as a platform MBean.
+     *
+     * @return the collector
+     * @throws JMException if the MBean cannot be registered
+     */
+    public static SolverStatsCollector register() throws JMException {
+        SolverStatsCollector collector = new SolverStatsCollector();
+        ManagementFactory.getPlatformMBeanServer().registerMBean(collector,
+                new ObjectName(OBJECT_NAME));
+        SolverMonitor.addListener(collector);
+        return collector;
+    }
+
+    @Override
+    public void solveFinished(SolverStats stats) {
+        solves.incrementAndGet();
+        if (stats.getResult() == 0)
+            unsolved.incrementAndGet();
+        nodes.addAndGet(stats.getNodes());
+        backtracks.addAndGet(stats.getBacktracks());
+        checks.addAndGet(stats.getChecks());
+        totalNanos.addAndGet(stats.getElapsedNanos());
+        updateMax(maxDepth, stats.getMaxDepth());
+        updateMax(maxNanos, stats.getElapsedNanos());
+        if (stats.getNodes() > hardNodeThreshold)
+            hardSolves.incrementAndGet();
+        SolverStats current = hardest.get();
+        while (isHarder(stats, current) && !hardest.compareAndSet(current, stats))
+            current = hardest.get();
+    }
+
+    /**
+     * Compares two calls by number of nodes, then by time (which is all
+     * there is to compare when the counters are turned off).
+     *
+     * @param stats the statistics of a call
+     * @param other the statistics of another call, or <code>null</code>
+     * @return <code>true</code> if the first call was harder
+     */
+    private static boolean isHarder(SolverStats stats, SolverStats other) {
+        if (other == null || stats.getNodes() > other.getNodes())
+            return true;
+        return stats.getNodes() == other.getNodes()
+                && stats.getElapsedNanos() > other.getElapsedNanos();
+    }
+
+    /**
+     * Raises a maximum to a value if it is lower.
+     *
+     * @param max the maximum
+     * @param value the new value
+     */
+    private static void updateMax(AtomicLong max, long value) {
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value))
+            current = max.get();
+    }
+
+    @Override
+    public long getSolves() {
+        return solves.get();
+    }
+
+    @Override
+    public long getUnsolved() {
+        return unsolved.get();
+    }
+
+    @Override
+    public long getNodes() {
+        return nodes.get();
+    }
+
+    @Override
+    public long getBacktracks() {
+        return backtracks.get();
+    }
+
+    @Override
+    public long getChecks() {
+        return checks.get();
+    }
+
+    @Override
+    public int getMaxDepth() {
+        return (int) maxDepth.get();
+    }
+
+    @Override
+    public double getTotalMillis() {
+        return totalNanos.get() / 1e6;
+    }
+
+    @Override
+    public double getMaxMillis() {
+        return maxNanos.get() / 1e6;
+    }
+
+    @Override
+    public long getHardSolves() {
+        return hardSolves.get();
+    }
+
+    @Override
+    public long getHardNodeThreshold() {
+        return hardNodeThreshold;
+    }
+
+    @Override
+    public void setHardNodeThreshold(long threshold) {
+        hardNodeThreshold = threshold;
+    }
+
+    @Override
+    public String getHardest() {
+        SolverStats stats = hardest.get();
+        return stats == null ? "" : stats.toString();
+    }
+
+    @Override
+    public void reset() {
+        solves.set(0);
+        unsolved.set(0);
+        nodes.set(0);
+        backtracks.set(0);
+        checks.set(0);
+        maxDepth.set(0);
+        totalNanos.set(0);
+        maxNanos.set(0);
+        hardSolves.set(0);
+        hardest.set(null);
+    }
+
+    /**
+     * Returns a summary of the statistics.
+     *
+     * @return the statistics as a String
+     */
+    @Override
+    public String toString() {
+        return String.format("%d solves (%d unsolved, %d hard), %d nodes, "
+                + "%d backtracks, max depth %d, %d checks, max %.1f ms",
+                getSolves(), getUnsolved(), getHardSolves(), getNodes(),
+                getBacktracks(), getMaxDepth(), getChecks(), getMaxMillis());
+    }
+}
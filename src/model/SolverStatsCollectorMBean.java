@@ -0,0 +1,100 @@
+package model;
+
+/**
+ * Management interface of {@link SolverStatsCollector}, exposed through JMX.
+ *
+ * @author Arthur Thouzeau
+ * @version 1.0
+ */
+public interface SolverStatsCollectorMBean {
+
+    /**
+     * Returns the number of calls recorded.
+     *
+     * @return the number of solves and counts
+     */
+    long getSolves();
+
+    /**
+     * Returns the number of calls which found no solution.
+     *
+     * @return the number of unsolvable boards met
+     */
+    long getUnsolved();
+
+    /**
+     * Returns the total number of nodes.
+     *
+     * @return the number of assignments tried by all the calls
+     */
+    long getNodes();
+
+    /**
+     * Returns the total number of backtracks.
+     *
+     * @return the number of assignments undone by all the calls
+     */
+    long getBacktracks();
+
+    /**
+     * Returns the total number of candidate checks.
+     *
+     * @return the number of candidate checks of all the calls
+     */
+    long getChecks();
+
+    /**
+     * Returns the largest depth reached by a call.
+     *
+     * @return the largest depth
+     */
+    int getMaxDepth();
+
+    /**
+     * Returns the total time spent solving.
+     *
+     * @return the time of all the calls, in milliseconds
+     */
+    double getTotalMillis();
+
+    /**
+     * Returns the time of the slowest call.
+     *
+     * @return the longest time, in milliseconds
+     */
+    double getMaxMillis();
+
+    /**
+     * Returns the number of calls whose number of nodes was over the
+     * threshold.
+     *
+     * @return the number of hard inputs met
+     */
+    long getHardSolves();
+
+    /**
+     * Returns the number of nodes over which a call counts as hard.
+     *
+     * @return the threshold
+     */
+    long getHardNodeThreshold();
+
+    /**
+     * Sets the number of nodes over which a call counts as hard.
+     *
+     * @param threshold the threshold
+     */
+    void setHardNodeThreshold(long threshold);
+
+    /**
+     * Returns the statistics of the hardest call, by number of nodes.
+     *
+     * @return the summary of the hardest call, or an empty String
+     */
+    String getHardest();
+
+    /**
+     * Sets all the counters back to zero.
+     */
+    void reset();
+}
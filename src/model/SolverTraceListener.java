@@ -0,0 +1,34 @@
+package model;
+
+/**
+ * Listener notified of every assignment and every clearing of a cell made
+ * by a search, to follow the search step by step. The givens are not
+ * reported.
+ * <p>
+ * The listener is called on the thread of the search, for every change, so
+ * it must be thread-safe and cost no more than a few stores: any slower and
+ * the search slows down with it. The {@link ParallelSolver}, which searches
+ * several subtrees at once, does not report its steps.
+ *
+ * @author Arthur Thouzeau
+ * @version 1.0
+ */
+public interface SolverTraceListener {
+
+    /**
+     * Called when the search assigns a number to a cell.
+     *
+     * @param row the cell's row
+     * @param col the cell's column
+     * @param value the number assigned
+     */
+    void assigned(int row, int col, int value);
+
+    /**
+     * Called when the search clears a cell, when backtracking.
+     *
+     * @param row the cell's row
+     * @param col the cell's column
+     */
+    void cleared(int row, int col);
+}
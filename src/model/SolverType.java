@@ -0,0 +1,70 @@
+package model;
+
+/**
+ * Enumerates the available Sudoku solving algorithms. Each constant knows how
+ * to create the corresponding {@link SudokuSolver}.
+ * 
+ * @author Arthur Thouzeau
+ * @version 1.0
+ */
+public enum SolverType {
+    BACKTRACKING("Backtracking") {
+        @Override
+        public SudokuSolver create(SudokuBoard board) {
+            return new RecursiveSolver(board);
+        }
+    },
+    DANCING_LINKS("Dancing Links") {
+        @Override
+        public SudokuSolver create(SudokuBoard board) {
+            return new DancingLinksSolver(board);
+        }
+    },
+    CONSTRAINT_PROPAGATION("Propagation + MRV") {
+        @Override
+        public SudokuSolver create(SudokuBoard board) {
+            return new ConstraintSolver(board);
+        }
+    },
+    PARALLEL("Parallel") {
+        @Override
+        public SudokuSolver create(SudokuBoard board) {
+            return new ParallelSolver(board);
+        }
+    },
+    PORTFOLIO("Portfolio") {
+        @Override
+        public SudokuSolver create(SudokuBoard board) {
+            return new PortfolioSolver(board);
+        }
+    };
+
+    private final String label;
+
+    /**
+     * Initializes a solver type.
+     * 
+     * @param label the name displayed to the user
+     */
+    private SolverType(String label) {
+        this.label = label;
+    }
+
+    /**
+     * Creates a new solver of this type.
+     * 
+     * @param board the Sudoku to solve
+     * @return the new solver
+     */
+    public abstract SudokuSolver create(SudokuBoard board);
+
+    /**
+     * Returns the name displayed to the user.
+     * 
+     * @return the name of the solver type
+     */
+    @Override
+    public String toString() {
+        return label;
+    }
+}
@@ -6,21 +6,47 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.util.BitSet;
 
-import au.com.bytecode.opencsv.CSVReader;
-import au.com.bytecode.opencsv.CSVWriter;
-
 /**
- * This class represents a Sudoku board as a two-dimensional
- * <code>int</code> array. It provides methods to load a Sudoku 
- * from a CSV file, write a Sudoku to a CSV file, and check the 
- * correctness of an initial grid.
+ * This class represents a Sudoku board as one flat array of cells, in row
+ * order: a <code>byte</code> array up to 121*121 and a <code>short</code>
+ * array above. It provides methods to load a Sudoku from a CSV file, write a
+ * Sudoku to a CSV file, and check the correctness of an initial grid.
+ * <p>
+ * Alongside the cells, the board keeps one occupancy bitmask per row, column
+ * and box (bit <code>num - 1</code> is set when <code>num</code> is present in
+ * the unit). The masks are updated by {@link #set} so that checking a value
+ * or listing the candidates of a cell only costs a few bit operations. Boards
+ * larger than 64*64 use several <code>long</code> words per unit.
+ * <p>
+ * A board being edited can hold the same number twice in a unit. The board
+ * counts these extra copies, and while there are some, clearing a number
+ * rescans its units so that its bit is only cleared with the last copy.
+ * Boards without duplicates, those the solvers work on, never pay for it.
  * 
  * @author Arthur Thouzeau
  * @version 1.0
  */
 public class SudokuBoard {
+    /**
+     * The largest size whose cells are stored as bytes.
+     */
+    public static final int MAX_BYTE_SIZE = 121;
+
+    /**
+     * The value stored in place of a value which does not fit the cells of
+     * the board.
+     */
+    public static final int INVALID = -1;
+
     public final int SIZE;
-    private int[][] board;
+    private final int boxSize;
+    private final int words;
+    private byte[] bytes;
+    private short[] shorts;
+    private long[] rowMasks;
+    private long[] colMasks;
+    private long[] boxMasks;
+    private int duplicates;
 
     /**
      * Initializes a new empty SudokuBoard.
@@ -29,18 +55,192 @@ public class SudokuBoard {
      */
     public SudokuBoard(int size) {
         SIZE = size;
-        board = new int[size][size];
+        boxSize = (int) Math.sqrt(size);
+        words = (size + 63) >>> 6;
+        if (size <= MAX_BYTE_SIZE)
+            bytes = new byte[size * size];
+        else
+            shorts = new short[size * size];
+        rowMasks = new long[size * words];
+        colMasks = new long[size * words];
+        boxMasks = new long[size * words];
+    }
+
+    /**
+     * Initializes a new SudokuBoard as a copy of another one.
+     * 
+     * @param other the SudokuBoard to copy
+     */
+    public SudokuBoard(SudokuBoard other) {
+        this(other.SIZE);
+        copyFrom(other);
+    }
+
+    /**
+     * Copies the cells and masks of another SudokuBoard of the same size
+     * into <code>this</code> one, with a few array copies.
+     * 
+     * @param other the SudokuBoard to copy
+     * @throws IllegalArgumentException if the boards are not of the same size
+     */
+    public void copyFrom(SudokuBoard other) {
+        if (other.SIZE != SIZE)
+            throw new IllegalArgumentException("Cannot copy a " + other.SIZE
+                    + "*" + other.SIZE + " board into a " + SIZE + "*" + SIZE
+                    + " one");
+        if (bytes != null)
+            System.arraycopy(other.bytes, 0, bytes, 0, bytes.length);
+        else
+            System.arraycopy(other.shorts, 0, shorts, 0, shorts.length);
+        System.arraycopy(other.rowMasks, 0, rowMasks, 0, rowMasks.length);
+        System.arraycopy(other.colMasks, 0, colMasks, 0, colMasks.length);
+        System.arraycopy(other.boxMasks, 0, boxMasks, 0, boxMasks.length);
+        duplicates = other.duplicates;
     }
     
     /**
-     * Sets the value of a SudokuBoard's cell.
+     * Sets the value of a SudokuBoard's cell. The row, column and box masks
+     * are updated accordingly. Values outside of the range [1, SIZE] are
+     * stored but ignored by the masks; those which do not fit a cell (a
+     * <code>byte</code> or <code>short</code>) are stored as
+     * {@link #INVALID}, so that {@link #checkInitialBoard} still rejects
+     * them.
      * 
      * @param value the value to insert
      * @param row the cell's row
      * @param col the column's row
      */
     public void set(int value, int row, int col) {
-        board[row][col] = value;
+        int index = row * SIZE + col;
+        int old;
+        if (bytes != null) {
+            if (value != (byte) value)
+                value = INVALID;
+            old = bytes[index];
+            bytes[index] = (byte) value;
+        } else {
+            if (value != (short) value)
+                value = INVALID;
+            old = shorts[index];
+            shorts[index] = (short) value;
+        }
+        if (old == value)
+            return;
+        if (old > 0 && old <= SIZE)
+            updateMasks(old, row, col, false);
+        if (value > 0 && value <= SIZE)
+            updateMasks(value, row, col, true);
+    }
+
+    /**
+     * Sets or clears the bit of a number in the masks of the row, column and
+     * box containing a cell. Setting a bit which is already set records a
+     * duplicate; clearing the bit of a unit which still holds a copy of the
+     * number keeps it, and forgets one duplicate.
+     * 
+     * @param num the number, between 1 and SIZE (inclusive)
+     * @param row the cell's row
+     * @param col the cell's column
+     * @param present <code>true</code> to set the bit;
+     *                <code>false</code> to clear it
+     */
+    private void updateMasks(int num, int row, int col, boolean present) {
+        int word = (num - 1) >>> 6;
+        long bit = 1L << (num - 1);
+        int r = row * words + word;
+        int c = col * words + word;
+        int b = getBox(row, col) * words + word;
+        if (present) {
+            if (((rowMasks[r] | colMasks[c] | boxMasks[b]) & bit) != 0)
+                countDuplicates(bit, r, c, b);
+            rowMasks[r] |= bit;
+            colMasks[c] |= bit;
+            boxMasks[b] |= bit;
+        } else if (duplicates == 0) {
+            rowMasks[r] &= ~bit;
+            colMasks[c] &= ~bit;
+            boxMasks[b] &= ~bit;
+        } else {
+            if (rowHolds(num, row))
+                duplicates--;
+            else
+                rowMasks[r] &= ~bit;
+            if (colHolds(num, col))
+                duplicates--;
+            else
+                colMasks[c] &= ~bit;
+            if (boxHolds(num, row, col))
+                duplicates--;
+            else
+                boxMasks[b] &= ~bit;
+        }
+    }
+
+    /**
+     * Counts the units which already hold a number being set.
+     * 
+     * @param bit the bit of the number in its word of the masks
+     * @param r the index of the word in the row masks
+     * @param c the index of the word in the column masks
+     * @param b the index of the word in the box masks
+     */
+    private void countDuplicates(long bit, int r, int c, int b) {
+        if ((rowMasks[r] & bit) != 0)
+            duplicates++;
+        if ((colMasks[c] & bit) != 0)
+            duplicates++;
+        if ((boxMasks[b] & bit) != 0)
+            duplicates++;
+    }
+
+    /**
+     * Tells whether a number is present on a row.
+     * 
+     * @param num the number
+     * @param row the row
+     * @return <code>true</code> if a cell of the row holds the number
+     */
+    private boolean rowHolds(int num, int row) {
+        for (int j = 0; j < SIZE; j++) {
+            if (get(row, j) == num)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Tells whether a number is present on a column.
+     * 
+     * @param num the number
+     * @param col the column
+     * @return <code>true</code> if a cell of the column holds the number
+     */
+    private boolean colHolds(int num, int col) {
+        for (int i = 0; i < SIZE; i++) {
+            if (get(i, col) == num)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Tells whether a number is present in the box containing a cell.
+     * 
+     * @param num the number
+     * @param row the cell's row
+     * @param col the cell's column
+     * @return <code>true</code> if a cell of the box holds the number
+     */
+    private boolean boxHolds(int num, int row, int col) {
+        int top = row - row % boxSize;
+        int left = col - col % boxSize;
+        for (int i = top; i < top + boxSize; i++) {
+            for (int j = left; j < left + boxSize; j++) {
+                if (get(i, j) == num)
+                    return true;
+            }
+        }
+        return false;
     }
 
     /**
@@ -51,7 +251,71 @@ public class SudokuBoard {
      * @return the value of the cell
      */
     public int get(int row, int col) {
-        return board[row][col];
+        int index = row * SIZE + col;
+        return bytes != null ? bytes[index] : shorts[index];
+    }
+
+    /**
+     * Returns the width (or height) of a box, i.e. the square root of SIZE.
+     * 
+     * @return the size of a box
+     */
+    public int getBoxSize() {
+        return boxSize;
+    }
+
+    /**
+     * Returns the index of the box containing a cell. Boxes are numbered
+     * from left to right and from top to bottom.
+     * 
+     * @param row the cell's row
+     * @param col the cell's column
+     * @return the index of the box containing the cell
+     */
+    public int getBox(int row, int col) {
+        return (row / boxSize) * boxSize + col / boxSize;
+    }
+
+    /**
+     * Returns the numbers which are not present yet on the row, column and
+     * box of a cell, as a bitmask where bit <code>num - 1</code> stands for
+     * <code>num</code>. The value of the cell itself is taken into account,
+     * so this method is meant to be called on unassigned cells. It can only
+     * be used on boards up to 64*64; see {@link #getCandidates(int, int, long[])}
+     * for larger boards.
+     * 
+     * @param row the cell's row
+     * @param col the cell's column
+     * @return the bitmask of the candidates of the cell
+     * @throws UnsupportedOperationException if SIZE is greater than 64
+     */
+    public long getCandidates(int row, int col) {
+        if (words != 1)
+            throw new UnsupportedOperationException("Candidate masks on a "
+                    + "single long are limited to 64*64 boards.");
+        long used = rowMasks[row] | colMasks[col] | boxMasks[getBox(row, col)];
+        return ~used & (-1L >>> (64 - SIZE));
+    }
+
+    /**
+     * Fills <code>dest</code> with the candidates of a cell, for boards of any
+     * size. Word <code>w</code> holds numbers <code>64 * w + 1</code> to
+     * <code>64 * w + 64</code>.
+     * 
+     * @param row the cell's row
+     * @param col the cell's column
+     * @param dest the array to fill, of length at least
+     *             <code>(SIZE + 63) / 64</code>
+     */
+    public void getCandidates(int row, int col, long[] dest) {
+        int r = row * words;
+        int c = col * words;
+        int b = getBox(row, col) * words;
+        for (int w = 0; w < words; w++) {
+            long used = rowMasks[r + w] | colMasks[c + w] | boxMasks[b + w];
+            int bits = Math.min(64, SIZE - 64 * w);
+            dest[w] = ~used & (-1L >>> (64 - bits));
+        }
     }
 
     /**
@@ -64,7 +328,7 @@ public class SudokuBoard {
     private boolean checkInitialRange() {
         for (int i = 0; i < SIZE; i++) {
             for (int j = 0; j < SIZE; j++) {
-                if (board[i][j] < 0 || board[i][j] > SIZE)
+                if (get(i, j) < 0 || get(i, j) > SIZE)
                     return false;
             }
         }
@@ -84,9 +348,9 @@ public class SudokuBoard {
 
         for (int i = 0; i < SIZE; i++) {
             for (int j = 0; j < SIZE; j++) {
-                if (board[i][j] != 0 && bits.get(board[i][j]))
+                if (get(i, j) != 0 && bits.get(get(i, j)))
                     return false;
-                bits.set(board[i][j]);
+                bits.set(get(i, j));
             }
             bits.clear();
         }
@@ -106,9 +370,9 @@ public class SudokuBoard {
 
         for (int j = 0; j < SIZE; j++) {
             for (int i = 0; i < SIZE; i++) {
-                if (board[i][j] != 0 && bits.get(board[i][j]))
+                if (get(i, j) != 0 && bits.get(get(i, j)))
                     return false;
-                bits.set(board[i][j]);
+                bits.set(get(i, j));
             }
             bits.clear();
         }
@@ -131,10 +395,10 @@ public class SudokuBoard {
             for (int j = 0; j < SIZE; j += sqrtSize) {
                 for (int k = 0; k < sqrtSize; k++) {
                     for (int l = 0; l < sqrtSize; l++) {
-                        if (board[i + k][j + l] != 0
-                                && bits.get(board[i + k][j + l]))
+                        if (get(i + k, j + l) != 0
+                                && bits.get(get(i + k, j + l)))
                             return false;
-                        bits.set(board[i + k][j + l]);
+                        bits.set(get(i + k, j + l));
                     }
                 }
                 bits.clear();
@@ -166,18 +430,26 @@ public class SudokuBoard {
      *         <code>false</code> otherwise
      */
     public boolean isNumValid(int[] cell, int num) {
-        int sqrtSize = (int) Math.sqrt(SIZE);
-        int boxRow = (cell[0] / sqrtSize) * sqrtSize;
-        int boxCol = (cell[1] / sqrtSize) * sqrtSize;
+        return isNumValid(cell[0], cell[1], num);
+    }
 
-        // Check row, column and box rules
-        for (int i = 0; i < SIZE; i++) {
-            if (get(cell[0], i) == num
-                    || get(i, cell[1]) == num
-                    || get(boxRow + (i % sqrtSize), boxCol + (i / sqrtSize)) == num)
-                return false;
-        }
-        return true;
+    /**
+     * Check if a number can go in a specified cell of the board and not break
+     * Sudoku's rules. The check is done on the row, column and box masks.
+     * 
+     * @param row the cell's row
+     * @param col the cell's column
+     * @param num the number to be tested, between 1 and SIZE (inclusive)
+     * @return <code>true</code> if the number doesn't break any rule;
+     *         <code>false</code> otherwise
+     */
+    public boolean isNumValid(int row, int col, int num) {
+        int word = (num - 1) >>> 6;
+        long bit = 1L << (num - 1);
+        long used = rowMasks[row * words + word] 
+                | colMasks[col * words + word]
+                | boxMasks[getBox(row, col) * words + word];
+        return (used & bit) == 0;
     }
     
     /**
@@ -194,51 +466,12 @@ public class SudokuBoard {
      */
     public static SudokuBoard importFromCSV(String inputFile) throws ImportException {
 
-        // Declare the CSVReader instance in a try-with-resource statement
-        try (CSVReader reader = new CSVReader(new FileReader(inputFile))) {
-            String[] nextLine;
-            int countLines = 0;
-
-            // Read first line and check that the file is not empty
-            if ((nextLine = reader.readNext()) == null) {
-                throw new ImportException("Please check that the file is not empty.");
-            }
-
-            // Check that the number of columns is a perfect square.
-            int tst = (int) Math.sqrt(nextLine.length);
-            if (tst * tst != nextLine.length) {
-                throw new ImportException("Please check the number of columns.\n"
-                        + "It should be a perfect square.");
-            }
-
-            // Initialize SudokuBoard and read CSV line by line to populate it
-            SudokuBoard sb = new SudokuBoard(nextLine.length);
-            do {
-                if (nextLine.length != sb.SIZE) {
-                    throw new ImportException("Please check each row has " + sb.SIZE
-                            + " columns. (Same as first row)");
-                }
-                for (int j = 0; j < nextLine.length; j++) {
-                    // trim() is used here to make the program more robust, as
-                    // CSV files may have whitespaces between values
-                    sb.set(Integer.parseInt(nextLine[j].trim()), countLines, j);
-                }
-                countLines++;
-            } while ((nextLine = reader.readNext()) != null
-                    && countLines < sb.SIZE);
-
-            // Check there are as many rows as columns
-            if (countLines < sb.SIZE || nextLine != null) {
-                throw new ImportException("Please check the input CSV file has "
-                        + sb.SIZE + " rows. (To match the number of columns)");
-            }
-            return sb;
+        // Declare the reader in a try-with-resource statement
+        try (FileReader in = new FileReader(inputFile)) {
+            return new CSVGridReader(in).read();
         } catch (FileNotFoundException e) {
             String errorMsg = "The file you specified was not found.";
             throw new ImportException(errorMsg);
-        } catch (NumberFormatException e) {
-            String errorMsg = "Please check all values are integer.";
-            throw new ImportException(errorMsg);
         } catch (IOException e) {
             throw new ImportException(e.toString());
         }
@@ -252,18 +485,8 @@ public class SudokuBoard {
      *                     FileNotFoundException)
      */
     public void writeToCSV(String outputFile) throws IOException {
-        String[][] output = new String[SIZE][SIZE];
-
-        for (int i = 0; i < SIZE; i++) {
-            for (int j = 0; j < SIZE; j++) {
-                output[i][j] = String.valueOf(get(i, j));
-            }
-        }
-
-        try (CSVWriter writer = new CSVWriter(new FileWriter(outputFile), ',',
-                CSVWriter.NO_QUOTE_CHARACTER)) {
-            for (String[] record : output)
-                writer.writeNext(record);
+        try (CSVGridWriter writer = new CSVGridWriter(new FileWriter(outputFile))) {
+            writer.write(this);
         }
     }
 
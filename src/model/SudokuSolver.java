@@ -0,0 +1,109 @@
+package model;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Common interface of the algorithms solving Sudoku puzzles. An
+ * implementation works on its own copy of the board given at construction,
+ * so that the original board is never modified.
+ * 
+ * @author Arthur Thouzeau
+ * @version 1.0
+ */
+public interface SudokuSolver {
+
+    /**
+     * Tries to solve the Sudoku. If a solution is found, it can be retrieved
+     * with {@link #getBoard()}.
+     * 
+     * @return <code>true</code> if the sudoku has a solution;
+     *         <code>false</code> otherwise
+     */
+    boolean solve();
+
+    /**
+     * Returns the Sudoku board the solver works on.
+     * 
+     * @return the Sudoku board
+     */
+    SudokuBoard getBoard();
+
+    /**
+     * Counts the solutions of the Sudoku, stopping at the second one. The
+     * board returned by {@link #getBoard()} is left unchanged.
+     * 
+     * @return <code>0</code> if the sudoku has no solution;
+     *         <code>1</code> if it has a unique solution;
+     *         <code>2</code> if it has multiple solutions
+     */
+    int countSolutions();
+
+    /**
+     * Counts the solutions of the Sudoku, stopping once a limit is reached.
+     * The board returned by {@link #getBoard()} is left unchanged.
+     * 
+     * @param limit the number of solutions after which the search stops,
+     *              or 0 for no limit
+     * @return the number of solutions found, at most <code>limit</code>
+     */
+    long countSolutions(long limit);
+
+    /**
+     * Passes the solutions of the Sudoku one at a time to a consumer, until
+     * the consumer asks to stop or a limit is reached. Solutions are not
+     * kept, so the memory used does not depend on their number. The board
+     * returned by {@link #getBoard()} is left unchanged.
+     * 
+     * @param consumer the consumer of the solutions
+     * @param limit the number of solutions after which the search stops,
+     *              or 0 for no limit
+     * @return the number of solutions passed to the consumer
+     */
+    long enumerateSolutions(SolutionConsumer consumer, long limit);
+
+    /**
+     * Returns the statistics of the last call to {@link #solve()} or
+     * {@link #countSolutions()}.
+     * 
+     * @return the statistics, or <code>null</code> if nothing was solved yet
+     */
+    SolverStats getStats();
+
+    /**
+     * Aborts the search in progress, or the next one. This method can be
+     * called from any thread.
+     */
+    void cancel();
+
+    /**
+     * Limits the time and the number of nodes of the next searches.
+     * 
+     * @param maxNodes the maximum number of nodes, or 0 for no limit
+     * @param timeout the maximum time, or 0 for no limit
+     * @param unit the unit of the timeout
+     */
+    void setBudget(long maxNodes, long timeout, TimeUnit unit);
+
+    /**
+     * Sets the listener notified of the progress of the searches.
+     * 
+     * @param listener the listener, or <code>null</code>
+     */
+    void setProgressListener(SolverProgressListener listener);
+
+    /**
+     * Sets the listener notified of every step of the searches.
+     * 
+     * @param listener the listener, or <code>null</code>
+     */
+    void setTraceListener(SolverTraceListener listener);
+
+    /**
+     * Tells whether the last search was cancelled or went over its budget,
+     * in which case its result is meaningless.
+     * 
+     * @return <code>true</code> if the last search was aborted;
+     *         <code>false</code> otherwise
+     */
+    boolean isAborted();
+}
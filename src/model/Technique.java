@@ -0,0 +1,99 @@
+package model;
+
+/**
+ * Logical techniques applied by the {@link DifficultyGrader}, in the order
+ * they are tried: from the cheapest to the most expensive for a human
+ * solver. Each technique has a rating, on the scale commonly used by
+ * Sudoku graders, and the tier of difficulty it belongs to. The ratings
+ * increase with the order, and so do the tiers, so that the score of a
+ * grade never disagrees with its tier.
+ *
+ * @author Arthur Thouzeau
+ * @version 1.0
+ */
+public enum Technique {
+    /**
+     * A number has a single possible cell in a row, column or box.
+     */
+    HIDDEN_SINGLE("Hidden single", 1.5, Difficulty.EASY),
+    /**
+     * A cell has a single candidate left.
+     */
+    NAKED_SINGLE("Naked single", 2.3, Difficulty.EASY),
+    /**
+     * The candidates of a number in a box lie on one row or column (or the
+     * reverse), so the number is removed from the rest of that line (or of
+     * that box).
+     */
+    LOCKED_CANDIDATES("Locked candidates", 2.6, Difficulty.MEDIUM),
+    /**
+     * Two cells of a unit share the same two candidates.
+     */
+    NAKED_PAIR("Naked pair", 3.0, Difficulty.HARD),
+    /**
+     * Two numbers of a unit are restricted to the same two cells.
+     */
+    HIDDEN_PAIR("Hidden pair", 3.2, Difficulty.HARD),
+    /**
+     * Three cells of a unit have only three candidates between them.
+     */
+    NAKED_TRIPLE("Naked triple", 3.4, Difficulty.HARD),
+    /**
+     * Three numbers of a unit are restricted to the same three cells.
+     */
+    HIDDEN_TRIPLE("Hidden triple", 3.6, Difficulty.HARD),
+    /**
+     * A number is restricted to the same two cells in two rows (or columns).
+     */
+    X_WING("X-Wing", 3.8, Difficulty.EXPERT),
+    /**
+     * A number is restricted to the same three columns in three rows (or the
+     * reverse).
+     */
+    SWORDFISH("Swordfish", 4.2, Difficulty.EXPERT);
+
+    private final String label;
+    private final double rating;
+    private final Difficulty difficulty;
+
+    /**
+     * Initializes a technique.
+     *
+     * @param label the name of the technique, as displayed to the user
+     * @param rating the rating of the technique
+     * @param difficulty the tier of the technique
+     */
+    private Technique(String label, double rating, Difficulty difficulty) {
+        this.label = label;
+        this.rating = rating;
+        this.difficulty = difficulty;
+    }
+
+    /**
+     * Returns the rating of the technique: the higher, the harder.
+     *
+     * @return the rating
+     */
+    public double getRating() {
+        return rating;
+    }
+
+    /**
+     * Returns the tier of difficulty of the puzzles needing the technique.
+     *
+     * @return the tier of difficulty
+     */
+    public Difficulty getDifficulty() {
+        return difficulty;
+    }
+
+    /**
+     * Returns the name of the technique.
+     *
+     * @return the name of the technique, as displayed to the user
+     */
+    @Override
+    public String toString() {
+        return label;
+    }
+}